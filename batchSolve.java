@@ -0,0 +1,427 @@
+package batchsolve;
+
+import java.io.*;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.DictionaryFile;
+import com.as.anagramsolver.engine.FrequencyScorer;
+import com.as.anagramsolver.engine.HistogramScanner;
+import com.as.anagramsolver.engine.KeyNormalizer;
+import com.as.anagramsolver.engine.Language;
+import com.as.anagramsolver.engine.LatencyHistogram;
+import com.as.anagramsolver.engine.MultiDictionarySearcher;
+import com.as.anagramsolver.engine.PhraseSolver;
+import com.as.anagramsolver.engine.SubAnagramSearcher;
+import com.as.anagramsolver.engine.TileScorer;
+import com.as.anagramsolver.engine.TopK;
+import com.as.anagramsolver.engine.WordRanking;
+import com.as.anagramsolver.engine.WordScorer;
+
+/**
+ * Solves a list of racks without the app, e.g. to generate puzzles or to check results.
+ * It reads one rack per line from a file or stdin, solves each rack in every given
+ * language on all the cores and writes one line per rack and language to stdout, in
+ * the order of the input. Only a few racks per core are in flight at a time, so any
+ * number of racks can be solved with the same memory. Racks and rates are reported to
+ * stderr at the end.
+ *
+ * Build and run it from the project directory with the app sources on the classpath, e.g.
+ * javac -cp src -d bin batchSolve.java && java -cp bin batchsolve.batchSolve -l en_us,de_de -m sub racks.txt
+ *
+ * Options:
+ *  -l languages  comma separated file names or names of the languages (default en_us)
+ *  -m mode       anagram (all the letters), sub (any subset), phrase (several words) (default anagram).
+ *                sub scans every key with a HistogramScanner for racks of
+ *                HistogramScanner.MIN_RACK_LENGTH letters or more and walks them for shorter ones
+ *  -n length     minimum word length for sub and phrase (default 4)
+ *  -w words      maximum words of a phrase (default 3)
+ *  -f format     tsv or json (default tsv)
+ *  -s order      alpha, length (longest first), tiles (highest letter tile score first) or
+ *                freq (most frequent first, from the lists of -q) (default alpha)
+ *  -k count      only the first count results in that order, picked without sorting the
+ *                others (default all of them)
+ *  -q dir        word frequency lists, one &lt;file name&gt;.freq per language with the most
+ *                frequent word first (default bin/frequencies)
+ *  -t threads    worker threads (default one per core)
+ *  -x millis     time limit of each rack, 0 for none (default 10000)
+ *  -r dir        the text dictionaries (default dictionaries)
+ *  -b dir        the binary dictionaries written by sortDictionaries, used when they exist
+ *                (default assets/dictionaries)
+ * Racks with a * are matched as patterns, like in the app. A ? is a blank.
+ *
+ * A rack that takes longer than its time limit is cancelled, which interrupts its searches,
+ * so one rack can't hold up a worker and with it the whole run. It is written with the
+ * count "timeout" and no results. A phrase search that runs out of steps
+ * (PhraseSolver.DEFAULT_MAX_STEPS) before its time limit is written the same way, with the
+ * phrases it found. The timed out racks are listed on stderr at the end.
+ *
+ * TSV lines are rack, language, number of results (or timeout) and then each result in its
+ * own column. JSON lines are {"rack":..., "language":..., "count":..., "micros":...,
+ * "timedOut":..., "results":[...]}.
+ */
+public class batchSolve {
+
+    private String mode = "anagram";
+    private String format = "tsv";
+    private String order = "alpha";
+    private int best = 0;
+    private int minLength = SubAnagramSearcher.DEFAULT_MIN_LENGTH;
+    private int maxWords = PhraseSolver.DEFAULT_MAX_WORDS;
+    private int threads = 0;
+    private long timeLimitMs = 10000;
+    private File rawDir = new File("dictionaries");
+    private File binaryDir = new File("assets/dictionaries");
+    private File frequencyDir = new File("bin/frequencies");
+    private final List<Language> languages = new ArrayList<Language>();
+    private final Map<Language, CompactDictionary> dictionaries = new EnumMap<Language, CompactDictionary>(Language.class);
+    private final Map<Language, WordRanking> rankings = new EnumMap<Language, WordRanking>(Language.class);
+    /** The scanner of each dictionary for the long racks of -m sub */
+    private final Map<Language, HistogramScanner> scanners = new EnumMap<Language, HistogramScanner>(Language.class);
+
+    /** A KeyNormalizer for each worker and language, they keep state between calls */
+    private final ThreadLocal<Map<Language, KeyNormalizer>> normalizers =
+            new ThreadLocal<Map<Language, KeyNormalizer>>() {
+                @Override
+                protected Map<Language, KeyNormalizer> initialValue() {
+                    return new EnumMap<Language, KeyNormalizer>(Language.class);
+                }
+            };
+
+    /** The results of one rack */
+    private static class Solved {
+        final String rack;
+        final List<List<String>> results = new ArrayList<List<String>>();
+        long nanos;
+        boolean timedOut = false;
+
+        Solved(String rack) {
+            this.rack = rack;
+        }
+    }
+
+    /** A rack handed to the workers */
+    private class Pending implements Callable<Solved> {
+        final String rack;
+        /** When a worker started on the rack in System.nanoTime(), 0 until then */
+        volatile long started = 0;
+        Future<Solved> future;
+
+        Pending(String rack) {
+            this.rack = rack;
+        }
+
+        @Override
+        public Solved call() {
+            started = System.nanoTime();
+            return solve(rack);
+        }
+    }
+
+    public static void main(String[] args) {
+        batchSolve solver = new batchSolve();
+        String input = null;
+        try {
+            for (int i = 0; i < args.length; i++) {
+                String arg = args[i];
+                if (arg.equals("-l")) {
+                    for (String name : args[++i].split(",")) {
+                        Language language = Language.fromName(name.trim());
+                        if (language == null) {
+                            usage("Unknown language: " + name);
+                        }
+                        solver.languages.add(language);
+                    }
+                } else if (arg.equals("-m")) {
+                    solver.mode = args[++i];
+                } else if (arg.equals("-n")) {
+                    solver.minLength = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-w")) {
+                    solver.maxWords = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-f")) {
+                    solver.format = args[++i];
+                } else if (arg.equals("-s")) {
+                    solver.order = args[++i];
+                } else if (arg.equals("-k")) {
+                    solver.best = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-q")) {
+                    solver.frequencyDir = new File(args[++i]);
+                } else if (arg.equals("-t")) {
+                    solver.threads = Integer.parseInt(args[++i]);
+                } else if (arg.equals("-x")) {
+                    solver.timeLimitMs = Long.parseLong(args[++i]);
+                } else if (arg.equals("-r")) {
+                    solver.rawDir = new File(args[++i]);
+                } else if (arg.equals("-b")) {
+                    solver.binaryDir = new File(args[++i]);
+                } else if (arg.startsWith("-") && !arg.equals("-")) {
+                    usage("Unknown option: " + arg);
+                } else {
+                    input = arg;
+                }
+            }
+        } catch (ArrayIndexOutOfBoundsException e) {
+            usage("Missing value of " + args[args.length - 1]);
+        } catch (NumberFormatException e) {
+            usage("Not a number: " + e.getMessage());
+        }
+        if (!Arrays.asList("anagram", "sub", "phrase").contains(solver.mode)) {
+            usage("Unknown mode: " + solver.mode);
+        }
+        if (!solver.format.equals("tsv") && !solver.format.equals("json")) {
+            usage("Unknown format: " + solver.format);
+        }
+        if (!Arrays.asList("alpha", "length", "tiles", "freq").contains(solver.order)) {
+            usage("Unknown order: " + solver.order);
+        }
+        if (solver.languages.isEmpty()) {
+            solver.languages.add(Language.ENGLISH);
+        }
+
+        try {
+            solver.loadDictionaries();
+            BufferedReader in = new BufferedReader(new InputStreamReader(
+                    ((input == null) || input.equals("-")) ? System.in : new FileInputStream(input), "UTF-8"));
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, "UTF-8"));
+            solver.run(in, out);
+            in.close();
+        } catch (IOException e) {
+            System.err.println("IO Error: " + e.getMessage());
+            System.exit(1);
+        }
+    }
+
+    private static void usage(String error) {
+        System.err.println(error);
+        System.err.println("Usage: batchSolve [-l languages] [-m anagram|sub|phrase] [-n minLength] [-w maxWords]"
+                + " [-f tsv|json] [-s alpha|length|tiles|freq] [-k count] [-q frequencyDir] [-t threads] [-x millis]"
+                + " [-r rawDir] [-b binaryDir] [racks file or - for stdin]");
+        System.exit(2);
+    }
+
+    /** Opens the binary dictionary of each language if there is one, else parses the text files,
+     * and builds its scanner for -m sub */
+    private void loadDictionaries() throws IOException {
+        for (Language language : languages) {
+            long start = System.nanoTime();
+            File binary = new File(binaryDir, language.getFileName() + ".dict");
+            CompactDictionary dictionary = binary.isFile()
+                    ? DictionaryFile.read(binary) : CompactDictionary.load(language, rawDir);
+            dictionaries.put(language, dictionary);
+            if (mode.equals("sub")) {
+                scanners.put(language, new HistogramScanner(dictionary));
+            }
+            System.err.println(dictionary + " loaded in " + (System.nanoTime() - start) / 1000000 + " ms");
+            rankings.put(language, loadRanking(language));
+        }
+    }
+
+    /** Returns the ranking of the results of the language in the order of -s */
+    private WordRanking loadRanking(Language language) throws IOException {
+        if (order.equals("length")) {
+            return new WordRanking(WordScorer.LENGTH, false);
+        } else if (order.equals("tiles")) {
+            return new WordRanking(new TileScorer(language), false);
+        } else if (order.equals("freq")) {
+            FrequencyScorer scorer = FrequencyScorer.load(new File(frequencyDir, language.getFileName() + ".freq"));
+            System.err.println(scorer.size() + " word frequencies of " + language.getName());
+            return new WordRanking(scorer, false);
+        }
+        return WordRanking.ALPHABETICAL;
+    }
+
+    /** Solves every rack of in and writes the results to out in the same order */
+    public void run(BufferedReader in, Writer out) throws IOException {
+        ExecutorService executor = (threads > 0)
+                ? Executors.newFixedThreadPool(threads) : MultiDictionarySearcher.newWorkerPool();
+        int workers = (threads > 0) ? threads : Runtime.getRuntime().availableProcessors();
+        // Enough racks in flight to keep every worker busy, few enough to bound the memory
+        int window = 4 * workers;
+        LinkedList<Pending> pending = new LinkedList<Pending>();
+        LatencyHistogram latencies = new LatencyHistogram();
+        List<String> timedOut = new ArrayList<String>();
+        long racks = 0;
+        long start = System.nanoTime();
+        try {
+            String line = in.readLine();
+            while (line != null) {
+                final String rack = line.trim();
+                if (!rack.isEmpty()) {
+                    Pending next = new Pending(rack);
+                    next.future = executor.submit(next);
+                    pending.add(next);
+                    racks++;
+                }
+                while (pending.size() >= window) {
+                    write(await(pending.removeFirst()), out, latencies, timedOut);
+                }
+                line = in.readLine();
+            }
+            while (!pending.isEmpty()) {
+                write(await(pending.removeFirst()), out, latencies, timedOut);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        } catch (ExecutionException e) {
+            throw new IOException("Solving failed: " + e.getCause(), e.getCause());
+        } finally {
+            out.flush();
+            executor.shutdownNow();
+        }
+
+        long elapsed = System.nanoTime() - start;
+        System.err.println(racks + " racks in " + elapsed / 1000000 + " ms, "
+                + ((elapsed > 0) ? racks * 1000000000L / elapsed : racks) + " racks/s on " + workers + " threads");
+        System.err.println("latency per rack: " + latencies);
+        if (!timedOut.isEmpty()) {
+            System.err.println(timedOut.size() + " racks timed out: " + timedOut);
+        }
+    }
+
+    /** Waits for the rack until its time limit, counted from when a worker started on it, and
+     * cancels it once that has passed. Returns the results, or a timed out rack without any */
+    private Solved await(Pending rack) throws InterruptedException, ExecutionException {
+        while (true) {
+            long started = rack.started;
+            if ((timeLimitMs <= 0) || rack.future.isDone()) {
+                return rack.future.get();
+            }
+            // Until a worker starts on it, look again now and then
+            long wait = (started == 0) ? 10
+                    : timeLimitMs - (System.nanoTime() - started) / 1000000L;
+            try {
+                return rack.future.get(Math.max(wait, 0), TimeUnit.MILLISECONDS);
+            } catch (TimeoutException e) {
+                if ((started != 0) && (wait <= 0)) {
+                    // Interrupts the worker, which the searches check, so it's free for the next rack
+                    rack.future.cancel(true);
+                    Solved solved = new Solved(rack.rack);
+                    solved.timedOut = true;
+                    solved.nanos = System.nanoTime() - started;
+                    for (int i = 0; i < languages.size(); i++) {
+                        solved.results.add(Collections.<String>emptyList());
+                    }
+                    return solved;
+                }
+            }
+        }
+    }
+
+    /** Solves the rack in every language */
+    private Solved solve(String rack) {
+        long start = System.nanoTime();
+        Solved solved = new Solved(rack);
+        for (Language language : languages) {
+            CompactDictionary dictionary = dictionaries.get(language);
+            Collection<String> words;
+            if (rack.contains("*")) {
+                words = dictionary.getStarMatches(rack);
+            } else {
+                String letters = fold(language, rack);
+                if (mode.equals("phrase") && !SubAnagramSearcher.hasBlanks(letters)) {
+                    final List<String> phrases = new ArrayList<String>();
+                    boolean complete = new PhraseSolver(dictionary).solve(letters, maxWords, minLength,
+                            PhraseSolver.DEFAULT_MAX_RESULTS, new SubAnagramSearcher.MatchListener() {
+                                @Override
+                                public boolean onMatches(Collection<String> found) {
+                                    phrases.addAll(found);
+                                    return true;
+                                }
+                            });
+                    solved.timedOut |= !complete;
+                    words = phrases;
+                } else if (mode.equals("sub")) {
+                    // The walk slows down with every letter, the scan takes about the same time for any rack
+                    words = (letters.length() >= HistogramScanner.MIN_RACK_LENGTH)
+                            ? scanners.get(language).search(letters, minLength)
+                            : new SubAnagramSearcher(dictionary).search(letters, minLength);
+                } else if (SubAnagramSearcher.hasBlanks(letters)) {
+                    words = new SubAnagramSearcher(dictionary).search(letters, letters.length());
+                } else {
+                    words = dictionary.getMatchingAnagrams(letters);
+                }
+            }
+            WordRanking ranking = rankings.get(language);
+            List<String> sorted;
+            if (best > 0) {
+                TopK top = new TopK(best, ranking);
+                for (String word : words) {
+                    top.offer(word);
+                }
+                sorted = top.toList();
+            } else {
+                sorted = new ArrayList<String>(words);
+                Collections.sort(sorted, ranking);
+            }
+            solved.results.add(sorted);
+        }
+        solved.nanos = System.nanoTime() - start;
+        return solved;
+    }
+
+    /** Folds the rack like the app does before a search */
+    private String fold(Language language, String rack) {
+        Map<Language, KeyNormalizer> mine = normalizers.get();
+        KeyNormalizer normalizer = mine.get(language);
+        if (normalizer == null) {
+            normalizer = new KeyNormalizer(language);
+            mine.put(language, normalizer);
+        }
+        normalizer.fold(rack);
+        return normalizer.toString();
+    }
+
+    private void write(Solved solved, Writer out, LatencyHistogram latencies, List<String> timedOut)
+            throws IOException {
+        latencies.record(solved.nanos);
+        if (solved.timedOut) {
+            timedOut.add(solved.rack);
+        }
+        for (int i = 0; i < languages.size(); i++) {
+            List<String> results = solved.results.get(i);
+            String language = languages.get(i).getFileName();
+            if (format.equals("json")) {
+                out.write("{\"rack\":" + quote(solved.rack) + ",\"language\":" + quote(language)
+                        + ",\"count\":" + results.size() + ",\"micros\":" + solved.nanos / 1000
+                        + ",\"timedOut\":" + solved.timedOut + ",\"results\":[");
+                for (int j = 0; j < results.size(); j++) {
+                    if (j > 0) {
+                        out.write(',');
+                    }
+                    out.write(quote(results.get(j)));
+                }
+                out.write("]}\n");
+            } else {
+                out.write(tsv(solved.rack) + '\t' + language + '\t'
+                        + (solved.timedOut ? "timeout" : String.valueOf(results.size())));
+                for (String result : results) {
+                    out.write('\t');
+                    out.write(tsv(result));
+                }
+                out.write('\n');
+            }
+        }
+    }
+
+    /** Returns the value without tabs or line breaks, which would break the columns */
+    private static String tsv(String value) {
+        return value.replace('\t', ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /** Returns the value as a JSON string */
+    private static String quote(String value) {
+        StringBuilder quoted = new StringBuilder(value.length() + 2).append('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if ((c == '"') || (c == '\\')) {
+                quoted.append('\\').append(c);
+            } else if (c < 0x20) {
+                quoted.append(String.format("\\u%04x", (int) c));
+            } else {
+                quoted.append(c);
+            }
+        }
+        return quoted.append('"').toString();
+    }
+}
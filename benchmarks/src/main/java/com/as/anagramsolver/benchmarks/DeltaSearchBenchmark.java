@@ -0,0 +1,117 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.DeltaSearcher;
+import com.as.anagramsolver.engine.SubAnagramSearcher;
+
+/** What a rack that gains or loses one letter costs with DeltaSearcher, against a new walk
+ * of the whole rack. Before each operation the DeltaSearcher searches the rack it starts
+ * from, outside of the measured time: rackLength letters for add, one more for remove. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class DeltaSearchBenchmark {
+
+	private static final int SAMPLES = 64;
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	@Param({ "6", "8", "10", "12" })
+	public int rackLength;
+
+	private SubAnagramSearcher walk;
+	private DeltaSearcher delta;
+	/** The racks with one letter more than rackLength */
+	private String[] racks;
+	private int next = 0;
+	/** The rack of the current operation and the same without its last letter */
+	private String grown, smaller;
+	private final Counter counter = new Counter();
+
+	@Setup
+	public void setUp() throws IOException {
+		CompactDictionary dictionary = Dictionaries.load(language);
+		walk = new SubAnagramSearcher(dictionary);
+		delta = new DeltaSearcher(dictionary);
+		racks = Dictionaries.racks(Dictionaries.lines(language + "_sorted"), rackLength + 1, SAMPLES, 42);
+	}
+
+	/** Picks the next rack, whichever benchmark runs */
+	@Setup(Level.Invocation)
+	public void nextRack() {
+		grown = racks[next++ & (SAMPLES - 1)];
+		smaller = grown.substring(0, rackLength);
+	}
+
+	/** The walk of the rack with the added letter */
+	@Benchmark
+	public long walk() {
+		counter.count = 0;
+		walk.search(grown, SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+		return counter.count;
+	}
+
+	@Benchmark
+	public long addLetter(Smaller before) {
+		counter.count = 0;
+		delta.search(grown, SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+		return counter.count;
+	}
+
+	@Benchmark
+	public long removeLetter(Grown before) {
+		counter.count = 0;
+		delta.search(smaller, SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+		return counter.count;
+	}
+
+	/** Has the DeltaSearcher search the rack without its last letter first */
+	@State(Scope.Thread)
+	public static class Smaller {
+		@Setup(Level.Invocation)
+		public void search(DeltaSearchBenchmark benchmark) {
+			benchmark.delta.search(benchmark.smaller, SubAnagramSearcher.DEFAULT_MIN_LENGTH, new Counter());
+		}
+	}
+
+	/** Has the DeltaSearcher search the whole rack first */
+	@State(Scope.Thread)
+	public static class Grown {
+		@Setup(Level.Invocation)
+		public void search(DeltaSearchBenchmark benchmark) {
+			benchmark.delta.search(benchmark.grown, SubAnagramSearcher.DEFAULT_MIN_LENGTH, new Counter());
+		}
+	}
+
+	/** Counts the words found without keeping them */
+	private static class Counter implements SubAnagramSearcher.MatchListener {
+		long count;
+
+		@Override
+		public boolean onMatches(Collection<String> words) {
+			count += words.size();
+			return true;
+		}
+	}
+}
@@ -0,0 +1,90 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.Language;
+
+/** Reads the text dictionaries for the benchmarks. They are looked up in ../dictionaries,
+ * relative to the benchmarks directory, or in the directory of the anagramsolver.raw
+ * system property. */
+final class Dictionaries {
+
+	/** The languages with a text dictionary, the values of the language params */
+	static final String ALL = "en_us,de_de,pl_pl,fr_fr,es_es,it_it";
+
+	private Dictionaries() {
+	}
+
+	static File rawDir() {
+		return new File(System.getProperty("anagramsolver.raw", "../dictionaries"));
+	}
+
+	static Language language(String fileName) {
+		Language language = Language.fromName(fileName);
+		if (language == null) {
+			throw new IllegalArgumentException("Unknown language: " + fileName);
+		}
+		return language;
+	}
+
+	static CompactDictionary load(String fileName) throws IOException {
+		return CompactDictionary.load(language(fileName), rawDir());
+	}
+
+	/** Returns the lines of the given text dictionary file, e.g. en_us or en_us_sorted */
+	static List<String> lines(String rawFileName) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		BufferedReader in = new BufferedReader(new InputStreamReader(
+				new FileInputStream(new File(rawDir(), rawFileName)), "UTF-8"));
+		try {
+			String line = in.readLine();
+			while (line != null) {
+				if (lines.isEmpty() && line.startsWith("\uFEFF")) {
+					line = line.substring(1);
+				}
+				lines.add(line);
+				line = in.readLine();
+			}
+		} finally {
+			in.close();
+		}
+		return lines;
+	}
+
+	/** Returns count lines picked at random, the same ones for the same seed */
+	static String[] sample(List<String> lines, int count, long seed) {
+		Random random = new Random(seed);
+		String[] sample = new String[count];
+		for (int i = 0; i < count; i++) {
+			sample[i] = lines.get(random.nextInt(lines.size()));
+		}
+		return sample;
+	}
+
+	/** Returns count racks of length letters taken at random from the keys, so common letters
+	 * come up as often as in the dictionary */
+	static String[] racks(List<String> keys, int length, int count, long seed) {
+		Random random = new Random(seed);
+		String[] racks = new String[count];
+		char[] rack = new char[length];
+		for (int i = 0; i < count; i++) {
+			for (int j = 0; j < length; j++) {
+				String key = keys.get(random.nextInt(keys.size()));
+				while (key.isEmpty()) {
+					key = keys.get(random.nextInt(keys.size()));
+				}
+				rack[j] = key.charAt(random.nextInt(key.length()));
+			}
+			racks[i] = new String(rack);
+		}
+		return racks;
+	}
+}
@@ -0,0 +1,104 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.FrontCodedDictionary;
+import com.as.anagramsolver.engine.SortedKeyIndex;
+import com.as.anagramsolver.engine.SubAnagramSearcher;
+
+/** What front coding costs: the same exact lookups as LookupBenchmark and sub-anagram walks
+ * of 10 letters, on the FrontCodedDictionary with blocks of blockSize entries or on the
+ * CompactDictionary itself for blockSize 0. The sizes of both are printed by the setup. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class FrontCodingBenchmark {
+
+	private static final int SAMPLES = 1024;
+	private static final int RACKS = 64;
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	@Param({ "0", "8", "16", "32" })
+	public int blockSize;
+
+	private SortedKeyIndex index;
+	private SubAnagramSearcher walk;
+	private char[][] keys;
+	private String[] racks;
+	private int next = 0;
+	private final List<String> words = new ArrayList<String>();
+	private final Counter counter = new Counter();
+
+	@Setup
+	public void setUp() throws IOException {
+		CompactDictionary dictionary = Dictionaries.load(language);
+		if (blockSize > 0) {
+			FrontCodedDictionary compressed = FrontCodedDictionary.compress(dictionary, blockSize);
+			System.out.println(compressed);
+			index = compressed;
+		} else {
+			System.out.println(dictionary);
+			index = dictionary;
+		}
+		walk = new SubAnagramSearcher(index);
+
+		List<String> lines = Dictionaries.lines(language + "_sorted");
+		String[] letters = Dictionaries.sample(lines, SAMPLES, 42);
+		keys = new char[SAMPLES][];
+		for (int i = 0; i < SAMPLES; i++) {
+			String key = ((i % 2 == 1) && !letters[i].isEmpty()) ? 'q' + letters[i].substring(1) : letters[i];
+			keys[i] = key.toCharArray();
+			Arrays.sort(keys[i]);
+		}
+		racks = Dictionaries.racks(lines, 10, RACKS, 42);
+	}
+
+	@Benchmark
+	public int exactLookup() {
+		char[] key = keys[next++ & (SAMPLES - 1)];
+		words.clear();
+		index.addWords(key, key.length, words);
+		return words.size();
+	}
+
+	@Benchmark
+	public long walk() {
+		counter.count = 0;
+		walk.search(racks[next++ & (RACKS - 1)], SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+		return counter.count;
+	}
+
+	/** Counts the words found without keeping them */
+	private static class Counter implements SubAnagramSearcher.MatchListener {
+		long count;
+
+		@Override
+		public boolean onMatches(Collection<String> words) {
+			count += words.size();
+			return true;
+		}
+	}
+}
@@ -0,0 +1,77 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.KeyNormalizer;
+import com.as.anagramsolver.engine.LineReader;
+
+/** The normalizing loop of sortDictionaries, one whole dictionary file per operation:
+ * reading every line and normalizing it, with the LineReader and with the BufferedReader
+ * it replaced. The keys are summed instead of written so only the reading is compared. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LineReadingBenchmark {
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	private File file;
+	private KeyNormalizer normalizer;
+
+	@Setup
+	public void setUp() {
+		file = new File(Dictionaries.rawDir(), language);
+		normalizer = new KeyNormalizer(Dictionaries.language(language));
+	}
+
+	@Benchmark
+	public long lineReader() throws IOException {
+		long letters = 0;
+		LineReader in = LineReader.open(file);
+		try {
+			while (in.next()) {
+				letters += normalizer.normalize(in);
+			}
+		} finally {
+			in.close();
+		}
+		return letters;
+	}
+
+	@Benchmark
+	public long bufferedReaderBaseline() throws IOException {
+		long letters = 0;
+		BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(file), "UTF-8"));
+		try {
+			String line = in.readLine();
+			while (line != null) {
+				letters += normalizer.normalize(line);
+				line = in.readLine();
+			}
+		} finally {
+			in.close();
+		}
+		return letters;
+	}
+}
@@ -0,0 +1,78 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.DictionaryFile;
+import com.as.anagramsolver.engine.FrontCodedDictionary;
+import com.as.anagramsolver.engine.HistogramScanner;
+import com.as.anagramsolver.engine.PatternIndex;
+
+/** The cost of building a dictionary: parsing the text files, reading the front coded binary
+ * file that sortDictionaries writes to assets/dictionaries, as it is for the app and expanded
+ * for batchSolve, and building the indexes made on top of a loaded dictionary. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 2, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class LoadBenchmark {
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	private CompactDictionary dictionary;
+	private byte[] binary;
+
+	@Setup
+	public void setUp() throws IOException {
+		dictionary = Dictionaries.load(language);
+		// The same bytes as the .dict file of the assets
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DictionaryFile.write(FrontCodedDictionary.compress(dictionary), out);
+		binary = out.toByteArray();
+	}
+
+	@Benchmark
+	public CompactDictionary parseText() throws IOException {
+		return Dictionaries.load(language);
+	}
+
+	/** What DictionaryDBCreator reads before it fills the database */
+	@Benchmark
+	public FrontCodedDictionary readFrontCoded() throws IOException {
+		return DictionaryFile.readFrontCoded(ByteBuffer.wrap(binary));
+	}
+
+	/** What batchSolve reads, the same file expanded into a CompactDictionary */
+	@Benchmark
+	public CompactDictionary readExpanded() throws IOException {
+		return DictionaryFile.read(ByteBuffer.wrap(binary));
+	}
+
+	@Benchmark
+	public PatternIndex buildPatternIndex() {
+		return new PatternIndex(dictionary);
+	}
+
+	@Benchmark
+	public HistogramScanner buildHistogramScanner() {
+		return new HistogramScanner(dictionary);
+	}
+}
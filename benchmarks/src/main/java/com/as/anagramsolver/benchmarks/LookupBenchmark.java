@@ -0,0 +1,55 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.IOException;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+
+/** Exact anagram lookups: the letters of a word, found by their key. Half of the sampled keys
+ * are real keys and half are the same letters with one changed, which mostly aren't. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class LookupBenchmark {
+
+	private static final int SAMPLES = 1024;
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	private CompactDictionary dictionary;
+	private String[] letters;
+	private int next = 0;
+
+	@Setup
+	public void setUp() throws IOException {
+		dictionary = Dictionaries.load(language);
+		letters = Dictionaries.sample(Dictionaries.lines(language + "_sorted"), SAMPLES, 42);
+		for (int i = 1; i < SAMPLES; i += 2) {
+			if (!letters[i].isEmpty()) {
+				letters[i] = 'q' + letters[i].substring(1);
+			}
+		}
+	}
+
+	@Benchmark
+	public Set<String> exactLookup() {
+		return dictionary.getMatchingAnagrams(letters[next++ & (SAMPLES - 1)]);
+	}
+}
@@ -0,0 +1,20 @@
+package com.as.anagramsolver.benchmarks;
+
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.options.CommandLineOptions;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/** Runs the benchmarks with the usual JMH command line and the gc profiler always on, so
+ * every result comes with its allocated bytes per operation (gc.alloc.rate.norm). */
+public class Main {
+
+	public static void main(String[] args) throws Exception {
+		Options options = new OptionsBuilder()
+			.parent(new CommandLineOptions(args))
+			.addProfiler(GCProfiler.class)
+			.build();
+		new Runner(options).run();
+	}
+}
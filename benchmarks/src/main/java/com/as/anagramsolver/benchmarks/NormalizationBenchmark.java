@@ -0,0 +1,67 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.IOException;
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.Locale;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.KeyNormalizer;
+
+/** Turning words into keys, one word per operation: the KeyNormalizer of the generator and
+ * the searches, and as a baseline the NFD and regex pipeline it replaced. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class NormalizationBenchmark {
+
+	private static final int SAMPLES = 4096;
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	private KeyNormalizer normalizer;
+	private Pattern marks;
+	private Locale locale;
+	private String[] words;
+	private int next = 0;
+
+	@Setup
+	public void setUp() throws IOException {
+		normalizer = new KeyNormalizer(Dictionaries.language(language));
+		marks = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
+		locale = Dictionaries.language(language).getLocale();
+		words = Dictionaries.sample(Dictionaries.lines(language), SAMPLES, 42);
+	}
+
+	@Benchmark
+	public int keyNormalizer() {
+		return normalizer.normalize(words[next++ & (SAMPLES - 1)]);
+	}
+
+	@Benchmark
+	public String regexBaseline() {
+		String word = words[next++ & (SAMPLES - 1)];
+		String folded = marks.matcher(Normalizer.normalize(word, Normalizer.Form.NFD)).replaceAll("")
+				.toLowerCase(locale);
+		char[] key = folded.toCharArray();
+		Arrays.sort(key);
+		return new String(key);
+	}
+}
@@ -0,0 +1,85 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.SubAnagramSearcher;
+import com.as.anagramsolver.engine.TileScorer;
+import com.as.anagramsolver.engine.TopK;
+import com.as.anagramsolver.engine.WordRanking;
+import com.as.anagramsolver.engine.WordScorer;
+
+/** What ranking the words of a sub-anagram search of 12 letters costs: sorting all of them
+ * against picking the first 50 with a TopK, in the order of each sort option of the app.
+ * The words are found in the setup, only the ranking is measured. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class RankingBenchmark {
+
+	private static final int RACKS = 64;
+	private static final int K = 50;
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	@Param({ "alpha", "length", "tiles" })
+	public String order;
+
+	private WordRanking ranking;
+	private List<List<String>> results;
+	private int next = 0;
+
+	@Setup
+	public void setUp() throws IOException {
+		CompactDictionary dictionary = Dictionaries.load(language);
+		if (order.equals("length")) {
+			ranking = new WordRanking(WordScorer.LENGTH, false);
+		} else if (order.equals("tiles")) {
+			ranking = new WordRanking(new TileScorer(Dictionaries.language(language)), false);
+		} else {
+			ranking = WordRanking.ALPHABETICAL;
+		}
+		SubAnagramSearcher walk = new SubAnagramSearcher(dictionary);
+		results = new ArrayList<List<String>>();
+		for (String rack : Dictionaries.racks(Dictionaries.lines(language + "_sorted"), 12, RACKS, 42)) {
+			results.add(new ArrayList<String>(walk.search(rack, SubAnagramSearcher.DEFAULT_MIN_LENGTH)));
+		}
+	}
+
+	@Benchmark
+	public String sortAll() {
+		List<String> sorted = new ArrayList<String>(results.get(next++ & (RACKS - 1)));
+		Collections.sort(sorted, ranking);
+		return sorted.isEmpty() ? null : sorted.get(0);
+	}
+
+	@Benchmark
+	public String topK() {
+		TopK top = new TopK(K, ranking);
+		for (String word : results.get(next++ & (RACKS - 1))) {
+			top.offer(word);
+		}
+		List<String> best = top.toList();
+		return best.isEmpty() ? null : best.get(0);
+	}
+}
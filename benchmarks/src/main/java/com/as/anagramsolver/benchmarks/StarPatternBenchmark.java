@@ -0,0 +1,79 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+
+/** Star pattern searches of each kind, made from random words of the dictionary:
+ * prefix abc*, suffix *cde, infix ab*de, single a?cd* and contains *bcd*, which has no
+ * literal start or end and so goes through every word. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class StarPatternBenchmark {
+
+	private static final int SAMPLES = 256;
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	@Param({ "prefix", "suffix", "infix", "single", "contains" })
+	public String kind;
+
+	private CompactDictionary dictionary;
+	private String[] patterns;
+	private int next = 0;
+
+	@Setup
+	public void setUp() throws IOException {
+		dictionary = Dictionaries.load(language);
+		// Build the index here so it isn't part of the first measured search
+		dictionary.getPatternIndex();
+		List<String> words = Dictionaries.lines(language);
+		patterns = new String[SAMPLES];
+		int seed = 42;
+		for (int i = 0; i < SAMPLES; ) {
+			String word = Dictionaries.sample(words, 1, seed++)[0];
+			if (word.length() >= 5) {
+				patterns[i++] = pattern(word);
+			}
+		}
+	}
+
+	private String pattern(String word) {
+		int length = word.length();
+		if (kind.equals("prefix")) {
+			return word.substring(0, 3) + "*";
+		} else if (kind.equals("suffix")) {
+			return "*" + word.substring(length - 3);
+		} else if (kind.equals("infix")) {
+			return word.substring(0, 2) + "*" + word.substring(length - 2);
+		} else if (kind.equals("single")) {
+			return word.charAt(0) + "?" + word.substring(2, 4) + "*";
+		}
+		return "*" + word.substring(1, 4) + "*";
+	}
+
+	@Benchmark
+	public Set<String> starMatches() {
+		return dictionary.getStarMatches(patterns[next++ & (SAMPLES - 1)]);
+	}
+}
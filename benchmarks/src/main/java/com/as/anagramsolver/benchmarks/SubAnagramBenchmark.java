@@ -0,0 +1,106 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Random;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.HistogramScanner;
+import com.as.anagramsolver.engine.Language;
+import com.as.anagramsolver.engine.SubAnagramSearcher;
+
+/** Compares the two sub-anagram engines, the SubAnagramSearcher walk and the HistogramScanner
+ * scan, on racks of growing length and reports the median time of each and which one wins,
+ * to check HistogramScanner.MIN_RACK_LENGTH. Run it from the benchmarks directory after
+ * "mvn package" with the directory of the text dictionaries and optionally the languages to
+ * test, e.g.
+ * java -cp target/benchmarks.jar com.as.anagramsolver.benchmarks.SubAnagramBenchmark ../dictionaries en_us de_de
+ */
+public class SubAnagramBenchmark {
+
+	private static final int RACKS_PER_LENGTH = 50;
+	private static final int MIN_RACK = 4, MAX_RACK = 16;
+
+	public static void main(String[] args) throws IOException {
+		File rawDir = new File(args.length > 0 ? args[0] : "dictionaries");
+		for (int i = 1; i < Math.max(2, args.length); i++) {
+			Language language = (args.length > 1) ? Language.fromName(args[i]) : Language.ENGLISH;
+			run(CompactDictionary.load(language, rawDir), new Random(42));
+		}
+	}
+
+	/** Times both engines on RACKS_PER_LENGTH random racks of each length, prints the report and returns it */
+	public static String run(CompactDictionary dictionary, Random random) {
+		long start = System.nanoTime();
+		HistogramScanner scanner = new HistogramScanner(dictionary);
+		long build = (System.nanoTime() - start) / 1000000;
+		SubAnagramSearcher searcher = new SubAnagramSearcher(dictionary);
+		Counter counter = new Counter();
+		// Warm up both so the first lengths aren't timed while they are still interpreted
+		for (int i = 0; i < RACKS_PER_LENGTH; i++) {
+			String rack = randomRack(dictionary, random, MAX_RACK);
+			searcher.search(rack, SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+			scanner.search(rack, SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+		}
+
+		StringBuilder report = new StringBuilder();
+		report.append(dictionary).append(", scanner built in ").append(build).append(" ms, ")
+			.append(scanner.getHeapFootprint() / 1024).append(" KB\n");
+		for (int length = MIN_RACK; length <= MAX_RACK; length++) {
+			long[] walk = new long[RACKS_PER_LENGTH];
+			long[] scan = new long[RACKS_PER_LENGTH];
+			long found = 0;
+			for (int i = 0; i < RACKS_PER_LENGTH; i++) {
+				String rack = randomRack(dictionary, random, length);
+				counter.count = 0;
+				start = System.nanoTime();
+				searcher.search(rack, SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+				walk[i] = System.nanoTime() - start;
+				found += counter.count;
+				start = System.nanoTime();
+				scanner.search(rack, SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+				scan[i] = System.nanoTime() - start;
+			}
+			long walkMedian = median(walk) / 1000;
+			long scanMedian = median(scan) / 1000;
+			report.append("rack of ").append(length)
+				.append(": walk ").append(walkMedian).append(" us, scan ").append(scanMedian)
+				.append(" us, ").append(found / RACKS_PER_LENGTH).append(" words, ")
+				.append(walkMedian <= scanMedian ? "walk" : "scan").append(" wins\n");
+		}
+		System.out.println(report);
+		return report.toString();
+	}
+
+	/** Returns length letters taken at random from random keys, so common letters come up more often */
+	private static String randomRack(CompactDictionary dictionary, Random random, int length) {
+		char[] rack = new char[length];
+		for (int i = 0; i < length; i++) {
+			int key;
+			do {
+				key = random.nextInt(dictionary.getKeyCount());
+			} while (dictionary.getKeyLength(key) == 0);
+			rack[i] = dictionary.getKeyLetter(key, random.nextInt(dictionary.getKeyLength(key)));
+		}
+		return new String(rack);
+	}
+
+	private static long median(long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		return sorted[sorted.length / 2];
+	}
+
+	/** Counts the words found without keeping them */
+	private static class Counter implements SubAnagramSearcher.MatchListener {
+		long count;
+
+		@Override
+		public boolean onMatches(Collection<String> words) {
+			count += words.size();
+			return true;
+		}
+	}
+}
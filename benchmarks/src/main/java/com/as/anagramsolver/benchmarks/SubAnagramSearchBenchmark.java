@@ -0,0 +1,80 @@
+package com.as.anagramsolver.benchmarks;
+
+import java.io.IOException;
+import java.util.Collection;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.HistogramScanner;
+import com.as.anagramsolver.engine.SubAnagramSearcher;
+
+/** Sub-anagram searches with racks of 6 to 20 letters, with both engines: the walk of the keys
+ * that the app uses and the scan of the letter histograms. Each operation is one rack and
+ * counts the words found without keeping them. */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class SubAnagramSearchBenchmark {
+
+	private static final int SAMPLES = 64;
+
+	@Param({ "en_us", "de_de", "pl_pl", "fr_fr", "es_es", "it_it" })
+	public String language;
+
+	@Param({ "6", "8", "10", "12", "14", "16", "18", "20" })
+	public int rackLength;
+
+	private SubAnagramSearcher walk;
+	private HistogramScanner scan;
+	private String[] racks;
+	private int next = 0;
+	private final Counter counter = new Counter();
+
+	@Setup
+	public void setUp() throws IOException {
+		CompactDictionary dictionary = Dictionaries.load(language);
+		walk = new SubAnagramSearcher(dictionary);
+		scan = new HistogramScanner(dictionary);
+		racks = Dictionaries.racks(Dictionaries.lines(language + "_sorted"), rackLength, SAMPLES, 42);
+	}
+
+	@Benchmark
+	public long walk() {
+		counter.count = 0;
+		walk.search(racks[next++ & (SAMPLES - 1)], SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+		return counter.count;
+	}
+
+	@Benchmark
+	public long scan() {
+		counter.count = 0;
+		scan.search(racks[next++ & (SAMPLES - 1)], SubAnagramSearcher.DEFAULT_MIN_LENGTH, counter);
+		return counter.count;
+	}
+
+	/** Counts the words found without keeping them */
+	private static class Counter implements SubAnagramSearcher.MatchListener {
+		long count;
+
+		@Override
+		public boolean onMatches(Collection<String> words) {
+			count += words.size();
+			return true;
+		}
+	}
+}
@@ -0,0 +1,101 @@
+package com.as.anagramsolver.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DeltaSearcherTest {
+
+	private CompactDictionary dictionary;
+	private DeltaSearcher delta;
+	private InMemoryMetrics metrics;
+
+	@Before
+	public void setUp() throws IOException {
+		dictionary = TestDictionaries.english();
+		delta = new DeltaSearcher(dictionary);
+		metrics = new InMemoryMetrics();
+		Metrics.setSink(metrics);
+	}
+
+	@After
+	public void tearDown() {
+		Metrics.setSink(null);
+	}
+
+	@Test
+	public void findsTheSameWordsAsAFullSearchWhenALetterIsAddedOrRemoved() {
+		// Typed one letter at a time, then deleted again, with a few letters that repeat
+		String[] racks = { "d", "do", "dor", "dorm", "dormi", "dormit", "dormito", "dormitor", "dormitory",
+			"dormitor", "dormito", "ormito", "ormitoy", "rmitoy", "rmtoy", "rmto", "rmtoo", "rmtooo",
+			"mtooo", "tooo", "too", "to", "t", "" };
+		for (String rack : racks) {
+			assertSearch(rack, 1);
+		}
+		// Every step but the first is a delta
+		assertEquals(racks.length - 1, metrics.getCount(Metrics.DELTA_SEARCHES));
+	}
+
+	@Test
+	public void searchesAgainForAnythingElse() {
+		assertSearch("teas", 1);
+		// Two letters more, another minLength, a blank and a replaced letter
+		assertSearch("teasat", 1);
+		assertSearch("teasat", 3);
+		assertSearch("teasat?", 3);
+		assertSearch("teasaz", 3);
+		assertEquals(0, metrics.getCount(Metrics.DELTA_SEARCHES));
+		assertSearch("teasa", 3);
+		assertEquals(1, metrics.getCount(Metrics.DELTA_SEARCHES));
+		// Taking the blank away again only drops the words that needed it
+		assertSearch("teasa?", 3);
+		assertSearch("teasa", 3);
+		assertEquals(2, metrics.getCount(Metrics.DELTA_SEARCHES));
+	}
+
+	@Test
+	public void doesNotKeepASearchThatWasStopped() {
+		final int[] calls = { 0 };
+		delta.search("dormitory", 1, new SubAnagramSearcher.MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				calls[0]++;
+				return false;
+			}
+		});
+		assertEquals(1, calls[0]);
+		assertSearch("dormitor", 1);
+		assertEquals(0, metrics.getCount(Metrics.DELTA_SEARCHES));
+	}
+
+	@Test
+	public void clearForgetsTheLastResult() {
+		assertSearch("listen", 1);
+		delta.clear();
+		assertSearch("listens", 1);
+		assertEquals(0, metrics.getCount(Metrics.DELTA_SEARCHES));
+	}
+
+	/** Searches the rack with the DeltaSearcher and checks it hands out the words of a full
+	 * search, each of them once */
+	private void assertSearch(String rack, int minLength) {
+		final List<String> found = new ArrayList<String>();
+		delta.search(rack, minLength, new SubAnagramSearcher.MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				found.addAll(words);
+				return true;
+			}
+		});
+		assertEquals(rack, new SubAnagramSearcher(dictionary).search(rack, minLength), new HashSet<String>(found));
+		assertEquals(rack + " handed out a word twice", new HashSet<String>(found).size(), found.size());
+	}
+}
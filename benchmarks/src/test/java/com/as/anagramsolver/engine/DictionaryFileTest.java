@@ -0,0 +1,154 @@
+package com.as.anagramsolver.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.util.zip.CRC32;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class DictionaryFileTest {
+
+	private CompactDictionary dictionary;
+
+	@Before
+	public void setUp() throws IOException {
+		dictionary = TestDictionaries.english();
+	}
+
+	@Test
+	public void readsBackACompactDictionary() throws IOException {
+		byte[] bytes = compactBytes();
+		assertSame(dictionary, DictionaryFile.read(ByteBuffer.wrap(bytes)));
+		assertSame(dictionary, DictionaryFile.readFrontCoded(ByteBuffer.wrap(bytes)).expand());
+	}
+
+	@Test
+	public void readsBackAFrontCodedDictionary() throws IOException {
+		byte[] bytes = frontCodedBytes();
+		assertSame(dictionary, DictionaryFile.readFrontCoded(ByteBuffer.wrap(bytes)).expand());
+		assertSame(dictionary, DictionaryFile.read(ByteBuffer.wrap(bytes)));
+	}
+
+	@Test
+	public void readsMappedFilesAndStreams() throws IOException {
+		byte[] bytes = frontCodedBytes();
+		File file = File.createTempFile("dictionary", ".dict");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			try {
+				out.write(bytes);
+			} finally {
+				out.close();
+			}
+			assertSame(dictionary, DictionaryFile.readFrontCoded(file).expand());
+			assertSame(dictionary, DictionaryFile.read(file));
+		} finally {
+			file.delete();
+		}
+		assertSame(dictionary, DictionaryFile.readFrontCoded(new ByteArrayInputStream(bytes)).expand());
+		// A stream that doesn't know its length
+		InputStream unknownLength = new FilterInputStream(new ByteArrayInputStream(bytes)) {
+			@Override
+			public int available() {
+				return 0;
+			}
+		};
+		assertSame(dictionary, DictionaryFile.read(unknownLength));
+	}
+
+	@Test
+	public void rejectsACorruptFile() throws IOException {
+		for (byte[] bytes : new byte[][] { compactBytes(), frontCodedBytes() }) {
+			for (int i : new int[] { 0, 5, 12, bytes.length / 2, bytes.length - 9, bytes.length - 1 }) {
+				byte[] corrupt = bytes.clone();
+				corrupt[i] ^= 0x10;
+				assertRejected(corrupt, "checksum");
+			}
+		}
+	}
+
+	@Test
+	public void rejectsAnotherFileWithAValidChecksum() throws IOException {
+		byte[] bytes = compactBytes();
+		ByteBuffer.wrap(bytes).putInt(0, 0x12345678);
+		assertRejected(withChecksum(bytes), "Not a dictionary file");
+	}
+
+	@Test
+	public void rejectsAnUnknownVersion() throws IOException {
+		for (int version : new int[] { 0, 3, DictionaryFile.VERSION + 100 }) {
+			byte[] bytes = frontCodedBytes();
+			ByteBuffer.wrap(bytes).putInt(4, version);
+			assertRejected(withChecksum(bytes), "version " + version);
+		}
+	}
+
+	@Test
+	public void rejectsATruncatedFile() throws IOException {
+		byte[] bytes = compactBytes();
+		byte[] truncated = new byte[20];
+		System.arraycopy(bytes, 0, truncated, 0, truncated.length);
+		assertRejected(truncated, "Not a dictionary file");
+		assertRejected(new byte[0], "Not a dictionary file");
+	}
+
+	private byte[] compactBytes() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DictionaryFile.write(dictionary, out);
+		return out.toByteArray();
+	}
+
+	private byte[] frontCodedBytes() throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		DictionaryFile.write(FrontCodedDictionary.compress(dictionary), out);
+		return out.toByteArray();
+	}
+
+	/** Replaces the checksum at the end with the one of the bytes before it */
+	private static byte[] withChecksum(byte[] bytes) {
+		CRC32 crc = new CRC32();
+		crc.update(bytes, 0, bytes.length - 8);
+		ByteBuffer.wrap(bytes).putLong(bytes.length - 8, crc.getValue());
+		return bytes;
+	}
+
+	private static void assertRejected(byte[] bytes, String message) {
+		for (boolean frontCoded : new boolean[] { false, true }) {
+			try {
+				if (frontCoded) {
+					DictionaryFile.readFrontCoded(ByteBuffer.wrap(bytes));
+				} else {
+					DictionaryFile.read(ByteBuffer.wrap(bytes));
+				}
+				fail("Read a bad file, expected: " + message);
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains(message));
+			}
+		}
+	}
+
+	private static void assertSame(CompactDictionary expected, CompactDictionary actual) {
+		assertEquals(expected.getName(), actual.getName());
+		assertEquals(expected.getKeyCount(), actual.getKeyCount());
+		assertEquals(expected.getWordCount(), actual.getWordCount());
+		for (int i = 0; i < expected.getKeyCount(); i++) {
+			assertEquals(expected.getKey(i), actual.getKey(i));
+			assertEquals(expected.getFirstWord(i), actual.getFirstWord(i));
+		}
+		for (int i = 0; i < expected.getWordCount(); i++) {
+			assertEquals(expected.getWord(i), actual.getWord(i));
+		}
+		assertEquals(expected.getMatchingAnagrams("tea"), actual.getMatchingAnagrams("tea"));
+	}
+}
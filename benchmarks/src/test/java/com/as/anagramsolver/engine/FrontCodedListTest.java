@@ -0,0 +1,159 @@
+package com.as.anagramsolver.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.TreeSet;
+
+import org.junit.Test;
+
+public class FrontCodedListTest {
+
+	private static final int[] BLOCK_SIZES = { 1, 2, 3, 16, 1000 };
+
+	/** The distinct words of the test dictionary in ascending order, with a few long shared prefixes */
+	private static List<String> sortedWords() {
+		TreeSet<String> words = new TreeSet<String>(Arrays.asList(TestDictionaries.ENGLISH_WORDS));
+		words.add("");
+		words.add("antidisestablishment");
+		words.add("antidisestablishmentarian");
+		words.add("antidisestablishmentarianism");
+		words.add("\u00e4pfel");
+		return new ArrayList<String>(words);
+	}
+
+	private static FrontCodedList build(List<String> entries, int blockSize, boolean counts) {
+		FrontCodedList.Builder builder = new FrontCodedList.Builder(blockSize, counts);
+		for (String entry : entries) {
+			builder.add(entry.toCharArray(), 0, entry.length(), entry.length());
+		}
+		return builder.build();
+	}
+
+	@Test
+	public void getsBackEveryEntry() {
+		List<String> words = sortedWords();
+		for (int blockSize : BLOCK_SIZES) {
+			FrontCodedList list = build(words, blockSize, false);
+			assertEquals(words.size(), list.size());
+			for (int i = 0; i < words.size(); i++) {
+				assertEquals(blockSize + " " + i, words.get(i), list.get(i));
+			}
+		}
+	}
+
+	@Test
+	public void addAllDecodesARange() {
+		List<String> words = sortedWords();
+		for (int blockSize : BLOCK_SIZES) {
+			FrontCodedList list = build(words, blockSize, false);
+			for (int from = 0; from <= words.size(); from += 5) {
+				for (int to = from; to <= words.size(); to += 3) {
+					List<String> range = new ArrayList<String>();
+					list.addAll(from, to, range);
+					assertEquals(blockSize + " " + from + " " + to, words.subList(from, to), range);
+				}
+			}
+		}
+	}
+
+	@Test
+	public void findsEntriesAndTheInsertionPointOfMissingOnes() {
+		List<String> words = sortedWords();
+		String[] missing = { "aa", "antidis", "b", "cats", "zzz", "\u00e4", "\uffff" };
+		for (int blockSize : BLOCK_SIZES) {
+			FrontCodedList list = build(words, blockSize, false);
+			FrontCodedList.Entry entry = new FrontCodedList.Entry();
+			for (int i = 0; i < words.size(); i++) {
+				char[] key = words.get(i).toCharArray();
+				assertEquals(blockSize + " " + words.get(i), i, list.find(key, 0, key.length, entry));
+				assertEquals(words.get(i), entry.toString());
+			}
+			for (String key : missing) {
+				int expected = -(insertionPoint(words, key)) - 1;
+				char[] chars = ("#" + key + "#").toCharArray();
+				assertEquals(blockSize + " " + key, expected, list.find(chars, 1, chars.length - 1, entry));
+				if (-expected - 1 < words.size()) {
+					assertEquals(words.get(-expected - 1), entry.toString());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void keepsTheCountsOfTheEntries() {
+		List<String> words = sortedWords();
+		for (int blockSize : BLOCK_SIZES) {
+			FrontCodedList list = build(words, blockSize, true);
+			FrontCodedList.Entry entry = new FrontCodedList.Entry();
+			int before = 0;
+			for (int i = 0; i < words.size(); i++) {
+				list.read(i, entry);
+				assertEquals(i, entry.index);
+				assertEquals(words.get(i).length(), entry.count);
+				assertEquals(blockSize + " " + i, before, entry.countBefore);
+				before += entry.count;
+			}
+		}
+	}
+
+	@Test
+	public void readsBackWhatItWrites() throws IOException {
+		List<String> words = sortedWords();
+		for (boolean counts : new boolean[] { false, true }) {
+			FrontCodedList list = build(words, 4, counts);
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+			DataOutputStream out = new DataOutputStream(bytes);
+			list.write(out);
+			out.writeInt(42);
+			out.flush();
+			ByteBuffer buffer = ByteBuffer.wrap(bytes.toByteArray());
+			FrontCodedList read = FrontCodedList.read(buffer);
+			assertEquals(42, buffer.getInt());
+			assertEquals(list.size(), read.size());
+			assertEquals(list.getDataSize(), read.getDataSize());
+			List<String> entries = new ArrayList<String>();
+			read.addAll(0, read.size(), entries);
+			assertEquals(words, entries);
+		}
+	}
+
+	@Test
+	public void anEmptyListFindsNothing() {
+		FrontCodedList list = build(new ArrayList<String>(), 16, false);
+		assertEquals(0, list.size());
+		assertEquals(-1, list.find("cat".toCharArray(), 0, 3, new FrontCodedList.Entry()));
+	}
+
+	@Test(expected = UnsupportedOperationException.class)
+	public void findNeedsSortedEntries() {
+		FrontCodedList list = build(Arrays.asList("tea", "cat"), 16, false);
+		list.find("cat".toCharArray(), 0, 3, new FrontCodedList.Entry());
+	}
+
+	@Test
+	public void entryStartsWith() {
+		FrontCodedList list = build(sortedWords(), 16, false);
+		FrontCodedList.Entry entry = new FrontCodedList.Entry();
+		list.read(list.find("listen".toCharArray(), 0, 6, entry), entry);
+		assertTrue(entry.startsWith("list".toCharArray(), 4));
+		assertFalse(entry.startsWith("lost".toCharArray(), 4));
+		assertFalse(entry.startsWith("listened".toCharArray(), 8));
+	}
+
+	private static int insertionPoint(List<String> words, String key) {
+		int i = 0;
+		while ((i < words.size()) && (words.get(i).compareTo(key) < 0)) {
+			i++;
+		}
+		return i;
+	}
+}
@@ -0,0 +1,148 @@
+package com.as.anagramsolver.engine;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.junit.Test;
+
+public class LineReaderTest {
+
+	@Test
+	public void endsLinesAtNewLinesAndDropsTheCarriageReturnBeforeThem() throws IOException {
+		assertEquals(Arrays.asList("cat", "", "tea", "eat"), readAll(bytes("cat\n\ntea\r\neat\n")));
+	}
+
+	@Test
+	public void readsTheLastLineWithoutANewLine() throws IOException {
+		assertEquals(Arrays.asList("cat", "tea"), readAll(bytes("cat\ntea")));
+		assertEquals(Arrays.asList("cat"), readAll(bytes("cat\r")));
+		assertEquals(Arrays.<String>asList(), readAll(bytes("")));
+	}
+
+	@Test
+	public void keepsALoneCarriageReturnInTheLine() throws IOException {
+		assertEquals(Arrays.asList("cat\rtea", "eat"), readAll(bytes("cat\rtea\neat")));
+	}
+
+	@Test
+	public void skipsAByteOrderMarkAtTheStartOnly() throws IOException {
+		byte[] bom = { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF };
+		assertEquals(Arrays.asList("cat", "\ufefftea"), readAll(concat(bom, bytes("cat\n"), bom, bytes("tea\n"))));
+	}
+
+	@Test
+	public void decodesUtf8() throws IOException {
+		String text = "\u00e4pfel\n\u03b1\u03b2\u03b3\n\u015b\u0107\n\ud83d\ude00\n";
+		assertEquals(Arrays.asList("\u00e4pfel", "\u03b1\u03b2\u03b3", "\u015b\u0107", "\ud83d\ude00"),
+				readAll(text.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void decodesInvalidUtf8ToReplacementCharacters() throws IOException {
+		// A lone continuation byte, a lead byte without its continuation and a byte that is never valid
+		byte[] invalid = { 'a', (byte) 0x80, 'b', '\n', (byte) 0xC3, 'c', '\n', (byte) 0xFF, '\n' };
+		assertEquals(Arrays.asList("a\ufffdb", "\ufffdc", "\ufffd"), readAll(invalid));
+	}
+
+	@Test
+	public void readsLinesLongerThanABlock() throws IOException {
+		StringBuilder longLine = new StringBuilder();
+		for (int i = 0; i < 200000; i++) {
+			longLine.append((char) ('a' + (i % 26)));
+		}
+		// A multibyte character at the end, so it is likely to be split between reads
+		longLine.append('\u00e9');
+		String text = "cat\n" + longLine + "\ntea\n";
+		assertEquals(Arrays.asList("cat", longLine.toString(), "tea"), readAll(text.getBytes("UTF-8")));
+	}
+
+	@Test
+	public void readsStreamsThatReturnFewBytesAtATime() throws IOException {
+		StringBuilder text = new StringBuilder();
+		List<String> expected = new ArrayList<String>();
+		for (int i = 0; i < 20000; i++) {
+			String line = "w\u00f6rd" + i;
+			text.append(line).append(i % 2 == 0 ? "\n" : "\r\n");
+			expected.add(line);
+		}
+		final InputStream in = new ByteArrayInputStream(text.toString().getBytes("UTF-8"));
+		InputStream trickle = new InputStream() {
+			@Override
+			public int read() throws IOException {
+				return in.read();
+			}
+
+			@Override
+			public int read(byte[] b, int off, int len) throws IOException {
+				return in.read(b, off, Math.min(len, 7));
+			}
+		};
+		assertEquals(expected, readAll(new LineReader(trickle)));
+	}
+
+	@Test
+	public void readsMappedFilesLikeStreams() throws IOException {
+		byte[] text = concat(new byte[] { (byte) 0xEF, (byte) 0xBB, (byte) 0xBF },
+				"cat\r\n\u00e4pfel\n\ntea".getBytes("UTF-8"));
+		File file = File.createTempFile("lines", ".txt");
+		try {
+			FileOutputStream out = new FileOutputStream(file);
+			try {
+				out.write(text);
+			} finally {
+				out.close();
+			}
+			LineReader reader = LineReader.open(file);
+			try {
+				assertEquals(readAll(text), readAll(reader));
+			} finally {
+				reader.close();
+			}
+		} finally {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void isTheCharSequenceOfTheCurrentLine() throws IOException {
+		LineReader reader = new LineReader(new ByteArrayInputStream(bytes("tea\n")));
+		reader.next();
+		assertEquals(3, reader.length());
+		assertEquals('e', reader.charAt(1));
+		assertEquals("ea", reader.subSequence(1, 3).toString());
+		assertEquals("aet", new KeyNormalizer(Language.ENGLISH).key(reader));
+	}
+
+	private static List<String> readAll(byte[] bytes) throws IOException {
+		return readAll(new LineReader(new ByteArrayInputStream(bytes)));
+	}
+
+	private static List<String> readAll(LineReader reader) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		while (reader.next()) {
+			lines.add(reader.toString());
+		}
+		return lines;
+	}
+
+	private static byte[] bytes(String ascii) throws IOException {
+		return ascii.getBytes("US-ASCII");
+	}
+
+	private static byte[] concat(byte[]... parts) throws IOException {
+		ByteArrayOutputStream out = new ByteArrayOutputStream();
+		for (byte[] part : parts) {
+			out.write(part);
+		}
+		return out.toByteArray();
+	}
+}
@@ -0,0 +1,66 @@
+package com.as.anagramsolver.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PatternIndexTest {
+
+	private PatternIndex index;
+
+	@Before
+	public void setUp() throws IOException {
+		index = new PatternIndex(TestDictionaries.english());
+	}
+
+	@Test
+	public void findsTheSameWordsAsARegularExpression() {
+		String[] patterns = { "te*", "*at", "t*t", "re*at", "c?t", "?a?", "*a*", "*", "%", "_at", "ta%",
+			"s?*?s", "*o?", "l*n", "re*re*", "cat", "x*", "*x", "a*a", "b*a", "r%t" };
+		for (String pattern : patterns) {
+			assertEquals(pattern, bruteForce(pattern), index.match(pattern));
+		}
+	}
+
+	@Test
+	public void comparesAsciiLettersCaseInsensitively() {
+		assertEquals(new HashSet<String>(Arrays.asList("cat")), index.match("CA*"));
+		assertEquals(new HashSet<String>(Arrays.asList("moon", "noon")), index.match("*OoN"));
+	}
+
+	@Test
+	public void emptyOrMissingPatternMatchesNothing() {
+		assertTrue(index.match("").isEmpty());
+		assertTrue(index.match(null).isEmpty());
+	}
+
+	/** Matches every word of the dictionary against the pattern made into a regular expression */
+	private static Set<String> bruteForce(String pattern) {
+		StringBuilder regex = new StringBuilder();
+		for (char c : pattern.toCharArray()) {
+			if ((c == '*') || (c == '%')) {
+				regex.append(".*");
+			} else if ((c == '?') || (c == '_')) {
+				regex.append('.');
+			} else {
+				regex.append(Pattern.quote(String.valueOf(c)));
+			}
+		}
+		Pattern compiled = Pattern.compile(regex.toString(), Pattern.CASE_INSENSITIVE);
+		Set<String> found = new HashSet<String>();
+		for (String word : TestDictionaries.ENGLISH_WORDS) {
+			if (compiled.matcher(word).matches()) {
+				found.add(word);
+			}
+		}
+		return found;
+	}
+}
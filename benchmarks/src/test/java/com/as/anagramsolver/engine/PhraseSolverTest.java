@@ -0,0 +1,131 @@
+package com.as.anagramsolver.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class PhraseSolverTest {
+
+	private CompactDictionary dictionary;
+
+	@Before
+	public void setUp() throws IOException {
+		dictionary = TestDictionaries.english();
+	}
+
+	@Test
+	public void findsThePhrasesThatUseUpAllTheLetters() {
+		assertEquals(Arrays.asList("dormitory", "dirty room"),
+				new PhraseSolver(dictionary).solve("dirtyroom", 3, 2, 100));
+	}
+
+	@Test
+	public void findsTheSamePhrasesAsTryingEveryCombination() {
+		String[] racks = { "catseat", "dirtyroom", "atat", "stoppots", "teaeat", "listensilent", "aat", "xyz" };
+		for (String rack : racks) {
+			for (int maxWords = 1; maxWords <= 3; maxWords++) {
+				for (int minWordLength = 1; minWordLength <= 3; minWordLength++) {
+					List<String> phrases = new PhraseSolver(dictionary).solve(rack, maxWords, minWordLength, 100000);
+					assertEquals(rack + " " + maxWords + " " + minWordLength,
+							bruteForce(rack, maxWords, minWordLength), normalize(phrases));
+					assertEquals(rack + " duplicates", phrases.size(), new HashSet<String>(phrases).size());
+				}
+			}
+		}
+	}
+
+	@Test
+	public void stopsAtMaxResults() {
+		assertEquals(3, new PhraseSolver(dictionary).solve("catseat", 2, 3, 3).size());
+	}
+
+	@Test
+	public void endsWithWhatItFoundWhenItRunsOutOfSteps() {
+		final List<String> phrases = new ArrayList<String>();
+		boolean done = new PhraseSolver(dictionary, 1).solve("catseat", 3, 1, 100, new SubAnagramSearcher.MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				phrases.addAll(words);
+				return true;
+			}
+		});
+		assertFalse(done);
+		assertTrue(phrases.size() < 9);
+	}
+
+	@Test
+	public void emptyLettersHaveNoPhrases() {
+		assertTrue(new PhraseSolver(dictionary).solve("", 3, 1, 100).isEmpty());
+		assertTrue(new PhraseSolver(dictionary).solve("cat", 0, 1, 100).isEmpty());
+	}
+
+	/** Returns every phrase of up to maxWords words that uses up the letters, each as its sorted words */
+	private static Set<List<String>> bruteForce(String rack, int maxWords, int minWordLength) {
+		List<String> words = new ArrayList<String>();
+		for (String word : TestDictionaries.ENGLISH_WORDS) {
+			if (word.length() >= minWordLength) {
+				words.add(word);
+			}
+		}
+		Set<List<String>> phrases = new HashSet<List<String>>();
+		addPhrases(words, 0, new ArrayList<String>(), sorted(rack), maxWords, phrases);
+		return phrases;
+	}
+
+	private static void addPhrases(List<String> words, int from, List<String> phrase, String letters, int maxWords,
+			Set<List<String>> phrases) {
+		String used = sorted(concat(phrase));
+		if (used.equals(letters)) {
+			phrases.add(sortedCopy(phrase));
+			return;
+		}
+		if ((phrase.size() == maxWords) || (used.length() >= letters.length())) {
+			return;
+		}
+		for (int i = from; i < words.size(); i++) {
+			phrase.add(words.get(i));
+			addPhrases(words, i, phrase, letters, maxWords, phrases);
+			phrase.remove(phrase.size() - 1);
+		}
+	}
+
+	private static Set<List<String>> normalize(List<String> phrases) {
+		Set<List<String>> normalized = new HashSet<List<String>>();
+		for (String phrase : phrases) {
+			normalized.add(sortedCopy(Arrays.asList(phrase.split(" "))));
+		}
+		return normalized;
+	}
+
+	private static List<String> sortedCopy(List<String> words) {
+		List<String> copy = new ArrayList<String>(words);
+		Collections.sort(copy);
+		return copy;
+	}
+
+	private static String sorted(String s) {
+		char[] chars = s.toCharArray();
+		Arrays.sort(chars);
+		return new String(chars);
+	}
+
+	private static String concat(List<String> words) {
+		StringBuilder letters = new StringBuilder();
+		for (String word : words) {
+			letters.append(word);
+		}
+		return letters.toString();
+	}
+}
@@ -0,0 +1,149 @@
+package com.as.anagramsolver.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import org.junit.Before;
+import org.junit.Test;
+
+public class SubAnagramSearcherTest {
+
+	private static final String[] RACKS = { "a", "teas", "stop", "dirtyroom", "dormitory", "listenx",
+		"banana", "bandana", "retreat", "moonion", "zzz", "" };
+
+	private SubAnagramSearcher searcher;
+
+	@Before
+	public void setUp() throws IOException {
+		searcher = new SubAnagramSearcher(TestDictionaries.english());
+	}
+
+	@Test
+	public void findsTheSameWordsAsTryingEveryWord() {
+		for (String rack : RACKS) {
+			for (int minLength = 1; minLength <= 5; minLength++) {
+				assertEquals(rack + " " + minLength,
+						TestDictionaries.bruteForce(TestDictionaries.ENGLISH_WORDS, rack, minLength),
+						searcher.search(rack, minLength));
+			}
+		}
+	}
+
+	@Test
+	public void minLengthOfTheRackOnlyFindsFullAnagrams() {
+		assertEquals(new HashSet<String>(Arrays.asList("listen", "silent", "enlist", "tinsel", "inlets")),
+				searcher.search("listen", 6));
+		assertEquals(new HashSet<String>(Arrays.asList("stop", "pots", "tops", "spot", "post", "opts")),
+				searcher.search("post", 4));
+	}
+
+	@Test
+	public void usesEachLetterOnlyAsOftenAsTheRackHasIt() {
+		assertEquals(new HashSet<String>(Arrays.asList("banana")), searcher.search("banana", 6));
+		assertEquals(new HashSet<String>(Arrays.asList("banana", "bandana")), searcher.search("bandana", 6));
+		assertFalse(searcher.search("mon", 1).contains("moon"));
+	}
+
+	@Test
+	public void stopsWhenTheListenerSaysSo() {
+		final List<Collection<String>> calls = new ArrayList<Collection<String>>();
+		searcher.search("dormitory", 1, new SubAnagramSearcher.MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				calls.add(new ArrayList<String>(words));
+				return false;
+			}
+		});
+		assertEquals(1, calls.size());
+	}
+
+	@Test
+	public void searchUsingAllOnlyFindsTheWordsThatUseEveryCopyOfTheLetter() {
+		for (String rack : RACKS) {
+			for (char letter : rack.toCharArray()) {
+				Set<String> expected = new HashSet<String>();
+				for (String word : TestDictionaries.bruteForce(TestDictionaries.ENGLISH_WORDS, rack, 1)) {
+					if (count(word, letter) == count(rack, letter)) {
+						expected.add(word);
+					}
+				}
+				assertEquals(rack + " " + letter, expected, searchUsingAll(rack, letter));
+			}
+		}
+	}
+
+	@Test
+	public void searchUsingAllOfALetterTheRackDoesNotHaveFindsNothing() {
+		assertTrue(searchUsingAll("teas", 'z').isEmpty());
+	}
+
+	@Test
+	public void blanksMatchAnySingleLetter() {
+		String[] racks = { "?", "??", "ca?", "?at", "t??s", "dirty?oom", "??????", "bana?a", "zz?", "?a?a?a" };
+		for (String rack : racks) {
+			for (int minLength = 1; minLength <= 4; minLength++) {
+				assertEquals(rack + " " + minLength,
+						TestDictionaries.bruteForce(TestDictionaries.ENGLISH_WORDS, rack, minLength),
+						searcher.search(rack, minLength));
+			}
+		}
+	}
+
+	@Test
+	public void blanksAreOnlySpentOnce() {
+		assertEquals(new HashSet<String>(Arrays.asList("act", "cat", "tac")), searcher.search("c?t", 3));
+		assertFalse(searcher.search("n?n", 1).contains("noon"));
+		assertTrue(searcher.search("n??n", 4).contains("noon"));
+	}
+
+	@Test
+	public void hasBlanks() {
+		assertTrue(SubAnagramSearcher.hasBlanks("ab?"));
+		assertFalse(SubAnagramSearcher.hasBlanks("abc"));
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void searchUsingAllRejectsBlanks() {
+		searchUsingAll("te?s", 't');
+	}
+
+	@Test
+	public void fitsComparesSortedLetters() {
+		assertTrue(SubAnagramSearcher.fits("aet".toCharArray(), 3, "aestt".toCharArray(), 5));
+		assertTrue(SubAnagramSearcher.fits("tt".toCharArray(), 2, "aestt".toCharArray(), 5));
+		assertFalse(SubAnagramSearcher.fits("ttt".toCharArray(), 3, "aestt".toCharArray(), 5));
+		assertFalse(SubAnagramSearcher.fits("b".toCharArray(), 1, "aestt".toCharArray(), 5));
+		assertTrue(SubAnagramSearcher.fits(new char[0], 0, new char[0], 0));
+	}
+
+	private Set<String> searchUsingAll(String rack, char letter) {
+		final Set<String> found = new HashSet<String>();
+		searcher.searchUsingAll(rack, 1, letter, new SubAnagramSearcher.MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				found.addAll(words);
+				return true;
+			}
+		});
+		return found;
+	}
+
+	private static int count(String s, char c) {
+		int count = 0;
+		for (int i = 0; i < s.length(); i++) {
+			if (s.charAt(i) == c) {
+				count++;
+			}
+		}
+		return count;
+	}
+}
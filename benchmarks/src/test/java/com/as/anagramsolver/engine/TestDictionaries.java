@@ -0,0 +1,74 @@
+package com.as.anagramsolver.engine;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+/** Builds the small dictionaries the tests run on, the same way CompactDictionary.load
+ * builds one from the two text files of a language.
+ */
+class TestDictionaries {
+
+	/** A few English words with anagrams, short words and repeated letters */
+	static final String[] ENGLISH_WORDS = {
+		"a", "at", "act", "cat", "tac", "tea", "eat", "ate", "eta", "seat", "east", "teas",
+		"stop", "pots", "tops", "spot", "post", "opts", "dirty", "room", "dormitory",
+		"listen", "silent", "enlist", "tinsel", "inlets", "moon", "mono", "noon", "onion",
+		"banana", "bandana", "tree", "retreat", "treat", "rate", "tear", "tare"
+	};
+
+	/** Returns the dictionary of the given words, with keys made by the English KeyNormalizer */
+	static CompactDictionary of(String name, String... words) throws IOException {
+		KeyNormalizer normalizer = new KeyNormalizer(Language.ENGLISH);
+		StringBuilder wordLines = new StringBuilder();
+		StringBuilder keyLines = new StringBuilder();
+		for (String word : words) {
+			wordLines.append(word).append('\n');
+			keyLines.append(normalizer.key(word)).append('\n');
+		}
+		return CompactDictionary.load(name, new ByteArrayInputStream(wordLines.toString().getBytes("UTF-8")),
+				new ByteArrayInputStream(keyLines.toString().getBytes("UTF-8")));
+	}
+
+	static CompactDictionary english() throws IOException {
+		return of("en_test", ENGLISH_WORDS);
+	}
+
+	/** Returns the words that can be made of some of the letters, a BLANK standing for any
+	 * letter, by trying every word, to check the searches against */
+	static Set<String> bruteForce(String[] words, String letters, int minLength) {
+		Set<String> found = new HashSet<String>();
+		for (String word : words) {
+			if ((word.length() >= minLength) && fits(word, letters)) {
+				found.add(word);
+			}
+		}
+		return found;
+	}
+
+	private static boolean fits(String word, String letters) {
+		char[] rack = letters.toCharArray();
+		Arrays.sort(rack);
+		int blanks = 0;
+		int[] counts = new int[Character.MAX_VALUE + 1];
+		for (char c : rack) {
+			if (c == SubAnagramSearcher.BLANK) {
+				blanks++;
+			} else {
+				counts[c]++;
+			}
+		}
+		for (char c : word.toCharArray()) {
+			if (counts[c] > 0) {
+				counts[c]--;
+			} else if (blanks > 0) {
+				blanks--;
+			} else {
+				return false;
+			}
+		}
+		return true;
+	}
+}
@@ -0,0 +1,74 @@
+package com.as.anagramsolver.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+public class TopKTest {
+
+	@Test
+	public void keepsTheFirstKWordsInOrder() {
+		TopK top = new TopK(3, WordRanking.ALPHABETICAL);
+		for (String word : new String[] { "tea", "cat", "moon", "act", "zoo", "eat" }) {
+			top.offer(word);
+		}
+		assertEquals(Arrays.asList("act", "cat", "eat"), top.toList());
+		assertEquals(3, top.size());
+		assertEquals(3, top.getDropped());
+	}
+
+	@Test
+	public void offerReturnsTheWordThatIsNoLongerKept() {
+		TopK top = new TopK(2, WordRanking.ALPHABETICAL);
+		assertNull(top.offer("moon"));
+		assertNull(top.offer("cat"));
+		assertEquals("zoo", top.offer("zoo"));
+		assertEquals("moon", top.offer("act"));
+		assertEquals(Arrays.asList("act", "cat"), top.toList());
+	}
+
+	@Test
+	public void keepsTheSameWordsAsSortingThemAll() {
+		WordRanking[] rankings = { WordRanking.ALPHABETICAL, new WordRanking(WordScorer.LENGTH, false),
+			new WordRanking(WordScorer.LENGTH, true) };
+		Random random = new Random(42);
+		for (WordRanking ranking : rankings) {
+			for (int k = 1; k <= 40; k += 3) {
+				List<String> words = new ArrayList<String>(Arrays.asList(TestDictionaries.ENGLISH_WORDS));
+				Collections.shuffle(words, random);
+				TopK top = new TopK(k, ranking);
+				for (String word : words) {
+					top.offer(word);
+				}
+				Collections.sort(words, ranking);
+				List<String> expected = words.subList(0, Math.min(k, words.size()));
+				assertEquals("k " + k, expected, top.toList());
+				assertEquals("k " + k, words.size() - expected.size(), top.getDropped());
+			}
+		}
+	}
+
+	@Test
+	public void clearForgetsTheWords() {
+		TopK top = new TopK(1, WordRanking.ALPHABETICAL);
+		top.offer("cat");
+		top.offer("act");
+		top.clear();
+		assertEquals(0, top.size());
+		assertEquals(0, top.getDropped());
+		top.offer("tea");
+		assertEquals(Arrays.asList("tea"), top.toList());
+	}
+
+	@Test(expected = IllegalArgumentException.class)
+	public void kMustBePositive() {
+		new TopK(0, WordRanking.ALPHABETICAL);
+	}
+}
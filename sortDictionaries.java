@@ -1,51 +1,372 @@
 package sortdictionaries;
 
 import java.io.*;
-import java.text.*;
-import java.util.Locale;
-import java.util.regex.Pattern;
+import java.util.*;
+import java.util.concurrent.*;
+
+import com.as.anagramsolver.engine.CompactDictionary;
+import com.as.anagramsolver.engine.DictionaryFile;
+import com.as.anagramsolver.engine.FrontCodedDictionary;
+import com.as.anagramsolver.engine.KeyNormalizer;
+import com.as.anagramsolver.engine.Language;
+import com.as.anagramsolver.engine.LineReader;
 
 /**
+ * Generates the sorted version of each dictionary and the precomputed binary
+ * dictionary (&lt;lang&gt;.dict, a FrontCodedDictionary written by DictionaryFile) that the
+ * engine can open without parsing the text files. Run it from the directory with the text
+ * dictionaries (dictionaries) with the app sources on the classpath, e.g.
+ * javac -cp src -d bin sortDictionaries.java && cd dictionaries && java -cp ../bin sortdictionaries.sortDictionaries
+ * The binary dictionaries are written to the directory given as the second argument or
+ * to assets/dictionaries, where the app loads its database from them (see
+ * DictionaryDBCreator) and batchSolve looks for them. They are the only form of the
+ * dictionaries packaged in the app, the text files are only read here. The other files
+ * below are only for looking at the dictionaries and are written to the directory given
+ * as the first argument or to bin/dictionaries.
+ *
+ * All the languages are done at once on a fork/join pool and each file is split in
+ * chunks at line breaks that are normalized and sorted on their own and joined back in
+ * file order, so it scales with the cores and the output is the same byte for byte
+ * whatever the number of threads. Each line of a file gives exactly one line of its
+ * sorted version. The same pass also writes:
+ *  &lt;lang&gt;.keys     the distinct keys in ascending order, one per line
+ *  &lt;lang&gt;.groups   each distinct key followed by its distinct words, separated by tabs
+ *  &lt;lang&gt;.letters  each character of the keys and how many times it is used, most used first
+ *  &lt;lang&gt;.stats    counts of lines, words and keys and the number of keys of each length
+ * Any file that can't be written is reported and makes it exit with status 1.
+ *
  * @author uberspot
  */
 public class sortDictionaries {
-    
-    private static final String[] langs = {"de_de", "el_gr", "en_us", 
+
+    private static final String[] langs = {"de_de", "el_gr", "en_us",
                                 "fr_fr", "pl_pl", "es_es", "it_it", "tr_tr"};
-    
+
+    private static final String DEFAULT_OUTPUT_DIR = "../bin/dictionaries";
+    private static final String DEFAULT_BINARY_DIR = "../assets/dictionaries";
+
+    /** Parts of a file bigger than this are split in two at a line break */
+    private static final int CHUNK_SIZE = 256 * 1024;
+
     public static void main(String[] args) {
-        for(String lang: langs)
-            transformDictionary(lang);
-    }
-    
-    public static void transformDictionary(String fileName) {
-         try {
-                BufferedReader in = new BufferedReader(
-                        new InputStreamReader(new FileInputStream(fileName), "UTF-8"));
-                PrintWriter out = new PrintWriter(
-                        new BufferedOutputStream(new FileOutputStream(fileName + "_sorted")));
-                String line = in.readLine();
-                Pattern pattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
-                while(line != null) {
-                        char[] l = line.toCharArray();
-                        java.util.Arrays.sort(l);
-
-                        String nfdNormalizedString = 
-                                Normalizer.normalize((new String(l)), Normalizer.Form.NFD); 
-            String deaccented = 
-                                pattern.matcher(nfdNormalizedString)
-                                        .replaceAll("").toLowerCase(Locale.getDefault());
-
-                        out.println(deaccented);
-                        line = in.readLine();
+        File outputDir = new File(args.length > 0 ? args[0] : DEFAULT_OUTPUT_DIR);
+        File binaryDir = new File(args.length > 1 ? args[1] : DEFAULT_BINARY_DIR);
+        outputDir.mkdirs();
+        binaryDir.mkdirs();
+        ForkJoinPool pool = new ForkJoinPool();
+        long start = System.nanoTime();
+
+        // Start every language first so they all share the pool, then report them in order
+        Map<String, Future<String>> results = new LinkedHashMap<String, Future<String>>();
+        for(String lang: langs) {
+            if (!new File(lang).isFile()) {
+                System.out.println("Skipping " + lang + ": not found");
+                continue;
+            }
+            results.put(lang, pool.submit(newTransformation(lang, outputDir, binaryDir)));
+        }
+        boolean failed = false;
+        for (Map.Entry<String, Future<String>> result : results.entrySet()) {
+            try {
+                System.out.println(result.getValue().get());
+            } catch (ExecutionException e) {
+                failed = true;
+                System.out.println(result.getKey() + ": IO Error: " + e.getCause().getMessage());
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+        pool.shutdown();
+        System.out.println(results.size() + " dictionaries in " + (System.nanoTime() - start) / 1000000
+                + " ms on " + pool.getParallelism() + " threads");
+        if (failed) {
+            System.exit(1);
+        }
+    }
+
+    private static Callable<String> newTransformation(final String fileName, final File outputDir,
+            final File binaryDir) {
+        return new Callable<String>() {
+            @Override
+            public String call() throws IOException {
+                return transformDictionary(fileName, outputDir, binaryDir);
+            }
+        };
+    }
+
+    /** Writes fileName_sorted, fileName.dict in binaryDir and the other files of fileName in outputDir
+     * @return a line about what was written */
+    public static String transformDictionary(String fileName, File outputDir, File binaryDir)
+            throws IOException {
+        long start = System.nanoTime();
+        Language language = Language.fromName(fileName);
+        byte[] data = readFile(new File(fileName));
+        Chunk all = new TransformTask(language, data, 0, data.length).invoke();
+
+        // Explicitly UTF-8 like every file written here, the app reads the sorted files
+        // as UTF-8 whatever the platform default is
+        writeFile(new File(fileName + "_sorted"), all.keys);
+
+        // The entries are sorted by key and then by word, so each key and its words
+        // come one after the other
+        CompactDictionary.Builder builder = new CompactDictionary.Builder(all.entries.length);
+        Writer keys = openWriter(new File(outputDir, fileName + ".keys"));
+        Writer groups = openWriter(new File(outputDir, fileName + ".groups"));
+        int largestGroup = 0;
+        try {
+            String previous = null;
+            int previousKeyLength = -1;
+            int group = 0;
+            for (String entry : all.entries) {
+                int separator = entry.indexOf('\u0000');
+                builder.add(entry, 0, separator, entry, separator + 1, entry.length());
+                boolean sameKey = (separator == previousKeyLength) && entry.regionMatches(0, previous, 0, separator);
+                if (!sameKey) {
+                    if (previous != null) {
+                        groups.write('\n');
+                    }
+                    keys.write(entry, 0, separator);
+                    keys.write('\n');
+                    groups.write(entry, 0, separator);
+                    group = 0;
+                } else if (entry.equals(previous)) {
+                    continue;
                 }
-                in.close();
-                out.flush();
-                out.close();
-        } catch (UnsupportedEncodingException e) {
-                        System.out.println("UnsupportedEncoding: " + e.getMessage());
-        } catch (IOException e) {
-                        System.out.println("IO Error: " + e.getMessage());
-        } 
+                groups.write('\t');
+                groups.write(entry, separator + 1, entry.length() - separator - 1);
+                largestGroup = Math.max(largestGroup, ++group);
+                previous = entry;
+                previousKeyLength = separator;
+            }
+            if (previous != null) {
+                groups.write('\n');
+            }
+        } finally {
+            keys.close();
+            groups.close();
+        }
+
+        CompactDictionary dictionary = builder.build(language.getName());
+        File binary = new File(binaryDir, fileName + ".dict");
+        DictionaryFile.write(FrontCodedDictionary.compress(dictionary), binary);
+        writeLetters(all, new File(outputDir, fileName + ".letters"));
+        writeStats(all, dictionary, largestGroup, new File(outputDir, fileName + ".stats"));
+
+        long loadStart = System.nanoTime();
+        DictionaryFile.read(binary);
+        long loaded = System.nanoTime();
+        return fileName + ": " + all.lines + " lines, " + dictionary.getWordCount() + " words, "
+                + dictionary.getKeyCount() + " keys in " + (loadStart - start) / 1000000 + " ms, "
+                + fileName + ".dict " + binary.length() / 1024 + " KB, binary load "
+                + (loaded - loadStart) / 1000000 + " ms";
+    }
+
+    /** What a part of a file turns into */
+    static class Chunk {
+        /** The keys of the lines in UTF-8, one line per line of the file */
+        byte[] keys;
+        /** key + '\u0000' + word of each line, sorted */
+        String[] entries;
+        int lines;
+        /** How many times each character is used in the keys */
+        int[] letters = new int[Character.MAX_VALUE + 1];
+        /** How many keys have each length */
+        int[] lengths = new int[0];
+
+        void countKey(char[] key, int length) {
+            for (int i = 0; i < length; i++) {
+                letters[key[i]]++;
+            }
+            if (length >= lengths.length) {
+                lengths = Arrays.copyOf(lengths, length + 1);
+            }
+            lengths[length]++;
+        }
+
+        /** Returns this chunk followed by the next one */
+        Chunk join(Chunk next) {
+            Chunk joined = new Chunk();
+            joined.keys = Arrays.copyOf(keys, keys.length + next.keys.length);
+            System.arraycopy(next.keys, 0, joined.keys, keys.length, next.keys.length);
+            joined.entries = merge(entries, next.entries);
+            joined.lines = lines + next.lines;
+            joined.letters = letters;
+            for (int c = 0; c < letters.length; c++) {
+                joined.letters[c] += next.letters[c];
+            }
+            joined.lengths = Arrays.copyOf(lengths, Math.max(lengths.length, next.lengths.length));
+            for (int i = 0; i < next.lengths.length; i++) {
+                joined.lengths[i] += next.lengths[i];
+            }
+            return joined;
+        }
+
+        private static String[] merge(String[] a, String[] b) {
+            String[] merged = new String[a.length + b.length];
+            int i = 0, j = 0, k = 0;
+            while ((i < a.length) && (j < b.length)) {
+                merged[k++] = (a[i].compareTo(b[j]) <= 0) ? a[i++] : b[j++];
+            }
+            while (i < a.length) {
+                merged[k++] = a[i++];
+            }
+            while (j < b.length) {
+                merged[k++] = b[j++];
+            }
+            return merged;
+        }
+    }
+
+    /** Normalizes and sorts data[from, to), which starts at a line, in halves until they are small enough */
+    static class TransformTask extends RecursiveTask<Chunk> {
+        private static final long serialVersionUID = 1L;
+
+        private final Language language;
+        private final byte[] data;
+        private final int from, to;
+
+        TransformTask(Language language, byte[] data, int from, int to) {
+            this.language = language;
+            this.data = data;
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected Chunk compute() {
+            if (to - from > CHUNK_SIZE) {
+                // Split right after the first line break past the middle
+                int middle = from + (to - from) / 2;
+                while ((middle < to) && (data[middle - 1] != '\n')) {
+                    middle++;
+                }
+                if (middle < to) {
+                    TransformTask first = new TransformTask(language, data, from, middle);
+                    first.fork();
+                    Chunk second = new TransformTask(language, data, middle, to).compute();
+                    return first.join().join(second);
+                }
+            }
+            try {
+                return transformChunk();
+            } catch (IOException e) {
+                // Nothing here does IO, it all happens in memory
+                throw new IllegalStateException(e);
+            }
+        }
+
+        private Chunk transformChunk() throws IOException {
+            Chunk chunk = new Chunk();
+            // The same keys as the searches of the app, folded for the language and then sorted
+            KeyNormalizer normalizer = new KeyNormalizer(language);
+            LineReader in = new LineReader(new ByteArrayInputStream(data, from, to - from));
+            ByteArrayOutputStream keys = new ByteArrayOutputStream(to - from);
+            Writer out = new OutputStreamWriter(keys, "UTF-8");
+            List<String> entries = new ArrayList<String>();
+            char[] joined = new char[64];
+            while (in.next()) {
+                int length = normalizer.normalize(in);
+                char[] key = normalizer.getBuffer();
+                out.write(key, 0, length);
+                out.write('\n');
+                chunk.lines++;
+                chunk.countKey(key, length);
+
+                // Join the key with its word so a plain sort orders them by key and then by word
+                int wordLength = in.length();
+                if (joined.length < length + 1 + wordLength) {
+                    joined = new char[2 * (length + 1 + wordLength)];
+                }
+                System.arraycopy(key, 0, joined, 0, length);
+                joined[length] = '\u0000';
+                System.arraycopy(in.getChars(), 0, joined, length + 1, wordLength);
+                entries.add(new String(joined, 0, length + 1 + wordLength));
+            }
+            out.close();
+            chunk.keys = keys.toByteArray();
+            chunk.entries = entries.toArray(new String[entries.size()]);
+            Arrays.sort(chunk.entries);
+            return chunk;
+        }
+    }
+
+    /** Writes each character used in the keys with its count, the most used first */
+    private static void writeLetters(Chunk all, File file) throws IOException {
+        List<Integer> used = new ArrayList<Integer>();
+        for (int c = 0; c < all.letters.length; c++) {
+            if (all.letters[c] > 0) {
+                used.add(c);
+            }
+        }
+        final int[] letters = all.letters;
+        Collections.sort(used, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                if (letters[a] != letters[b]) {
+                    return (letters[a] > letters[b]) ? -1 : 1;
+                }
+                return a - b;
+            }
+        });
+        Writer out = openWriter(file);
+        try {
+            for (int c : used) {
+                out.write((char) c);
+                out.write("\t" + letters[c] + "\n");
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static void writeStats(Chunk all, CompactDictionary dictionary, int largestGroup, File file)
+            throws IOException {
+        long letters = 0;
+        for (int length = 0; length < all.lengths.length; length++) {
+            letters += (long) length * all.lengths[length];
+        }
+        Writer out = openWriter(file);
+        try {
+            out.write("lines=" + all.lines + "\n");
+            out.write("words=" + dictionary.getWordCount() + "\n");
+            out.write("keys=" + dictionary.getKeyCount() + "\n");
+            out.write("duplicate.lines=" + (all.lines - dictionary.getWordCount()) + "\n");
+            out.write("largest.group=" + largestGroup + "\n");
+            out.write("longest.key=" + (all.lengths.length - 1) + "\n");
+            out.write("mean.key.length=" + ((all.lines == 0) ? 0 : letters * 100 / all.lines / 100.0) + "\n");
+            for (int length = 0; length < all.lengths.length; length++) {
+                if (all.lengths[length] > 0) {
+                    out.write("length." + length + "=" + all.lengths[length] + "\n");
+                }
+            }
+        } finally {
+            out.close();
+        }
+    }
+
+    private static byte[] readFile(File file) throws IOException {
+        byte[] data = new byte[(int) file.length()];
+        DataInputStream in = new DataInputStream(new FileInputStream(file));
+        try {
+            in.readFully(data);
+        } finally {
+            in.close();
+        }
+        return data;
+    }
+
+    private static void writeFile(File file, byte[] data) throws IOException {
+        OutputStream out = new FileOutputStream(file);
+        try {
+            out.write(data);
+        } finally {
+            out.close();
+        }
+    }
+
+    /** Opens a UTF-8 writer. Unlike a PrintWriter it throws the errors of writing */
+    private static Writer openWriter(File file) throws IOException {
+        return new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), "UTF-8"));
     }
 }
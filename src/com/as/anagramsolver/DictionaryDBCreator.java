@@ -1,23 +1,47 @@
 package com.as.anagramsolver;
 
-import java.io.BufferedReader;
 import java.io.IOException;
-import java.io.InputStreamReader;
-import java.io.UnsupportedEncodingException;
+import java.io.InputStream;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import android.content.ContentValues;
 import android.content.Context;
-import android.content.res.Resources.NotFoundException;
 import android.database.Cursor;
 import android.database.sqlite.SQLiteDatabase;
 import android.database.sqlite.SQLiteDatabase.CursorFactory;
 import android.database.sqlite.SQLiteOpenHelper;
-
-
+import android.database.sqlite.SQLiteStatement;
+import android.os.Build;
+
+import com.as.anagramsolver.engine.DeltaSearcher;
+import com.as.anagramsolver.engine.DictionaryFile;
+import com.as.anagramsolver.engine.FrontCodedDictionary;
+import com.as.anagramsolver.engine.Language;
+import com.as.anagramsolver.engine.Metrics;
+import com.as.anagramsolver.engine.ResultCache;
+import com.as.anagramsolver.engine.SortedKeyIndex;
+
+/** Loads the dictionaries into a sqlite database and answers the searches from it.
+ *
+ * Thread safety: every lookup (getMatchingAnagrams, getStarMatches, getKeyIndex,
+ * getDeltaSearcher, rawQueryResults, isReady) can be called from any number of threads at
+ * once. The database is opened once and kept (see getDatabase), so they don't queue on the
+ * lock of getReadableDatabase(), and from Android 3 on it runs in WAL mode, where Android
+ * keeps a pool of read connections next to the one that writes. Readers then neither wait
+ * for each other nor for a dictionary that is loading, they see its last committed chunk.
+ * Before Android 3 there is a single connection and sqlite runs one statement at a time.
+ * The caches and the sets of ready dictionaries are synchronized on their own.
+ * createTable, dropTables and the SQLiteOpenHelper callbacks change the tables and are
+ * meant for one thread at a time, the one that loads (DBLoaderTask).
+ */
 public class DictionaryDBCreator extends SQLiteOpenHelper {
 
 	/** The list of dictionaries available */
@@ -30,29 +54,69 @@ public class DictionaryDBCreator extends SQLiteOpenHelper {
 
 	public static final String DEFAULT_DICTIONARY = DICTIONARIES.get(0);
 
-
-	private static final int[]
-			/** An array containing the corresponding raw dictionary file
-			 * for each language of the enumeration. */
-			dictIDs = { R.raw.en_us, R.raw.el_gr,
-						R.raw.pl_pl, R.raw.fr_fr,
-						R.raw.de_de, R.raw.es_es,
-						R.raw.it_it, R.raw.tr_tr},
-
-			/** An array containing the corresponding raw sorted dictionary file.
-			 * Each word in that file is the same as the original but with its characters
-			 * sorted alphabetically, lowercased and normalized(no accents etc) */
-		    sdictIDs = { R.raw.en_us_sorted, R.raw.el_gr_sorted,
-						 R.raw.pl_pl_sorted, R.raw.fr_fr_sorted,
-						 R.raw.de_de_sorted, R.raw.es_es_sorted,
-						 R.raw.it_it_sorted, R.raw.tr_tr_sorted};
-
-
-
-	private static final int DATABASE_VERSION = 28;
+	/** The directory of the assets with the precomputed binary dictionaries (see DictionaryFile),
+	 * one &lt;file name&gt;.dict for each language (see Language.getFileName), written there by
+	 * sortDictionaries. They are the only copy of the dictionaries in the app */
+	private static final String BINARY_DIR = "dictionaries/";
+
+	private static final int DATABASE_VERSION = 33;
+	/** Separates the words of a key in the words column */
+	private static final String WORD_SEPARATOR = "\n";
+	/** The table of each dictionary with its words in ascending order, for star patterns */
+	private static final String WORDS_TABLE = "_words";
+	/** The table of each dictionary with its reversed words in ascending order */
+	private static final String REVERSED_WORDS_TABLE = "_rwords";
+	/** The temporary table that ranks the words of a dictionary while it's grouped */
+	private static final String RANKS_TABLE = "_ranks";
+	/** The table a dictionary is loaded into before it's grouped */
+	private static final String LOAD_TABLE = "_load";
+	/** The table with the checkpoint of each dictionary whose load table isn't grouped yet:
+	 * the lines of the files inserted so far and the checksum of those lines */
+	private static final String PROGRESS_TABLE = "load_progress";
+	/** The lines inserted and committed with their checkpoint at a time. Without WAL other
+	 * threads can only use the database between two chunks, so this also bounds how long a
+	 * search waits for a dictionary that is loading */
+	private static final int CHUNK_LINES = 5000;
+	/** Sorts after every character a word can have, so s + RANGE_END is past all the words starting with s */
+	private static final String RANGE_END = "\uffff";
+	/** The rows a LIKE scan checks with one query, since a query that runs can't be interrupted */
+	private static final int SCAN_CHUNK_ROWS = 20000;
 	private static final String DATABASE_NAME = "Dictionaries";
 	private Context context;
 
+	/** The lookup query of each dictionary. The SQL text stays the same for every search
+	 * and the letters are bound as an argument, so sqlite compiles it once per connection
+	 * and reuses the prepared statement from its statement cache afterwards. */
+	private final Map<String, String> anagramQueries = new HashMap<String, String>();
+
+	/** The maximum number of results and words kept by each cache */
+	private static final int CACHE_WEIGHT = 20000;
+
+	/** Recent results of getMatchingAnagrams, by dictionary and sorted letters. Substring
+	 * searches look up many of the same keys again when the letters change a bit. */
+	private final ResultCache anagramCache = new ResultCache(CACHE_WEIGHT);
+	/** Recent results of getStarMatches, by dictionary and pattern */
+	private final ResultCache starCache = new ResultCache(CACHE_WEIGHT);
+	/** The searchers that remember the last substring search of each dictionary, see getDeltaSearcher */
+	private final Map<String, DeltaSearcher> deltaSearchers = new HashMap<String, DeltaSearcher>();
+
+	/** The database once it's open, see getDatabase */
+	private volatile SQLiteDatabase database;
+	/** Whether the database runs in WAL mode, set when it's opened */
+	private volatile boolean writeAheadLogging = false;
+
+	/** The dictionaries whose tables are complete, so they can be searched while others load */
+	private final Set<String> readyDictionaries = Collections.synchronizedSet(new HashSet<String>());
+
+	/** Told about the progress of createTable */
+	public interface LoadListener {
+		/** Called after each chunk of lines of the dictionary is committed
+		 * @param dict the dictionary being loaded
+		 * @param lines the lines of its files that are loaded so far
+		 */
+		void onProgress(String dict, long lines);
+	}
+
 	public DictionaryDBCreator(Context context, Set<String> enabledDictionaries) {
 	    this(context, DATABASE_NAME, null, DATABASE_VERSION, enabledDictionaries);
 	}
@@ -66,96 +130,426 @@ public class DictionaryDBCreator extends SQLiteOpenHelper {
 			CursorFactory factory, int version, Set<String> enabledDictionaries) {
 		super(context, name, factory, version);
 		this.context = context;
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			// Set before the database is opened, so every connection of the pool gets it
+			setWriteAheadLoggingEnabled(true);
+		}
 		SettingsPage.setEnabledDictionaries(enabledDictionaries);
 	}
 
+	/** Only creates the checkpoint table. The dictionaries are loaded by createTable, outside
+	 * the transaction that onCreate runs in, so every chunk of them is really committed */
 	@Override
 	public void onCreate(final SQLiteDatabase db) {
-        //For each available language
-        for (String dict : DICTIONARIES) {
-            createTable(db, dict);
-        }
+        createProgressTable(db);
 	}
 
 	public void createTable(final SQLiteDatabase db, String dict) {
+        createTable(db, dict, null);
+	}
+
+	/** Loads the given dictionary if it is enabled and isn't loaded yet, or drops its tables
+	 * if it isn't enabled. A load that was stopped before, e.g. because the app was killed,
+	 * goes on from its last checkpoint. The dictionary is ready (see isReady) as soon as its
+	 * tables are complete.
+	 * @param db the database to update
+	 * @param dict one of the DICTIONARIES
+	 * @param listener told about the progress of the load, can be null
+	 */
+	public void createTable(final SQLiteDatabase db, String dict, LoadListener listener) {
         if (!DICTIONARIES.contains(dict)) {
             return;
         }
         //If it is enabled
         if (SettingsPage.hasLoadedDictionary(dict)) {
             dict = dict.substring(0, 1).toUpperCase() + dict.substring(1).toLowerCase();
-            int position = DICTIONARIES.indexOf(dict);
 
-            //And if the table doesn't exist already
-            if (!tableExists(db, dict)) {
-                //Create and fill it
-                db.execSQL("CREATE TABLE IF NOT EXISTS " + dict + "(word TEXT, aword TEXT);");
-                fillDictionary(db, dictIDs[position], sdictIDs[position], dict);
+            //And if its tables aren't complete already
+            if (!isLoaded(db, dict)) {
+                readyDictionaries.remove(dict);
+                invalidateCaches(dict);
+                //Load it one row per word in a table of its own and group it from there
+                String load = dict + LOAD_TABLE;
+                if (!fillDictionary(db, dict, load, listener)) {
+                    return;
+                }
+                groupDictionary(db, load, dict);
             }
+            readyDictionaries.add(dict);
             //Else Drop it from the database so it doesn't take up space
-        } else {
-            db.execSQL("DROP TABLE IF EXISTS " + dict + ";");
-            //Clean up after leftover pages in memory
-            db.rawQuery("VACUUM", null);
+        } else if (tableExists(db, dict) || tableExists(db, dict + LOAD_TABLE)) {
+            invalidateCaches(dict);
+            dropTables(db, dict);
+            //Give the freed pages back to the file system. VACUUM can't run inside a transaction
+            if (!db.inTransaction()) {
+                db.execSQL("VACUUM;");
+            }
         }
     }
 
+	/** Returns true if the given dictionary can be searched: its tables are complete, it
+	 * wasn't dropped since and createTable saw it in this process */
+	public boolean isReady(String dict) {
+		return readyDictionaries.contains(dict);
+	}
+
+	/** Returns true if the tables of the given dictionary are complete. The dict table is only
+	 * created by groupDictionary in the same transaction that removes the checkpoint, so a
+	 * dictionary with a checkpoint left is still loading, whatever tables it has */
+	private boolean isLoaded(SQLiteDatabase db, String dict) {
+		return tableExists(db, dict) && (readCheckpoint(db, dict) == null);
+	}
+
+	/** Forgets the cached results of the given dictionary */
+	private void invalidateCaches(String dict) {
+		anagramCache.invalidate(dict);
+		starCache.invalidate(dict);
+		synchronized (deltaSearchers) {
+			deltaSearchers.remove(dict);
+		}
+	}
+
+	/** Returns the cache of getMatchingAnagrams, e.g. to look at its counters */
+	public ResultCache getAnagramCache() {
+		return anagramCache;
+	}
+
+	/** Returns the cache of getStarMatches */
+	public ResultCache getStarCache() {
+		return starCache;
+	}
+
+	/** Builds the tables of a dictionary from a table with one (word, aword, rword) row per
+	 * word, which is dropped afterwards:
+	 * dict has one row per distinct key with all its distinct words in the words column,
+	 * separated by WORD_SEPARATOR, so a key is stored once and looked up with one row.
+	 * dict_words and dict_rwords have the words and the reversed words with their rank in
+	 * ascending order, so a star pattern finds its range with a binary search on the ranks (see
+	 * rankCeiling) instead of two more indexes of every word. Each row also has the rank of the
+	 * same word in the other table, so a pattern with a literal start and end can keep only the
+	 * words in both ranges. The rank is the INTEGER PRIMARY KEY, so unlike an implicit rowid a
+	 * VACUUM can't renumber it. The words are ranked by inserting them in ascending order into
+	 * an empty table, which numbers them 1, 2, 3 and so on, and are then copied with their ranks.
+	 * Like LIKE, their columns compare case insensitively. */
+	private void groupDictionary(SQLiteDatabase db, String load, String dict) {
+		// All or nothing, a dict table without the other two would never be loaded again
+		db.beginTransaction();
+		try {
+			// Whatever a load that was dropped and started again left behind
+			db.execSQL("DROP TABLE IF EXISTS " + dict + ";");
+			db.execSQL("DROP TABLE IF EXISTS " + dict + WORDS_TABLE + ";");
+			db.execSQL("DROP TABLE IF EXISTS " + dict + REVERSED_WORDS_TABLE + ";");
+			db.execSQL("CREATE TABLE " + dict + "(aword TEXT, words TEXT);");
+			// Words that only differ in case are different words, even if the column ignores case
+			db.execSQL("INSERT INTO " + dict + "(aword, words) SELECT aword, group_concat(word, '"
+					+ WORD_SEPARATOR + "') FROM (SELECT DISTINCT aword, word COLLATE BINARY AS word FROM "
+					+ load + " ORDER BY aword, word) GROUP BY aword ORDER BY aword;");
+			db.execSQL("CREATE UNIQUE INDEX " + dict + "_aword ON " + dict + "(aword);");
+			String ranks = dict + RANKS_TABLE;
+			db.execSQL("DROP TABLE IF EXISTS " + ranks + ";");
+			db.execSQL("CREATE TEMP TABLE " + ranks
+					+ "(rank INTEGER PRIMARY KEY, word TEXT COLLATE NOCASE, rword TEXT COLLATE NOCASE);");
+			db.execSQL("INSERT INTO " + ranks + "(word, rword) SELECT word, rword FROM " + load + " ORDER BY word;");
+			db.execSQL("CREATE TABLE " + dict + REVERSED_WORDS_TABLE
+					+ "(rank INTEGER PRIMARY KEY, rword TEXT COLLATE NOCASE, word_rank INTEGER);");
+			db.execSQL("INSERT INTO " + dict + REVERSED_WORDS_TABLE + "(rword, word_rank) SELECT rword, rank FROM "
+					+ ranks + " ORDER BY rword;");
+			db.execSQL("CREATE TABLE " + dict + WORDS_TABLE
+					+ "(rank INTEGER PRIMARY KEY, word TEXT COLLATE NOCASE, rword_rank INTEGER);");
+			// Joined on the rank of the words, which is the key of the ranks table
+			db.execSQL("INSERT INTO " + dict + WORDS_TABLE + "(rank, word, rword_rank) SELECT w.rank, w.word, r.rank FROM "
+					+ dict + REVERSED_WORDS_TABLE + " r JOIN " + ranks + " w ON w.rank = r.word_rank ORDER BY w.rank;");
+			db.execSQL("DROP TABLE " + ranks + ";");
+			db.execSQL("DROP TABLE " + load + ";");
+			db.delete(PROGRESS_TABLE, "dict=?", new String[] { dict });
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/** Drops all the tables of the given dictionary, with its load table and checkpoint if it was loading */
+	public void dropTables(SQLiteDatabase db, String dict) {
+		readyDictionaries.remove(dict);
+		db.execSQL("DROP TABLE IF EXISTS " + dict + ";");
+		db.execSQL("DROP TABLE IF EXISTS " + dict + WORDS_TABLE + ";");
+		db.execSQL("DROP TABLE IF EXISTS " + dict + REVERSED_WORDS_TABLE + ";");
+		db.execSQL("DROP TABLE IF EXISTS " + dict + LOAD_TABLE + ";");
+		createProgressTable(db);
+		db.delete(PROGRESS_TABLE, "dict=?", new String[] { dict });
+	}
+
+	private static void createProgressTable(SQLiteDatabase db) {
+		db.execSQL("CREATE TABLE IF NOT EXISTS " + PROGRESS_TABLE
+				+ "(dict TEXT PRIMARY KEY, lines INTEGER, checksum INTEGER);");
+	}
+
+	/** Returns the lines loaded and their checksum of the given dictionary, or null if it has no checkpoint */
+	private static long[] readCheckpoint(SQLiteDatabase db, String dict) {
+		createProgressTable(db);
+		Cursor cursor = db.rawQuery("SELECT lines, checksum FROM " + PROGRESS_TABLE + " WHERE dict=?",
+				new String[] { dict });
+		long[] checkpoint = cursor.moveToFirst() ? new long[] { cursor.getLong(0), cursor.getLong(1) } : null;
+		cursor.close();
+		return checkpoint;
+	}
+
+	private static void writeCheckpoint(SQLiteDatabase db, String dict, long lines, long checksum) {
+		ContentValues v = new ContentValues();
+		v.put("dict", dict);
+		v.put("lines", lines);
+		v.put("checksum", checksum);
+		db.replace(PROGRESS_TABLE, null, v);
+	}
+
+	/** Returns the checksum of the lines read so far, given the checksum of the lines before them */
+	private static long checksum(long checksum, String word, String sortedWord) {
+		for (int i = 0; i < word.length(); i++) {
+			checksum = 31 * checksum + word.charAt(i);
+		}
+		checksum = 31 * checksum + '\n';
+		for (int i = 0; i < sortedWord.length(); i++) {
+			checksum = 31 * checksum + sortedWord.charAt(i);
+		}
+		return 31 * checksum + '\n';
+	}
+
+	/** Returns the binary dictionary of the given dictionary from the assets
+	 * @param dict one of the DICTIONARIES
+	 * @return the dictionary, front coded, so it takes about as much memory as its file
+	 * @throws IOException if it isn't there, or it's corrupt or of another version (see DictionaryFile)
+	 */
+	public FrontCodedDictionary readDictionary(String dict) throws IOException {
+		InputStream in = context.getAssets().open(BINARY_DIR + Language.fromName(dict).getFileName() + ".dict");
+		try {
+			return DictionaryFile.readFrontCoded(in);
+		} finally {
+			in.close();
+		}
+	}
+
 	@Override
 	public void onUpgrade(SQLiteDatabase db, int oldVersion, int newVersion) {
-        // Drop older tables if existed
+        anagramCache.clear();
+        starCache.clear();
+        synchronized (deltaSearchers) {
+            deltaSearchers.clear();
+        }
+        createProgressTable(db);
         for (String dictionary : DICTIONARIES) {
-            db.execSQL("DROP TABLE IF EXISTS " + dictionary);
+            // Drop older tables if existed
+            dropTables(db, dictionary);
         }
         // Create tables again
         onCreate(db);
 	}
 
+	@Override
+	public void onOpen(SQLiteDatabase db) {
+		super.onOpen(db);
+		if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.JELLY_BEAN) {
+			writeAheadLogging = db.isWriteAheadLoggingEnabled();
+		} else if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+			// Before Android 4.1 the helper can't set it before opening. It fails in a transaction or in memory
+			writeAheadLogging = !db.isReadOnly() && !db.inTransaction() && db.enableWriteAheadLogging();
+		}
+	}
+
+	/** Returns the open database for the lookups. getReadableDatabase() synchronizes on the
+	 * helper on every call, so with many threads searching it would be a lock they all queue
+	 * on; the database is thread safe by itself and is kept once it's open instead.
+	 * @return
+	 */
+	private SQLiteDatabase getDatabase() {
+		SQLiteDatabase db = database;
+		if ((db == null) || !db.isOpen()) {
+			db = getReadableDatabase();
+			database = db;
+		}
+		return db;
+	}
+
+	@Override
+	public synchronized void close() {
+		database = null;
+		super.close();
+	}
+
 	@Override
 	public void onDowngrade(SQLiteDatabase db, int oldVersion, int newVersion) {
 		onUpgrade(db, oldVersion, newVersion);
 	}
 
-	/** Reads the given input files and inserts each word and its sorted equivalent to the database
+	/** Reads the words of the dictionary and inserts each word and its sorted equivalent to the
+	 * load table of the dictionary, committing a checkpoint with every chunk of CHUNK_LINES lines.
+	 * The words come from its binary dictionary in the assets, which is checked and read in one
+	 * go (see readDictionary).
+	 * If the dictionary has a checkpoint already the words it covers are only read again to
+	 * check that they are the same, and the load goes on after them. If they aren't, e.g.
+	 * after an update of the app, it starts over.
 	 * @param db the database to update
-	 * @param rawResourceId the file containing each word of the dictionary
-	 * @param rawSortedResourceId the file containing each equivalent word of the dictionary sorted and normalized
-	 * @param dict the dictionary for which to update the table
+	 * @param dict the dictionary being loaded
+	 * @param load the table with one (word, aword, rword) row per word to fill
+	 * @param listener told about every chunk, can be null
+	 * @return true if every word is loaded, false if the load stopped because the dictionary
+	 * couldn't be read or the thread was interrupted
 	 */
-	private void fillDictionary(SQLiteDatabase db, int rawResourceId, int rawSortedResourceId, String dict) {
-        ContentValues v = new ContentValues();
-        db.execSQL("PRAGMA read_uncommitted = true;");
-        db.beginTransaction();
+	private boolean fillDictionary(SQLiteDatabase db, String dict, String load, LoadListener listener) {
+        // Pragmas can't be changed inside a transaction, e.g. when called from onCreate.
+        // In WAL mode a commit only appends to the log and Android already syncs it no more
+        // than NORMAL, which is as safe for a checkpointed load. Its pragmas would also only
+        // reach the one pooled connection that happens to run them, so they're left alone
+        boolean tunePragmas = !db.inTransaction() && !writeAheadLogging;
+        String synchronous = null;
+        if (tunePragmas) {
+            // Keep the journal, so a process killed in the middle of a chunk leaves the
+            // last checkpoint behind and not half a chunk, but don't wait for every commit
+            // to reach the disk. That only matters if the whole device goes down
+            synchronous = queryPragma(db, "synchronous");
+            db.execSQL("PRAGMA synchronous = OFF;");
+        }
+        SQLiteStatement insert = null;
         try {
-            BufferedReader in1 = new BufferedReader(new InputStreamReader(context.getResources()
-                    .openRawResource(rawResourceId), "UTF-8"));
-            BufferedReader in2 = new BufferedReader(new InputStreamReader(context.getResources()
-                    .openRawResource(rawSortedResourceId), "UTF-8"));
-
-            String line1 = in1.readLine();
-            String line2 = in2.readLine();
-
-            while ((line1 != null) && (line2 != null)) {
-                v.put("word", line1);
-                v.put("aword", line2);
-
-                db.insert(dict.toString(), null, v);
+            long[] checkpoint = tableExists(db, load) ? readCheckpoint(db, dict) : null;
+            if (checkpoint == null) {
+                startLoad(db, dict, load);
+                checkpoint = new long[] { 0, 0 };
+            }
+            WordSource in = new WordSource(readDictionary(dict));
+            long lines = 0;
+            long checksum = 0;
+            while ((lines < checkpoint[0]) && in.next()) {
+                checksum = checksum(checksum, in.getWord(), in.getKey());
+                lines++;
+            }
+            if ((lines < checkpoint[0]) || (checksum != checkpoint[1])) {
+                startLoad(db, dict, load);
+                in.restart();
+                lines = 0;
+                checksum = 0;
+            }
 
-                line1 = in1.readLine();
-                line2 = in2.readLine();
-                v.clear();
+            // One compiled insert that only gets new arguments for each row
+            insert = db.compileStatement("INSERT INTO " + load + "(word, aword, rword) VALUES (?, ?, ?);");
+            boolean more = true;
+            while (more) {
+                db.beginTransaction();
+                try {
+                    int chunk = 0;
+                    while ((chunk < CHUNK_LINES) && (more = in.next())) {
+                        String line1 = in.getWord();
+                        String line2 = in.getKey();
+                        String reversed = new StringBuilder(line1).reverse().toString();
+                        insert.bindString(1, line1);
+                        insert.bindString(2, line2);
+                        insert.bindString(3, reversed);
+                        insert.executeInsert();
+                        checksum = checksum(checksum, line1, line2);
+                        chunk++;
+                    }
+                    lines += chunk;
+                    writeCheckpoint(db, dict, lines, checksum);
+                    db.setTransactionSuccessful();
+                } finally {
+                    db.endTransaction();
+                }
+                if (listener != null) {
+                    listener.onProgress(dict, lines);
+                }
+                if (more && Thread.currentThread().isInterrupted()) {
+                    // Stopped, e.g. by AsyncTask.cancel(true). The next createTable goes on from here
+                    return false;
+                }
             }
-            db.setTransactionSuccessful();
-		} catch (NotFoundException e) {
-				System.out.println("File not found: " + e.getMessage());
-		} catch (UnsupportedEncodingException e) {
-				System.out.println("UnsupportedEncoding: " + e.getMessage());
+            return true;
 		} catch (IOException e) {
 				System.out.println("IO Error: " + e.getMessage());
+		} finally {
+            if (insert != null) {
+                insert.close();
+            }
+            if (synchronous != null) {
+                db.execSQL("PRAGMA synchronous = " + synchronous + ";");
+            }
+		}
+        return false;
+	}
+
+	/** Creates the load table of the dictionary empty, with a checkpoint of no lines */
+	private static void startLoad(SQLiteDatabase db, String dict, String load) {
+		db.beginTransaction();
+		try {
+			db.execSQL("DROP TABLE IF EXISTS " + load + ";");
+			db.execSQL("CREATE TABLE " + load
+					+ "(word TEXT COLLATE NOCASE, aword TEXT, rword TEXT COLLATE NOCASE);");
+			createProgressTable(db);
+			writeCheckpoint(db, dict, 0, 0);
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+		}
+	}
+
+	/** Each word of a binary dictionary with its key, in ascending order of the keys */
+	private static class WordSource {
+		private final FrontCodedDictionary dictionary;
+		private int word;
+		private int key;
+		/** The first word of the key after the current one */
+		private int nextKeyWord;
+		/** The key of the current word, made into a String once for all its words */
+		private String keyString;
+
+		WordSource(FrontCodedDictionary dictionary) {
+			this.dictionary = dictionary;
+			restart();
+		}
+
+		/** Goes back to before the first word */
+		void restart() {
+			word = -1;
+			key = -1;
+			nextKeyWord = 0;
+			keyString = null;
 		}
-		db.endTransaction();
+
+		/** Moves to the next word, returns false if there are no more */
+		boolean next() {
+			if (++word >= dictionary.getWordCount()) {
+				return false;
+			}
+			while (word >= nextKeyWord) {
+				key++;
+				nextKeyWord = dictionary.getFirstWord(key + 1);
+				keyString = null;
+			}
+			return true;
+		}
+
+		String getWord() {
+			return dictionary.getWord(word);
+		}
+
+		/** Returns the sorted, normalized letters of the word */
+		String getKey() {
+			if (keyString == null) {
+				keyString = dictionary.getKey(key);
+			}
+			return keyString;
+		}
+	}
+
+	/** Runs the given pragma and returns the value it returned, or null if it returned nothing.
+	 * Pragmas that return a value have to go through rawQuery instead of execSQL. */
+	private static String queryPragma(SQLiteDatabase db, String pragma) {
+		Cursor cursor = db.rawQuery("PRAGMA " + pragma + ";", null);
+		String value = cursor.moveToFirst() ? cursor.getString(0) : null;
+		cursor.close();
+		return value;
 	}
 
-	/** Returns a Set<String> with all the words that can be formed from the given letters in value
+	/** Returns a Set<String> with all the words that can be formed from the given letters in value.
+	 * Recent results are cached so the returned set can't be modified.
 	 * @param dict The dictionary in which to search for matches
 	 * @param value The letters to search for anagrams
 	 * @return
@@ -163,18 +557,102 @@ public class DictionaryDBCreator extends SQLiteOpenHelper {
 	public Set<String> getMatchingAnagrams(String dict, String value) {
 		char[] l = value.toCharArray();
 		java.util.Arrays.sort(l);
+		String key = new String(l);
+
+		Set<String> words = anagramCache.get(dict, key);
+		if (words == null) {
+			Metrics.count(Metrics.CACHE_MISSES, 1);
+			words = anagramCache.put(dict, key, query(getAnagramQuery(dict), true, key));
+		} else {
+			Metrics.count(Metrics.CACHE_HITS, 1);
+		}
+		return words;
+	}
 
-		// Select "all matches" Query
-		StringBuffer buffer = new StringBuffer("SELECT word FROM ");
-		buffer.append(dict);
-		buffer.append(" WHERE aword=\"");
-		buffer.append(l);
-		buffer.append("\"");
+	/** Returns the "all matches" query for the given dictionary. It is built once
+	 * per dictionary, takes the sorted letters as its only argument and returns at most
+	 * the one row of their key.
+	 * @param dict The dictionary in which to search for matches
+	 * @return
+	 */
+	private String getAnagramQuery(String dict) {
+		synchronized (anagramQueries) {
+			String query = anagramQueries.get(dict);
+			if (query == null) {
+				query = "SELECT words FROM " + dict + " WHERE aword=?";
+				anagramQueries.put(dict, query);
+			}
+			return query;
+		}
+	}
 
-		return rawQueryResults(buffer.toString());
+	/** Returns the DeltaSearcher over getKeyIndex of the given dictionary. It keeps the result
+	 * of the last substring search of the dictionary, so a search whose letters only gain or
+	 * lose one letter looks up a lot fewer keys or none at all.
+	 * @param dict The dictionary in which to search for matches
+	 * @return
+	 */
+	public DeltaSearcher getDeltaSearcher(String dict) {
+		synchronized (deltaSearchers) {
+			DeltaSearcher searcher = deltaSearchers.get(dict);
+			if (searcher == null) {
+				searcher = new DeltaSearcher(getKeyIndex(dict));
+				deltaSearchers.put(dict, searcher);
+			}
+			return searcher;
+		}
+	}
+
+	/** Returns a SortedKeyIndex over the aword column of the given dictionary. Each probe is
+	 * a single seek in the aword index.
+	 * @param dict The dictionary in which to search for matches
+	 * @return
+	 */
+	public SortedKeyIndex getKeyIndex(final String dict) {
+		final String ceilingQuery = "SELECT aword FROM " + dict + " WHERE aword>=? ORDER BY aword LIMIT 1";
+		return new SortedKeyIndex() {
+			@Override
+			public int probe(char[] key, int length) {
+				String prefix = new String(key, 0, length);
+				String ceiling = ceilingKey(prefix);
+				if (ceiling == null || !ceiling.startsWith(prefix)) {
+					return NONE;
+				}
+				return ceiling.length() == length ? KEY : PREFIX;
+			}
+
+			@Override
+			public int nextChar(char[] key, int length, char from) {
+				String prefix = new String(key, 0, length);
+				String ceiling = ceilingKey(prefix + from);
+				if (ceiling == null || !ceiling.startsWith(prefix)) {
+					return -1;
+				}
+				return ceiling.charAt(length);
+			}
+
+			/** Returns the smallest key >= from or null */
+			private String ceilingKey(String from) {
+				long start = Metrics.start();
+				Cursor cursor = getDatabase().rawQuery(ceilingQuery, new String[] { from });
+				String ceiling = cursor.moveToFirst() ? cursor.getString(0) : null;
+				cursor.close();
+				Metrics.count(Metrics.DB_QUERIES, 1);
+				Metrics.count(Metrics.DB_ROWS, (ceiling != null) ? 1 : 0);
+				Metrics.stop(Metrics.DB_QUERY, start);
+				return ceiling;
+			}
+
+			@Override
+			public void addWords(char[] key, int length, Collection<String> out) {
+				out.addAll(getMatchingAnagrams(dict, new String(key, 0, length)));
+			}
+		};
 	}
 
 	/** Returns a Set<String> with all the words that are like the regex word* or *word or wo*rd.
+	 * * or % matches any number of characters and ? or _ exactly one. If the thread is
+	 * interrupted while the table is scanned it returns the words found so far, which aren't cached.
 	 * @param dict The dictionary in which to search for matches
 	 * @param value The word to search for. Looks like word* or *word or wo*rd
 	 * @return
@@ -183,13 +661,160 @@ public class DictionaryDBCreator extends SQLiteOpenHelper {
         if ((word == null) || word.isEmpty()) {
             return new HashSet<String>();
         }
-        // Select "all matches" Query
-        String selectQuery = "SELECT word FROM " + dict + " WHERE word LIKE \"" + word + "\"";
-        return rawQueryResults(selectQuery);
+        Set<String> words = starCache.get(dict, word);
+        if (words == null) {
+            Metrics.count(Metrics.CACHE_MISSES, 1);
+            words = queryStarMatches(dict, word);
+            if (!Thread.currentThread().isInterrupted()) {
+                starCache.put(dict, word, words);
+            }
+        } else {
+            Metrics.count(Metrics.CACHE_HITS, 1);
+        }
+        return words;
+	}
+
+	/** Queries the words like the pattern, without the cache. A LIKE can't use an index on its
+	 * own, so the literal start of the pattern is turned into a range of the ranks of
+	 * dict_words and its literal end, reversed, into a range of dict_rwords. The rows of the
+	 * smaller range are read, and if the pattern has both it keeps only the ones whose rank in
+	 * the other table is in the other range, the intersection of the two. LIKE then only checks
+	 * those, for dict_rwords against the reversed pattern. Only patterns that start and end
+	 * with a wildcard scan the table.
+	 * Either way the rows are checked in chunks (see scanLike), so an interrupt stops it.
+	 * @param dict The dictionary in which to search for matches
+	 * @param pattern The word to search for. Looks like word* or *word or wo*rd
+	 * @return
+	 */
+	public Set<String> queryStarMatches(String dict, String pattern) {
+		pattern = pattern.replace('*', '%').replace('?', '_');
+		int prefix = 0;
+		while ((prefix < pattern.length()) && !isWildcard(pattern.charAt(prefix))) {
+			prefix++;
+		}
+		int suffix = 0;
+		while ((suffix < pattern.length() - prefix) && !isWildcard(pattern.charAt(pattern.length() - 1 - suffix))) {
+			suffix++;
+		}
+		SQLiteDatabase db = getDatabase();
+		if ((prefix == 0) && (suffix == 0)) {
+			long[] all = { 1, countQuery(db, "SELECT max(rank) FROM " + dict + WORDS_TABLE) + 1 };
+			return scanLike(dict + WORDS_TABLE, "word", all, null, null, pattern);
+		}
+
+		long[] range = null;
+		if (prefix > 0) {
+			range = rankRange(db, dict + WORDS_TABLE, "word", pattern.substring(0, prefix));
+		}
+		if (suffix > 0) {
+			String end = new StringBuilder(pattern.substring(pattern.length() - suffix)).reverse().toString();
+			long[] reversed = rankRange(db, dict + REVERSED_WORDS_TABLE, "rword", end);
+			if ((range == null) || (reversed[1] - reversed[0] < range[1] - range[0])) {
+				Set<String> matchingWords = new HashSet<String>();
+				for (String rword : scanLike(dict + REVERSED_WORDS_TABLE, "rword", reversed, "word_rank", range,
+						new StringBuilder(pattern).reverse().toString())) {
+					matchingWords.add(new StringBuilder(rword).reverse().toString());
+				}
+				return matchingWords;
+			}
+			return scanLike(dict + WORDS_TABLE, "word", range, "rword_rank", reversed, pattern);
+		}
+		return scanLike(dict + WORDS_TABLE, "word", range, null, null, pattern);
+	}
+
+	/** Returns the column of the rows of the table with a rank in the given range that are LIKE
+	 * the pattern. The rows are queried SCAN_CHUNK_ROWS at a time and the scan stops between
+	 * two chunks if the thread is interrupted, e.g. by a newer search as you type.
+	 * @param range the first rank and the rank after the last one
+	 * @param otherRank the column with the rank of the same word in the other table, or null
+	 * @param otherRange the range otherRank must be in too, or null for any
+	 */
+	private Set<String> scanLike(String table, String column, long[] range, String otherRank, long[] otherRange,
+			String pattern) {
+		Set<String> matchingWords = new HashSet<String>();
+		if ((otherRange != null) && (otherRange[0] >= otherRange[1])) {
+			return matchingWords;
+		}
+		String query = "SELECT " + column + " FROM " + table + " WHERE rank >= ? AND rank < ? AND "
+				+ ((otherRange != null) ? otherRank + " >= ? AND " + otherRank + " < ? AND " : "")
+				+ column + " LIKE ?";
+		for (long start = range[0]; start < range[1]; start += SCAN_CHUNK_ROWS) {
+			if (Thread.currentThread().isInterrupted()) {
+				break;
+			}
+			String from = String.valueOf(start);
+			String to = String.valueOf(Math.min(range[1], start + SCAN_CHUNK_ROWS));
+			matchingWords.addAll((otherRange != null)
+					? rawQueryResults(query, from, to, String.valueOf(otherRange[0]), String.valueOf(otherRange[1]), pattern)
+					: rawQueryResults(query, from, to, pattern));
+		}
+		return matchingWords;
+	}
+
+	/** Returns the first rank of the rows of the ordered table whose column starts with
+	 * start and the rank after the last one */
+	private long[] rankRange(SQLiteDatabase db, String table, String column, String start) {
+		long rows = countQuery(db, "SELECT max(rank) FROM " + table);
+		SQLiteStatement atLeast = db.compileStatement("SELECT " + column + " >= ? FROM " + table
+				+ " WHERE rank = ?");
+		try {
+			return new long[] { rankCeiling(atLeast, start, rows), rankCeiling(atLeast, start + RANGE_END, rows) };
+		} finally {
+			atLeast.close();
+		}
+	}
+
+	/** Returns the rank of the first row that is &gt;= value, rows + 1 if there is none.
+	 * The rows are numbered from 1 in ascending order, so it's a binary search of single
+	 * row lookups.
+	 * @param atLeast a statement that returns 1 if the row with the rank bound to its second
+	 * argument is &gt;= its first argument
+	 */
+	private static long rankCeiling(SQLiteStatement atLeast, String value, long rows) {
+		long low = 1;
+		long high = rows + 1;
+		while (low < high) {
+			long mid = (low + high) >>> 1;
+			atLeast.bindString(1, value);
+			atLeast.bindLong(2, mid);
+			long start = Metrics.start();
+			boolean above = atLeast.simpleQueryForLong() != 0;
+			Metrics.count(Metrics.DB_QUERIES, 1);
+			Metrics.stop(Metrics.DB_QUERY, start);
+			if (above) {
+				high = mid;
+			} else {
+				low = mid + 1;
+			}
+		}
+		return low;
+	}
+
+	private static long countQuery(SQLiteDatabase db, String query) {
+		Cursor cursor = db.rawQuery(query, null);
+		long count = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+		cursor.close();
+		return count;
+	}
+
+	private static boolean isWildcard(char c) {
+		return (c == '%') || (c == '_');
+	}
+
+	/** Runs the given query and returns the first column of every row it returned.
+	 * @param selectQuery the query to run. Any ? in it is bound to the given selectionArgs
+	 * @param selectionArgs the values of the query arguments
+	 * @return
+	 */
+	public Set<String> rawQueryResults(String selectQuery, String... selectionArgs) {
+		return query(selectQuery, false, selectionArgs);
 	}
 
-	public Set<String> rawQueryResults(String selectQuery) {
-        Cursor cursor = getReadableDatabase().rawQuery(selectQuery, null);
+	/** Runs the given query and returns the first column of every row it returned, split
+	 * in its words if the column is the words of a key */
+	private Set<String> query(String selectQuery, boolean grouped, String... selectionArgs) {
+        long start = Metrics.start();
+        Cursor cursor = getDatabase().rawQuery(selectQuery, selectionArgs);
 
         Set<String> matchingWords = new HashSet<String>();
 
@@ -197,12 +822,19 @@ public class DictionaryDBCreator extends SQLiteOpenHelper {
         if (cursor != null) {
             if (cursor.moveToFirst()) {
                 do {
-                    matchingWords.add(cursor.getString(0));
+                    if (grouped) {
+                        matchingWords.addAll(Arrays.asList(cursor.getString(0).split(WORD_SEPARATOR)));
+                    } else {
+                        matchingWords.add(cursor.getString(0));
+                    }
                 } while (cursor.moveToNext());
             }
 
+            Metrics.count(Metrics.DB_ROWS, cursor.getCount());
             cursor.close();
         }
+        Metrics.count(Metrics.DB_QUERIES, 1);
+        Metrics.stop(Metrics.DB_QUERY, start);
 
         return matchingWords;
 	}
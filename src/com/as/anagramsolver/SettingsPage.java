@@ -1,6 +1,7 @@
 package com.as.anagramsolver;
 
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashSet;
 import java.util.Set;
 
@@ -19,6 +20,9 @@ import android.support.v4.app.NavUtils;
 
 import com.actionbarsherlock.app.SherlockPreferenceActivity;
 import com.actionbarsherlock.view.MenuItem;
+import com.as.anagramsolver.engine.InMemoryMetrics;
+import com.as.anagramsolver.engine.Metrics;
+import com.as.anagramsolver.engine.SubAnagramSearcher;
 import com.uberspot.storageutils.StorageUtils;
 
 @SuppressLint("NewApi")
@@ -30,11 +34,30 @@ public class SettingsPage extends SherlockPreferenceActivity {
 	public static final String LANG_ENABLED_KEY = "langEnabled";
 	public static final String KEEP_SCREEN_ON_KEY = "keepscreenon";
 	public static final String SORT_OPTION_KEY = "sortpreference";
+	public static final String MIN_WORD_LENGTH_KEY = "minwordlength";
+	public static final String SEARCH_ALL_LANGS_KEY = "searchAllLangs";
+	public static final String SEARCH_PHRASES_KEY = "searchPhrases";
+	public static final String COLLECT_METRICS_KEY = "collectMetrics";
+	public static final String SEARCH_AS_YOU_TYPE_KEY = "searchAsYouType";
+	public static final String MAX_RESULTS_KEY = "maxResults";
 	private StorageUtils storage;
 	public static String sortOptionSelected = "1";
-
-	/** A set containing all the DICTIONARYs that are enabled*/
-	private static Set<String> enabledDictionaries;
+	/** How many of the first words in the sort order a search keeps, 0 for all of them */
+	public static int maxResults = 0;
+	/** Words shorter than this are left out of substring searches */
+	public static int minWordLength = SubAnagramSearcher.DEFAULT_MIN_LENGTH;
+	/** Whether a search looks in all the enabled languages instead of the selected one */
+	public static boolean searchAllLanguages = false;
+	/** Whether a search looks for phrases of several words that use up all the letters */
+	public static boolean searchPhrases = false;
+	/** Whether the words are searched while the letters are typed */
+	public static boolean searchAsYouType = false;
+
+	/** A set containing all the DICTIONARYs that are enabled. It is never changed, only
+	 * replaced by a changed copy, so any thread can read it without a lock while the
+	 * settings dialog or the loader change it. The writers copy it under enabledLock */
+	private static volatile Set<String> enabledDictionaries = Collections.emptySet();
+	private static final Object enabledLock = new Object();
 
 	@Override
 	public void onCreate(Bundle savedInstanceState) {
@@ -103,6 +126,31 @@ public class SettingsPage extends SherlockPreferenceActivity {
 
     	sortOptionSelected = PreferenceManager.getDefaultSharedPreferences(context)
     							.getString(SettingsPage.SORT_OPTION_KEY, "1");
+
+    	maxResults = Integer.parseInt(PreferenceManager.getDefaultSharedPreferences(context)
+    							.getString(SettingsPage.MAX_RESULTS_KEY, "0"));
+
+    	minWordLength = Integer.parseInt(PreferenceManager.getDefaultSharedPreferences(context)
+    							.getString(SettingsPage.MIN_WORD_LENGTH_KEY,
+    									String.valueOf(SubAnagramSearcher.DEFAULT_MIN_LENGTH)));
+
+    	searchAllLanguages = PreferenceManager.getDefaultSharedPreferences(context)
+    							.getBoolean(SettingsPage.SEARCH_ALL_LANGS_KEY, false);
+
+    	searchPhrases = PreferenceManager.getDefaultSharedPreferences(context)
+    							.getBoolean(SettingsPage.SEARCH_PHRASES_KEY, false);
+
+    	searchAsYouType = PreferenceManager.getDefaultSharedPreferences(context)
+    							.getBoolean(SettingsPage.SEARCH_AS_YOU_TYPE_KEY, false);
+
+    	// Keep the sink and what it collected if it's already on
+    	boolean collectMetrics = PreferenceManager.getDefaultSharedPreferences(context)
+    							.getBoolean(SettingsPage.COLLECT_METRICS_KEY, false);
+    	if (!collectMetrics) {
+    		Metrics.setSink(null);
+    	} else if (!Metrics.isEnabled()) {
+    		Metrics.setSink(new InMemoryMetrics());
+    	}
 	}
 
 	private Preference.OnPreferenceClickListener enableLanguageListener =
@@ -207,30 +255,32 @@ public class SettingsPage extends SherlockPreferenceActivity {
 		return enabledDictionaries.contains(d);
 	}
 
+	/** Returns the enabled dictionaries as they are now. The set can't be modified and
+	 * doesn't change afterwards, so it can be iterated on any thread */
 	public static Set<String> getEnabledDictionaries() {
 		return enabledDictionaries;
 	}
 
 	public static void addEnabledDictionary(String dict) {
-        if (enabledDictionaries == null) {
-            enabledDictionaries = new HashSet<String>();
+        synchronized (enabledLock) {
+            Set<String> changed = new HashSet<String>(enabledDictionaries);
+            changed.add(dict);
+            enabledDictionaries = Collections.unmodifiableSet(changed);
         }
-        enabledDictionaries.add(dict);
 	}
 
 	public static void removeEnabledDictionary(String dict) {
-        if (enabledDictionaries != null) {
-            enabledDictionaries.remove(dict);
+        synchronized (enabledLock) {
+            Set<String> changed = new HashSet<String>(enabledDictionaries);
+            changed.remove(dict);
+            enabledDictionaries = Collections.unmodifiableSet(changed);
         }
 	}
 
 	public static void setEnabledDictionaries(Set<String> enabledDictionaries) {
-        if (SettingsPage.enabledDictionaries != null) {
-            SettingsPage.enabledDictionaries.clear();
-        } else {
-            SettingsPage.enabledDictionaries = new HashSet<String>();
+        synchronized (enabledLock) {
+            SettingsPage.enabledDictionaries = Collections.unmodifiableSet(new HashSet<String>(enabledDictionaries));
         }
-        SettingsPage.enabledDictionaries.addAll(enabledDictionaries);
 	}
 
     /** enabledDictionaries Methods END **/
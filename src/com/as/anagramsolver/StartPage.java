@@ -1,21 +1,29 @@
 package com.as.anagramsolver;
 
-import java.text.Normalizer;
-import java.util.Comparator;
-import java.util.HashSet;
-import java.util.Locale;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
 import java.util.Set;
-import java.util.regex.Pattern;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
 
-import android.app.ProgressDialog;
 import android.content.Context;
 import android.content.Intent;
 import android.content.SharedPreferences;
 import android.database.sqlite.SQLiteDatabase;
 import android.net.Uri;
 import android.os.AsyncTask;
+import android.os.Build;
 import android.os.Bundle;
+import android.os.Handler;
 import android.preference.PreferenceManager;
+import android.text.Editable;
+import android.text.TextWatcher;
+import android.util.Log;
 import android.view.KeyEvent;
 import android.view.View;
 import android.view.WindowManager;
@@ -39,6 +47,21 @@ import android.widget.Toast;
 import com.actionbarsherlock.app.SherlockActivity;
 import com.actionbarsherlock.view.Menu;
 import com.actionbarsherlock.view.MenuItem;
+import com.as.anagramsolver.engine.InMemoryMetrics;
+import com.as.anagramsolver.engine.KeyNormalizer;
+import com.as.anagramsolver.engine.Language;
+import com.as.anagramsolver.engine.Metrics;
+import com.as.anagramsolver.engine.MetricsSink;
+import com.as.anagramsolver.engine.MultiDictionarySearcher;
+import com.as.anagramsolver.engine.PhraseSolver;
+import com.as.anagramsolver.engine.ResultBatcher;
+import com.as.anagramsolver.engine.SearchScheduler;
+import com.as.anagramsolver.engine.SubAnagramSearcher;
+import com.as.anagramsolver.engine.TaggedWord;
+import com.as.anagramsolver.engine.TileScorer;
+import com.as.anagramsolver.engine.TopK;
+import com.as.anagramsolver.engine.WordRanking;
+import com.as.anagramsolver.engine.WordScorer;
 import com.uberspot.storageutils.StorageUtils;
 
 import de.cketti.library.changelog.ChangeLog;
@@ -49,8 +72,26 @@ public class StartPage extends SherlockActivity {
 	private String languageSelected;
 	private StorageUtils storage;
 	private DBSearchTask dbSearchTask;
-
+	private DBLoaderTask dbLoaderTask;
+	/** The worker threads that search several languages at once */
+	private ExecutorService searchExecutor;
+	/** Runs the searches as you type, one at a time and only for the latest input */
+	private SearchScheduler liveSearch;
+	/** The results of the searches as you type and how they are sorted */
+	private ArrayAdapter<String> liveAdapter;
+	private WordRanking liveRanking;
+	/** The ranking getRanking returned last and what it was built for */
+	private WordRanking cachedRanking;
+	private String rankingSortOption;
+	private String rankingLanguage;
+	private Set<String> rankingDictionaries;
+	/** Posts the results of the searches as you type to the UI thread */
+	private Handler handler;
+
+	private static final String TAG = "StartPage";
 	private static final String WEB_SEARCH_URI_PREFIX = "https://google.com/search?q=define:";
+	/** The input a search accepts */
+	private static final String VALID_INPUT = "[^!@#$%`~;&\"\\(\\)\\[\\]{}.,<>]+";
 
 	/* Views */
 	private ListView listView;
@@ -61,93 +102,110 @@ public class StartPage extends SherlockActivity {
 	private Button searchButton;
 	private boolean searching;
 	private String searchString;
-	private ProgressDialog mProgressDialog;
-
-	/** Pattern used for removing diacritical marks like accents as to normalize
-	 *  given words to a simpler form */
-	private Pattern pattern;
 
-	/** An AsyncTask that:
-	 * - Displays a progress dialog
+	/** An AsyncTask that in the background:
 	 * - Initializes the sqlite database with getReadableDatabase()
 	 * - Updates it with the latest enabled languages and creates
-	 *   the appropriate tables for them
-	 * - Dismisses the progress dialog
+	 *   the appropriate tables for them, the selected language first
+	 * - Shows how far each language got in place of the number of results, while not searching
+	 * Each language can be searched as soon as its tables are complete (see
+	 * DictionaryDBCreator.isReady), so the others keep loading while it's searched.
+	 * Cancelling it stops the load after the chunk it's in and the next one goes on from there.
 	 */
 	class DBLoaderTask extends AsyncTask<String, String, String> {
-        @Override
-        protected void onPreExecute() {
-        	mProgressDialog = ProgressDialog.show(StartPage.this,
-        							getString(R.string.please_wait),
-        							getString(R.string.populating_db),
-        							true, false);
-        }
+		/** Set when the enabled languages may have changed since the current pass started */
+		private volatile boolean reload = false;
 
         @Override
 		protected String doInBackground(String... strings) {
-            if (!searching) {
-                SQLiteDatabase db = dbCreator.getReadableDatabase();
-
+            SQLiteDatabase db = dbCreator.getReadableDatabase();
+            DictionaryDBCreator.LoadListener listener = new DictionaryDBCreator.LoadListener() {
+                @Override
+                public void onProgress(String dict, long lines) {
+                    publishProgress(dict, String.valueOf(lines));
+                }
+            };
+            do {
+                reload = false;
+                List<String> dicts = new ArrayList<String>(DictionaryDBCreator.DICTIONARIES);
+                if (dicts.remove(languageSelected)) {
+                    dicts.add(0, languageSelected);
+                }
                 //For each available language
-                for (String dict : DictionaryDBCreator.DICTIONARIES) {
-                    publishProgress(dict);
-                    dbCreator.createTable(db, dict);
+                for (String dict : dicts) {
+                    if (isCancelled()) {
+                        return "";
+                    }
+                    dbCreator.createTable(db, dict, listener);
                 }
-            }
+            } while (reload && !isCancelled());
             return "";
         }
 
+        /** Makes the task go through the languages again when it's done with them, e.g. after
+         * the enabled languages changed while it was loading */
+        void reload() {
+            reload = true;
+        }
+
         @Override
 		protected void onPostExecute(String result) {
-        	dismissProgressDialog();
+            // Back to the number of results of the last search, if there was one
+            if (!searching) {
+                output.setText((listView.getCount() > 0) ? getString(R.string.matches, listView.getCount()) : "");
+            }
         }
 
         @Override
 	    public void onProgressUpdate(String... args) {
-        	mProgressDialog.setMessage(getString(R.string.populating_dbs, args[0]));
+            if (!searching) {
+                output.setText(getString(R.string.populating_progress, args[0], args[1]));
+            }
         }
     }
 
 	/** An AsyncTask that searches for anagrams and updates the UI when they're found.
+	 * The words are published in batches of new words only and each batch is inserted
+	 * in its sorted place in the list, so the list is never rebuilt or sorted again.
+	 * With a maxResults the list is cut to that many words after each batch: the words the
+	 * TopK of the search drops are always the last ones of the list by then.
 	 */
-	class DBSearchTask extends AsyncTask<String, Void, String> {
-		private String[] words;
+	class DBSearchTask extends AsyncTask<String, String, String> {
+		private ArrayAdapter<String> adapter;
+		private WordRanking ranking;
+		/** When the search started for the metrics, 0 if they aren't collected */
+		private long searchStart;
+		private boolean firstResult;
 
         @Override protected void onPreExecute() {
         	searching = true;
+        	searchStart = Metrics.start();
+        	firstResult = true;
         	Toast.makeText(getApplicationContext(),
         			getString(R.string.searching_please_wait),
         			Toast.LENGTH_SHORT)
         			.show();
+
+        	ranking = getRanking();
+        	adapter = new ArrayAdapter<String>(getApplicationContext(), R.layout.word_layout,
+        									new ArrayList<String>());
+        	listView.setAdapter(adapter);
+        	output.setText(getString(R.string.matches, 0));
         }
 
         @Override
 		protected String doInBackground(String... strings) {
-            String inLetters = searchString;
-
-            if (inLetters.contains("*")) {
-
-                inLetters = inLetters.replace('*', '%');
-                Set<String> starWords = new HashSet<String>();
-                starWords.addAll(dbCreator.getStarMatches(languageSelected, inLetters));
-                words = starWords.toArray(new String[starWords.size()]);
-                publishProgress();
-
-            } else {
-                // Normalize input
-                String nfdNormalizedString = Normalizer.normalize((inLetters), Normalizer.Form.NFD);
-                inLetters = pattern.matcher(nfdNormalizedString).replaceAll("")
-                        .toLowerCase(Locale.getDefault());
+            new WordSearch(searchString, searchSubstrings.isChecked(), Collections.<String>emptySet(), ranking) {
+                @Override
+                void publish(String[] words, Collection<String> dropped) {
+                    publishProgress(words);
+                }
 
-                if (searchSubstrings.isChecked()) {
-                    searchAllMatchingAnagrams(languageSelected, inLetters);
-                } else {
-                    Set<String> matchingWords = new HashSet<String>();
-                    matchingWords.addAll(dbCreator.getMatchingAnagrams(languageSelected, inLetters));
-                    words = matchingWords.toArray(new String[matchingWords.size()]);
-                    publishProgress();
+                @Override
+                boolean isStopped() {
+                    return isCancelled();
                 }
-            }
+            }.run();
             return "";
         }
 
@@ -157,71 +215,436 @@ public class StartPage extends SherlockActivity {
         }
 
         @Override
-		protected void onProgressUpdate(Void... values) {
-        	output.setText(getString(R.string.matches, words.length ));
-
-	    	//UpdateListview
-			ArrayAdapter<String> adapter = new ArrayAdapter<String>(
-											getApplicationContext(),
-											R.layout.word_layout, words);
-
-            if (SettingsPage.sortOptionSelected.equals("2")) {
-                adapter.sort(lengthAscComp);
-            } else if (SettingsPage.sortOptionSelected.equals("3")) {
-                adapter.sort(lengthDescComp);
-            } else {
-                adapter.sort(alphabeticComp);
+		protected void onProgressUpdate(String... newWords) {
+            insertWords(adapter, ranking, newWords);
+            if (SettingsPage.maxResults > 0) {
+                adapter.setNotifyOnChange(false);
+                while (adapter.getCount() > SettingsPage.maxResults) {
+                    adapter.remove(adapter.getItem(adapter.getCount() - 1));
+                }
+                adapter.notifyDataSetChanged();
             }
-
-            listView.setAdapter(adapter);
+            if (firstResult) {
+                firstResult = false;
+                Metrics.stop(Metrics.FIRST_RESULT, searchStart);
+            }
+            output.setText(getString(R.string.matches, adapter.getCount()));
         }
 
         @Override
         protected void onCancelled() {
         	searching = false;
+        	dumpMetrics(searchStart);
+        	searchStart = 0;
 	    	searchButton.setText(getString(R.string.search_words));
 	    	Toast.makeText(getApplicationContext(),
 	    			getString(R.string.search_ended),
 	    			Toast.LENGTH_SHORT)
 	    			.show();
         }
+    }
+
+	/** Searches the dictionaries for the letters or the pattern of a query and hands the words
+	 * it finds to publish() in batches, on the thread that runs it. It is shared by DBSearchTask
+	 * and the search as you type (see LiveSearch), which get the words to the UI each their
+	 * own way. It stops when isStopped() says so or its thread is interrupted.
+	 *
+	 * With a maxResults only the words that make it to the first maxResults of the ranking are
+	 * published, picked by a TopK as they are found, with the words they push out of it.
+	 */
+	abstract class WordSearch {
+		/** The largest batch of words sent to the UI at once */
+		private static final int MAX_BATCH_SIZE = 100;
+		/** How often at most a batch of words is sent to the UI */
+		private static final long MAX_BATCH_DELAY_MS = 200;
+
+		private final String query;
+		private final boolean substrings;
+		/** The words the list shows already, they aren't published again */
+		private final Set<String> shown;
+		/** The first maxResults words, those shown included, or null to publish all of them */
+		private final TopK best;
+
+		/**
+		 * @param query the letters or pattern to search for
+		 * @param substrings whether the words can use any subset of the letters
+		 * @param shown the words the list shows already, as they are shown
+		 * @param ranking the order of the list
+		 */
+		WordSearch(String query, boolean substrings, Set<String> shown, WordRanking ranking) {
+			this.query = query;
+			this.substrings = substrings;
+			this.shown = shown;
+			if (SettingsPage.maxResults > 0) {
+				best = new TopK(SettingsPage.maxResults, ranking);
+				for (String word : shown) {
+					best.offer(word);
+				}
+			} else {
+				best = null;
+			}
+		}
+
+		/** Hands a batch of new words, tagged if they need to be, to the UI
+		 * @param words the new words
+		 * @param dropped the words published before that are no longer among the first maxResults
+		 */
+		abstract void publish(String[] words, Collection<String> dropped);
+
+		/** Returns true if the search should stop, it is checked after each batch */
+		abstract boolean isStopped();
+
+        void run() {
+            searchAll();
+            if (best != null) {
+                Metrics.count(Metrics.RANK_DROPPED, best.getDropped());
+            }
+        }
+
+        private void searchAll() {
+            if (!SettingsPage.searchAllLanguages) {
+                searchDictionary(languageSelected, false);
+                return;
+            }
+
+            // Search every enabled language at once and tag each word with its language
+            try {
+                new MultiDictionarySearcher(searchExecutor).runAll(getReadyDictionaries(),
+                        new MultiDictionarySearcher.Task<Void>() {
+                            @Override
+                            public Void run(String dict) {
+                                searchDictionary(dict, true);
+                                return null;
+                            }
+                        });
+            } catch (InterruptedException e) {
+                return;
+            } catch (ExecutionException e) {
+                // The other languages may have published words already, but the results are incomplete
+                Log.e(TAG, "Search failed", e.getCause());
+                handler.post(new Runnable() {
+                    @Override
+                    public void run() {
+                        Toast.makeText(getApplicationContext(), getString(R.string.search_failed),
+                                Toast.LENGTH_SHORT).show();
+                    }
+                });
+            }
+        }
+
+        /** Searches the given dictionary for the query and publishes the words it finds
+         * @param dict The dictionary in which to search for matches
+         * @param tagged whether to show the dictionary next to each word
+         */
+        private void searchDictionary(String dict, boolean tagged) {
+            String inLetters = query;
+            String tag = tagged ? dict : null;
+
+            if (inLetters.contains("*")) {
+
+                // In a pattern ? stands for exactly one letter
+                inLetters = inLetters.replace('*', '%').replace('?', '_');
+                publishWords(dbCreator.getStarMatches(dict, inLetters), tag);
+
+            } else {
+                // Fold the input the same way as the keys of the dictionary
+                long start = Metrics.start();
+                KeyNormalizer normalizer = new KeyNormalizer(Language.fromName(dict));
+                normalizer.fold(inLetters);
+                inLetters = normalizer.toString();
+                Metrics.stop(Metrics.NORMALIZE, start);
+
+                if (substrings) {
+                    searchAllMatchingAnagrams(dict, inLetters, SettingsPage.minWordLength, tag);
+                } else if (SettingsPage.searchPhrases && !SubAnagramSearcher.hasBlanks(inLetters)) {
+                    searchPhrases(dict, inLetters, tag);
+                } else if (SubAnagramSearcher.hasBlanks(inLetters)) {
+                    // Each ? is a blank, so only the words that use all the letters and blanks
+                    searchAllMatchingAnagrams(dict, inLetters, inLetters.length(), tag);
+                } else {
+                    publishWords(dbCreator.getMatchingAnagrams(dict, inLetters), tag);
+                }
+            }
+        }
+
+        /** Publishes the given words that the list doesn't show yet, followed by the tag in
+         * parentheses if it isn't null */
+        private void publishWords(Collection<String> found, String tag) {
+            List<String> newWords = new ArrayList<String>(found.size());
+            for (String word : found) {
+                String shownWord = (tag == null) ? word : new TaggedWord(word, tag).toString();
+                if (!shown.contains(shownWord)) {
+                    newWords.add(shownWord);
+                }
+            }
+            if (best == null) {
+                if (!newWords.isEmpty()) {
+                    publish(newWords.toArray(new String[newWords.size()]), Collections.<String>emptyList());
+                }
+                return;
+            }
+
+            // The searches of the other dictionaries wait, so the words are published in the
+            // order the TopK took them and the list ends up with the same words
+            synchronized (best) {
+                Set<String> kept = new LinkedHashSet<String>();
+                List<String> dropped = new ArrayList<String>();
+                for (String word : newWords) {
+                    String out = best.offer(word);
+                    if (out == word) {
+                        continue;
+                    }
+                    kept.add(word);
+                    if ((out != null) && !kept.remove(out)) {
+                        dropped.add(out);
+                    }
+                }
+                if (!kept.isEmpty() || !dropped.isEmpty()) {
+                    publish(kept.toArray(new String[kept.size()]), dropped);
+                }
+            }
+        }
 
         /** Searches for anagrams with all the words that can be formed
          * from the given letters in value and from all the subsets of those letters
-         * and updates the results view every time it finds a result.
+         * and updates the results view with every new batch of results it finds.
+         * Without blanks it goes through the DeltaSearcher of the dictionary, so letters
+         * that only gain or lose one since the last search are worked out from its result.
     	 * @param dict The dictionary in which to search for matches
-    	 * @param value The letters to search for anagrams
+    	 * @param value The letters to search for anagrams. Each ? in it matches any letter
+    	 * @param minLength The minimum length of the words returned
+    	 * @param tag The tag to add to each word or null
     	 * @return
     	 */
-        private void searchAllMatchingAnagrams(String dict, String value) {
-            int numOfSubsets = 1 << value.length();
-            Set<String> matchingWords = new HashSet<String>();
-
-            for (int i = 0; i < numOfSubsets; i++) {
-                int pos = value.length() - 1;
-                int bitmask = i;
-
-                StringBuilder str = new StringBuilder("");
-                while (bitmask > 0) {
-                    if ((bitmask & 1) == 1) {
-                        str.append(value.charAt(pos));
+        private void searchAllMatchingAnagrams(String dict, String value, int minLength, String tag) {
+            ResultBatcher batcher = newBatcher(tag);
+            if (SubAnagramSearcher.hasBlanks(value)) {
+                new SubAnagramSearcher(dbCreator.getKeyIndex(dict)).search(value, minLength, batcher);
+            } else {
+                dbCreator.getDeltaSearcher(dict).search(value, minLength, batcher);
+            }
+            batcher.flush();
+        }
+
+        /** Searches for phrases of words that use up all the given letters in value, like
+         * dormitory - dirty room, and updates the results view with every new batch of
+         * phrases it finds. Cancelling the task interrupts the search.
+         * @param dict The dictionary in which to search for matches
+         * @param value The letters of the phrases
+         * @param tag The tag to add to each phrase or null
+         */
+        private void searchPhrases(String dict, String value, String tag) {
+            ResultBatcher batcher = newBatcher(tag);
+            new PhraseSolver(dbCreator.getKeyIndex(dict)).solve(value, PhraseSolver.DEFAULT_MAX_WORDS,
+                    SettingsPage.minWordLength, PhraseSolver.DEFAULT_MAX_RESULTS, batcher);
+            batcher.flush();
+        }
+
+        /** Returns a ResultBatcher that publishes its batches with the given tag until the search is stopped */
+        private ResultBatcher newBatcher(final String tag) {
+            return new ResultBatcher(MAX_BATCH_SIZE, MAX_BATCH_DELAY_MS,
+                    new ResultBatcher.BatchListener() {
+                        @Override
+                        public boolean onBatch(List<String> batch) {
+                            publishWords(batch, tag);
+                            return !isStopped();
+                        }
+                    });
+        }
+    }
+
+	/** Runs the searches as you type on the thread of the SearchScheduler and posts their
+	 * words to liveAdapter.
+	 *
+	 * Every query starts with an empty list. A substring search whose letters only gain or
+	 * lose one since the last query is still cheap, the DeltaSearcher of each dictionary
+	 * works it out from its last result (see WordSearch.searchAllMatchingAnagrams).
+	 * The words are posted with the lock of the scheduler held, since the workers of
+	 * searchExecutor publish too, so a search of an older generation is either done posting
+	 * before the next one empties the list or sees it's no longer current.
+	 * liveAdapter is only changed by the Runnables it posts, in order.
+	 */
+	class LiveSearch implements SearchScheduler.Search {
+
+        @Override
+        public void run(String query, final long generation) {
+            query = query.trim();
+            boolean substrings = searchSubstrings.isChecked();
+            List<String> dicts = SettingsPage.searchAllLanguages ? getReadyDictionaries()
+                    : (dbCreator.isReady(languageSelected) ? Collections.singletonList(languageSelected)
+                            : Collections.<String>emptyList());
+            boolean valid = !query.isEmpty() && !dicts.isEmpty() && query.matches(VALID_INPUT);
+
+            synchronized (this) {
+                postStart(generation);
+            }
+            if (!valid) {
+                return;
+            }
+
+            long start = Metrics.start();
+            new WordSearch(query, substrings, Collections.<String>emptySet(), getRanking()) {
+                @Override
+                void publish(String[] words, Collection<String> dropped) {
+                    synchronized (LiveSearch.this) {
+                        if (liveSearch.isCurrent(generation)) {
+                            postWords(generation, words, dropped);
+                        }
                     }
-                    bitmask >>= 1;
-                    pos--;
                 }
-                if (str.length() > 3) {
-                    Set<String> tempSet = dbCreator.getMatchingAnagrams(dict, str.toString());
-                    if (!tempSet.isEmpty()) {
-                        matchingWords.addAll(tempSet);
-                        words = matchingWords.toArray(new String[matchingWords.size()]);
-                        publishProgress();
+
+                @Override
+                boolean isStopped() {
+                    return !liveSearch.isCurrent(generation);
+                }
+            }.run();
+            dumpMetrics(start);
+        }
+
+        /** Posts the start of the search of the given generation, which empties the list */
+        private void postStart(final long generation) {
+            final WordRanking ranking = getRanking();
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    liveAdapter.clear();
+                    liveRanking = ranking;
+                    showLiveResults(generation);
+                }
+            });
+        }
+
+        /** Posts a batch of words of the search of the given generation and the words they replace */
+        private void postWords(final long generation, final String[] words, final Collection<String> dropped) {
+            handler.post(new Runnable() {
+                @Override
+                public void run() {
+                    if (!dropped.isEmpty()) {
+                        liveAdapter.setNotifyOnChange(false);
+                        for (String word : dropped) {
+                            liveAdapter.remove(word);
+                        }
                     }
+                    insertWords(liveAdapter, liveRanking, words);
+                    showLiveResults(generation);
                 }
-                if (isCancelled()) {
-                    break;
+            });
+        }
+    }
+
+    /** Shows liveAdapter in place of the results of a search started with the button, if the
+     * given generation is still the current one of the search as you type */
+    private void showLiveResults(long generation) {
+        if (!liveSearch.isCurrent(generation)) {
+            return;
+        }
+        if (searching) {
+            dbSearchTask.cancel(true);
+        }
+        if (listView.getAdapter() != liveAdapter) {
+            listView.setAdapter(liveAdapter);
+        }
+        output.setText(getString(R.string.matches, liveAdapter.getCount()));
+    }
+
+    /** Inserts each of the words in its sorted place in the adapter, which is sorted with the comparator */
+    private static void insertWords(ArrayAdapter<String> adapter, WordRanking ranking, String[] words) {
+        long start = Metrics.start();
+        // notifyDataSetChanged() turns notifications back on, so turn them off for each batch
+        adapter.setNotifyOnChange(false);
+        for (String word : words) {
+            adapter.insert(word, insertionPoint(adapter, ranking, word));
+        }
+        adapter.notifyDataSetChanged();
+        Metrics.stop(Metrics.SORTED_INSERT, start);
+    }
+
+    /** Returns the position in the sorted adapter where the given word belongs */
+    private static int insertionPoint(ArrayAdapter<String> adapter, WordRanking ranking, String word) {
+        int score = ranking.score(word);
+        int low = 0;
+        int high = adapter.getCount() - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            String item = adapter.getItem(mid);
+            if (ranking.compare(ranking.score(item), item, score, word) <= 0) {
+                low = mid + 1;
+            } else {
+                high = mid - 1;
+            }
+        }
+        return low;
+    }
+
+    /** Writes the metrics of the search that started at searchStart to the log (tag StartPage)
+     * as JSON and starts over for the next one. There's only a sink to write when the
+     * collectMetrics setting is on. Can be called from any thread */
+    private static void dumpMetrics(long searchStart) {
+        Metrics.stop(Metrics.SEARCH, searchStart);
+        MetricsSink sink = Metrics.getSink();
+        if (sink instanceof InMemoryMetrics) {
+            Log.i(TAG, "Search metrics: " + ((InMemoryMetrics) sink).toJson());
+            ((InMemoryMetrics) sink).clear();
+        }
+    }
+
+    /** Returns the ranking of the sort option selected in the settings. The search as you
+     * type asks for it a few times a keystroke, so it's only built again when the sort
+     * option, the selected language or the enabled dictionaries change. Called from the UI
+     * thread and the search threads */
+    private synchronized WordRanking getRanking() {
+        Set<String> enabled = SettingsPage.getEnabledDictionaries();
+        if ((cachedRanking == null) || !SettingsPage.sortOptionSelected.equals(rankingSortOption)
+                || !languageSelected.equals(rankingLanguage) || (enabled != rankingDictionaries)) {
+            rankingSortOption = SettingsPage.sortOptionSelected;
+            rankingLanguage = languageSelected;
+            // A new set every time it changes, see SettingsPage.setEnabledDictionaries
+            rankingDictionaries = enabled;
+            if (rankingSortOption.equals("2")) {
+                cachedRanking = new WordRanking(new ShownWordScorer(null, enabled), true);
+            } else if (rankingSortOption.equals("3")) {
+                cachedRanking = new WordRanking(new ShownWordScorer(null, enabled), false);
+            } else if (rankingSortOption.equals("4")) {
+                cachedRanking = new WordRanking(
+                        new ShownWordScorer(Language.fromName(languageSelected), enabled), false);
+            } else {
+                cachedRanking = WordRanking.ALPHABETICAL;
+            }
+        }
+        return cachedRanking;
+    }
+
+    /** Scores the words as the list shows them, by their word without the tag of their
+     * dictionary: by its length, or by its tiles in the language of the tag, or else in the
+     * given one. It only reads its fields, so the UI and the searches can share it.
+     */
+    private static class ShownWordScorer implements WordScorer {
+        /** The tiles of the untagged words, null to score the lengths */
+        private final TileScorer tiles;
+        private final Map<String, TileScorer> tagTiles = new HashMap<String, TileScorer>();
+
+        /** @param language the language of the untagged words, null to score the lengths
+         * @param dicts the dictionaries whose tagged words are scored in their own language
+         */
+        ShownWordScorer(Language language, Collection<String> dicts) {
+            tiles = (language == null) ? null : new TileScorer(language);
+            if (language != null) {
+                for (String dict : dicts) {
+                    tagTiles.put(dict, new TileScorer(Language.fromName(dict)));
                 }
             }
         }
+
+        @Override
+        public int score(String shown) {
+            String word = TaggedWord.wordOf(shown);
+            if (tiles == null) {
+                return word.length();
+            }
+            String dict = (word == shown) ? null : TaggedWord.dictionaryOf(shown);
+            TileScorer scorer = (dict == null) ? null : tagTiles.get(dict);
+            return ((scorer == null) ? tiles : scorer).score(word);
+        }
     }
 
     @Override
@@ -250,8 +673,6 @@ public class StartPage extends SherlockActivity {
 
   		searching = false;
 
-  		pattern = Pattern.compile("\\p{InCombiningDiacriticalMarks}+");
-
   		// Find the Views once in OnCreate to save time and not use findViewById later.
   		spinner = (Spinner) findViewById(R.id.langSpinner);
   		input = (EditText) findViewById(R.id.inputText);
@@ -265,6 +686,20 @@ public class StartPage extends SherlockActivity {
   		        return false;
   		    }
   		});
+  		input.addTextChangedListener(new TextWatcher() {
+  		    @Override
+  		    public void afterTextChanged(Editable s) {
+  		        if (SettingsPage.searchAsYouType) {
+  		            liveSearch.submit(s.toString());
+  		        }
+  		    }
+
+  		    @Override
+  		    public void beforeTextChanged(CharSequence s, int start, int count, int after) {}
+
+  		    @Override
+  		    public void onTextChanged(CharSequence s, int start, int before, int count) {}
+  		});
   		ImageButton clearButton = (ImageButton) findViewById(R.id.clearButton);
   		clearButton.setOnClickListener(new View.OnClickListener() {
 			@Override
@@ -291,7 +726,7 @@ public class StartPage extends SherlockActivity {
 				if (v != null) {
 	            	startActivity(new Intent(Intent.ACTION_VIEW,
 	            					Uri.parse(WEB_SEARCH_URI_PREFIX
-	            								+ ((TextView) v).getText().toString())
+	            								+ TaggedWord.wordOf(((TextView) v).getText().toString()))
 	            					));
 				}
         		return true;
@@ -310,9 +745,27 @@ public class StartPage extends SherlockActivity {
 								.edit();
 		  	    editor.putBoolean(SettingsPage.SEARCH_SUBSTR_KEY, isChecked);
 		  	    editor.commit();
+		  	    if (SettingsPage.searchAsYouType) {
+		  	        liveSearch.submit(input.getText().toString());
+		  	    }
 			}});
   		// Initialize the database
         dbCreator = new DictionaryDBCreator(getApplicationContext());
+        searchExecutor = MultiDictionarySearcher.newWorkerPool();
+        handler = new Handler();
+        liveAdapter = new ArrayAdapter<String>(getApplicationContext(), R.layout.word_layout,
+                new ArrayList<String>());
+        liveSearch = new SearchScheduler(SearchScheduler.DEFAULT_DEBOUNCE_MS, new LiveSearch());
+    }
+
+    @Override
+    protected void onDestroy() {
+        liveSearch.shutdown();
+        searchExecutor.shutdownNow();
+        if (dbLoaderTask != null) {
+            dbLoaderTask.cancel(true);
+        }
+        super.onDestroy();
     }
 
     @Override
@@ -322,27 +775,49 @@ public class StartPage extends SherlockActivity {
         if (!searching) {
             // Load settings each time the activity loads to ensure latest changes are applied
             SettingsPage.loadSettings(getApplicationContext());
+            if (!SettingsPage.searchAsYouType) {
+                liveSearch.cancel();
+            }
 
-            new DBLoaderTask().execute();
+            startLoading();
 
             setupSpinner();
         }
     }
 
-    @Override
-    public void onPause() {
-    	super.onPause();
+    /** Loads the enabled languages in the background, or makes the loader that is still
+     * running go through them again */
+    private void startLoading() {
+        if ((dbLoaderTask != null) && (dbLoaderTask.getStatus() != AsyncTask.Status.FINISHED)) {
+            dbLoaderTask.reload();
+            return;
+        }
+        dbLoaderTask = new DBLoaderTask();
+        // Since android 3 execute() runs the tasks one at a time, so a search would wait for the whole load
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.HONEYCOMB) {
+            dbLoaderTask.executeOnExecutor(AsyncTask.THREAD_POOL_EXECUTOR);
+        } else {
+            dbLoaderTask.execute();
+        }
+    }
 
-    	dismissProgressDialog();
+    /** Returns the enabled languages that can be searched already */
+    private List<String> getReadyDictionaries() {
+        List<String> ready = new ArrayList<String>();
+        for (String dict : SettingsPage.getEnabledDictionaries()) {
+            if (dbCreator.isReady(dict)) {
+                ready.add(dict);
+            }
+        }
+        return ready;
     }
 
     /** Initializes the spinner view and fills it with the language choices
      *  that are enabled via the settings. */
 	private void setupSpinner() {
-		String[] values = SettingsPage.getEnabledDictionaries()
-								.toArray(
-										new String[SettingsPage.getEnabledDictionaries().size()]
-								 );
+		// One snapshot, the set may be replaced between two calls
+		Set<String> enabled = SettingsPage.getEnabledDictionaries();
+		String[] values = enabled.toArray(new String[enabled.size()]);
 
 		spinner.setAdapter(new ArrayAdapter<String>(this,
         				android.R.layout.simple_list_item_1, values));
@@ -358,6 +833,9 @@ public class StartPage extends SherlockActivity {
 		        				.edit();
 			  	    editor.putString(SettingsPage.LANG_SEL_KEY, languageSelected);
 			  	    editor.commit();
+			  	    if (SettingsPage.searchAsYouType) {
+			  	        liveSearch.submit(input.getText().toString());
+			  	    }
 		        }
 		        @Override
 				public void onNothingSelected(AdapterView<?> arg0) {}
@@ -390,18 +868,28 @@ public class StartPage extends SherlockActivity {
             dbSearchTask.cancel(true);
             return;
         }
-        if ((dbCreator != null) && SettingsPage.hasLoadedDictionary(languageSelected)) {
+        boolean enabled = (dbCreator != null) && SettingsPage.hasLoadedDictionary(languageSelected);
+        // When searching all the languages any of them that is loaded will do
+        boolean ready = enabled && (SettingsPage.searchAllLanguages
+                ? !getReadyDictionaries().isEmpty() : dbCreator.isReady(languageSelected));
+        if (ready) {
             searchString = input.getText().toString();
             if ((searchString != null) && !(searchString = searchString.trim()).isEmpty()
-                    && searchString.matches("[^!@#$%`~;&\"\\(\\)\\[\\]{}.,<>]+")) {
+                    && searchString.matches(VALID_INPUT)) {
                 hideSoftKeyboard();
                 searchButton.setText(getString(R.string.stop_search));
+                // Its results would take the place of the ones of this search
+                liveSearch.cancel();
                 dbSearchTask = new DBSearchTask();
                 dbSearchTask.execute();
             } else {
                 Toast.makeText(getApplicationContext(), getString(R.string.no_input_given),
                         Toast.LENGTH_SHORT).show();
             }
+        } else if (enabled) {
+            hideSoftKeyboard();
+            Toast.makeText(getApplicationContext(), getString(R.string.dict_loading, languageSelected),
+                    Toast.LENGTH_SHORT).show();
         } else {
             hideSoftKeyboard();
             Toast.makeText(getApplicationContext(), getString(R.string.dict_not_loaded), Toast.LENGTH_SHORT)
@@ -426,47 +914,4 @@ public class StartPage extends SherlockActivity {
         }
     }
 
-	private void dismissProgressDialog() {
-        if (mProgressDialog != null) {
-            try {
-                mProgressDialog.dismiss();
-            } catch (IllegalArgumentException e) {
-                return;
-            }
-        }
-	}
-
-	private static final Comparator<String> alphabeticComp = new Comparator<String>() {
-		@Override
-		public int compare(String str1, String str2) {
-			return str1.compareTo(str2);
-		}
-	};
-
-	/** Compares strings based on string length. If they have the same length
-	 * then they are compared alphabetically
-	 */
-	private static final Comparator<String> lengthAscComp = new Comparator<String>() {
-		@Override
-		public int compare(String str1, String str2) {
-            if (str1.length() == str2.length()) {
-                return str1.compareTo(str2);
-            }
-            return Integer.valueOf(str1.length()).compareTo(str2.length());
-		}
-	};
-
-	/** Compares strings based on string length. If they have the same length
-	 * then they are compared alphabetically
-	 */
-	private static final Comparator<String> lengthDescComp = new Comparator<String>() {
-		@Override
-		public int compare(String str1, String str2) {
-            if (str1.length() == str2.length()) {
-                return str1.compareTo(str2);
-            }
-            return Integer.valueOf(str2.length()).compareTo(str1.length());
-		}
-	};
-
 }
@@ -0,0 +1,462 @@
+package com.as.anagramsolver.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** An in-memory dictionary that answers the same queries as the dictionary tables of
+ * DictionaryDBCreator without a database.
+ *
+ * Instead of one object per word it keeps everything in a few flat arrays:
+ * all the distinct sorted keys packed one after the other in a char pool with an offset
+ * array in ascending key order (so a key is found with a binary search) and all the words
+ * packed the same way, grouped by their key. A HashMap&lt;String, List&lt;String&gt;&gt; with the
+ * same content takes several times more memory, which is what made the radix tries and
+ * other object based structures run out of memory on the device.
+ *
+ * It doesn't use any android classes so it can be used by any JVM program.
+ * Instances are immutable and safe to share between threads.
+ */
+public class CompactDictionary implements SortedKeyIndex {
+
+	/** Used instead of the sizes of the VM for the footprint estimates: 64bit with compressed references */
+	private static final int OBJECT_HEADER = 12, ARRAY_HEADER = 16, REFERENCE = 4;
+
+	private final String name;
+
+	/** All the distinct keys (sorted, normalized words), one after the other */
+	final char[] keyPool;
+	/** The i-th key is keyPool[keyOffsets[i]] to keyPool[keyOffsets[i + 1]]. Keys are in ascending order */
+	final int[] keyOffsets;
+	/** The words of the i-th key are the words keyWords[i] to keyWords[i + 1] */
+	final int[] keyWords;
+	/** All the words, grouped by their key */
+	final char[] wordPool;
+	/** The i-th word is wordPool[wordOffsets[i]] to wordPool[wordOffsets[i + 1]] */
+	final int[] wordOffsets;
+
+	/** Built on the first getStarMatches() */
+	private volatile PatternIndex patternIndex;
+
+	CompactDictionary(String name, char[] keyPool, int[] keyOffsets, int[] keyWords,
+			char[] wordPool, int[] wordOffsets) {
+		this.name = name;
+		this.keyPool = keyPool;
+		this.keyOffsets = keyOffsets;
+		this.keyWords = keyWords;
+		this.wordPool = wordPool;
+		this.wordOffsets = wordOffsets;
+	}
+
+	/** Loads the dictionary of the given language from the directory with the raw dictionary files
+	 * @param language the language to load
+	 * @param rawDir the directory containing the files, e.g. dictionaries
+	 * @return
+	 * @throws IOException if one of the files can't be read
+	 */
+	public static CompactDictionary load(Language language, File rawDir) throws IOException {
+		LineReader words = LineReader.open(new File(rawDir, language.getFileName()));
+		try {
+			LineReader sortedWords = LineReader.open(new File(rawDir, language.getSortedFileName()));
+			try {
+				return load(language.getName(), words, sortedWords);
+			} finally {
+				sortedWords.close();
+			}
+		} finally {
+			words.close();
+		}
+	}
+
+	/** Reads the given dictionary files and builds a dictionary from them. Like
+	 * DictionaryDBCreator.fillDictionary each line of words is paired with the same line
+	 * of sortedWords and reading stops at the end of the shortest one.
+	 * @param name the name of the dictionary
+	 * @param words the file containing each word of the dictionary
+	 * @param sortedWords the file containing each equivalent word of the dictionary sorted and normalized
+	 * @return
+	 * @throws IOException
+	 */
+	public static CompactDictionary load(String name, InputStream words, InputStream sortedWords)
+			throws IOException {
+		return load(name, new LineReader(words), new LineReader(sortedWords));
+	}
+
+	private static CompactDictionary load(String name, LineReader words, LineReader sortedWords)
+			throws IOException {
+		// Join each key with its word so a plain sort orders them by key and then by word.
+		// The lines are joined straight from the buffers of the readers, so that is the only String
+		List<String> entries = new ArrayList<String>();
+		char[] joined = new char[64];
+		while (words.next() && sortedWords.next()) {
+			int keyLength = sortedWords.length();
+			int wordLength = words.length();
+			if (joined.length < keyLength + 1 + wordLength) {
+				joined = new char[2 * (keyLength + 1 + wordLength)];
+			}
+			System.arraycopy(sortedWords.getChars(), 0, joined, 0, keyLength);
+			joined[keyLength] = '\u0000';
+			System.arraycopy(words.getChars(), 0, joined, keyLength + 1, wordLength);
+			entries.add(new String(joined, 0, keyLength + 1 + wordLength));
+		}
+		String[] sorted = entries.toArray(new String[entries.size()]);
+		entries = null;
+		Arrays.sort(sorted);
+
+		Builder builder = new Builder(sorted.length);
+		for (String entry : sorted) {
+			int separator = entry.indexOf('\u0000');
+			builder.add(entry, 0, separator, entry, separator + 1, entry.length());
+		}
+		return builder.build(name);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/** Returns the number of words in the dictionary */
+	public int getWordCount() {
+		return wordOffsets.length - 1;
+	}
+
+	/** Returns the number of distinct keys in the dictionary */
+	public int getKeyCount() {
+		return keyOffsets.length - 1;
+	}
+
+	/** Returns a Set<String> with all the words that can be formed from the given letters in value.
+	 * Like DictionaryDBCreator.getMatchingAnagrams the letters must already be normalized.
+	 * @param value The letters to search for anagrams
+	 * @return
+	 */
+	public Set<String> getMatchingAnagrams(String value) {
+		char[] l = value.toCharArray();
+		Arrays.sort(l);
+
+		Set<String> matchingWords = new HashSet<String>();
+		int key = findKey(l, 0, l.length);
+		if (key >= 0) {
+			addWords(key, matchingWords);
+		}
+		return matchingWords;
+	}
+
+	/** Returns a Set<String> with all the words that are like the pattern word* or *word or wo*rd.
+	 * It works like the sql LIKE of DictionaryDBCreator.getStarMatches: * or % matches any
+	 * number of characters, ? or _ matches exactly one and ascii letters are compared case
+	 * insensitively. The PatternIndex that answers it is built on the first call.
+	 * @param pattern The word to search for. Looks like word* or *word or wo*rd
+	 * @return
+	 */
+	public Set<String> getStarMatches(String pattern) {
+		return getPatternIndex().match(pattern);
+	}
+
+	/** Returns the index used by getStarMatches, building it the first time */
+	public PatternIndex getPatternIndex() {
+		PatternIndex index = patternIndex;
+		if (index == null) {
+			synchronized (this) {
+				index = patternIndex;
+				if (index == null) {
+					index = new PatternIndex(this);
+					patternIndex = index;
+				}
+			}
+		}
+		return index;
+	}
+
+	@Override
+	public int probe(char[] key, int length) {
+		int i = findKey(key, 0, length);
+		if (i >= 0) {
+			return KEY;
+		}
+		i = -(i + 1);
+		if ((i < getKeyCount()) && startsWith(i, key, length)) {
+			return PREFIX;
+		}
+		return NONE;
+	}
+
+	@Override
+	public int nextChar(char[] key, int length, char from) {
+		// Find the first key >= prefix + from, in place if key has room for it
+		char[] probe = (key.length > length) ? key : Arrays.copyOf(key, length + 1);
+		char saved = probe[length];
+		probe[length] = from;
+		int i = findKey(probe, 0, length + 1);
+		probe[length] = saved;
+		if (i < 0) {
+			i = -(i + 1);
+		}
+		if ((i < getKeyCount()) && startsWith(i, key, length)) {
+			return keyPool[keyOffsets[i] + length];
+		}
+		return -1;
+	}
+
+	@Override
+	public void addWords(char[] key, int length, Collection<String> out) {
+		int i = findKey(key, 0, length);
+		if (i >= 0) {
+			addWords(i, out);
+		}
+	}
+
+	/** Returns true if the i-th key starts with prefix[0..length) */
+	boolean startsWith(int i, char[] prefix, int length) {
+		int from = keyOffsets[i];
+		if ((keyOffsets[i + 1] - from) < length) {
+			return false;
+		}
+		for (int j = 0; j < length; j++) {
+			if (keyPool[from + j] != prefix[j]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns true if text[from..to) matches the LIKE pattern */
+	static boolean like(char[] pattern, char[] text, int from, int to) {
+		int p = 0, t = from;
+		// Where to resume when a mismatch happens after the last % seen
+		int starP = -1, starT = -1;
+		while (t < to) {
+			if (p < pattern.length) {
+				char c = pattern[p];
+				if ((c == '%') || (c == '*')) {
+					starP = ++p;
+					starT = t;
+					continue;
+				}
+				if ((c == '_') || (c == '?') || (foldAscii(c) == foldAscii(text[t]))) {
+					p++;
+					t++;
+					continue;
+				}
+			}
+			if (starP < 0) {
+				return false;
+			}
+			p = starP;
+			t = ++starT;
+		}
+		while ((p < pattern.length) && ((pattern[p] == '%') || (pattern[p] == '*'))) {
+			p++;
+		}
+		return p == pattern.length;
+	}
+
+	static char foldAscii(char c) {
+		return ((c >= 'A') && (c <= 'Z')) ? (char) (c + ('a' - 'A')) : c;
+	}
+
+	/** Returns the index of the key equal to key[from..to) or -(insertion point) - 1 if there isn't one */
+	int findKey(char[] key, int from, int to) {
+		int low = 0;
+		int high = getKeyCount() - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			int cmp = compareKey(mid, key, from, to);
+			if (cmp < 0) {
+				low = mid + 1;
+			} else if (cmp > 0) {
+				high = mid - 1;
+			} else {
+				return mid;
+			}
+		}
+		return -(low + 1);
+	}
+
+	/** Compares the i-th key with key[from..to) like String.compareTo */
+	int compareKey(int i, char[] key, int from, int to) {
+		int a = keyOffsets[i], aEnd = keyOffsets[i + 1];
+		int b = from;
+		while ((a < aEnd) && (b < to)) {
+			char c1 = keyPool[a++], c2 = key[b++];
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return (aEnd - keyOffsets[i]) - (to - from);
+	}
+
+	/** Returns the i-th key, 0 &lt;= i &lt; getKeyCount(). Keys are in ascending order */
+	public String getKey(int i) {
+		return new String(keyPool, keyOffsets[i], keyOffsets[i + 1] - keyOffsets[i]);
+	}
+
+	/** Returns the number of letters of the i-th key */
+	public int getKeyLength(int i) {
+		return keyOffsets[i + 1] - keyOffsets[i];
+	}
+
+	/** Returns the j-th letter of the i-th key, without making it into a String. The letters
+	 * of a key are in ascending order */
+	public char getKeyLetter(int i, int j) {
+		return keyPool[keyOffsets[i] + j];
+	}
+
+	/** Returns the i-th word, 0 &lt;= i &lt; getWordCount(). Words are grouped by their key */
+	public String getWord(int i) {
+		return new String(wordPool, wordOffsets[i], wordOffsets[i + 1] - wordOffsets[i]);
+	}
+
+	/** Returns the index of the first word of the i-th key, so its words are the words
+	 * getFirstWord(i) to getFirstWord(i + 1). getFirstWord(getKeyCount()) is getWordCount() */
+	public int getFirstWord(int i) {
+		return keyWords[i];
+	}
+
+	/** Adds all the words of the i-th key to the given collection */
+	public void addWords(int key, Collection<String> out) {
+		for (int w = keyWords[key]; w < keyWords[key + 1]; w++) {
+			out.add(getWord(w));
+		}
+	}
+
+	/** Returns the approximate number of bytes this dictionary takes in the heap */
+	public long getHeapFootprint() {
+		return align(OBJECT_HEADER + (6 * REFERENCE))
+				+ charArray(keyPool.length) + intArray(keyOffsets.length) + intArray(keyWords.length)
+				+ charArray(wordPool.length) + intArray(wordOffsets.length);
+	}
+
+	/** Returns the approximate number of bytes a HashMap&lt;String, List&lt;String&gt;&gt; from each key
+	 * to an ArrayList of its words would take for the same content, to compare against
+	 * getHeapFootprint(). Strings are counted with a char[] like on Android.
+	 */
+	public long getHashMapFootprint() {
+		int keys = getKeyCount();
+		int capacity = Integer.highestOneBit(Math.max(1, (int) (keys / 0.75f)) - 1) << 1;
+		long size = align(OBJECT_HEADER + 4 * REFERENCE + 16) + align(ARRAY_HEADER + capacity * REFERENCE);
+		for (int i = 0; i < keys; i++) {
+			int words = keyWords[i + 1] - keyWords[i];
+			size += align(OBJECT_HEADER + 4 + 3 * REFERENCE) // HashMap.Node
+					+ string(keyOffsets[i + 1] - keyOffsets[i])
+					+ align(OBJECT_HEADER + 8 + REFERENCE) // ArrayList
+					+ align(ARRAY_HEADER + words * REFERENCE);
+			for (int w = keyWords[i]; w < keyWords[i + 1]; w++) {
+				size += string(wordOffsets[w + 1] - wordOffsets[w]);
+			}
+		}
+		return size;
+	}
+
+	private static long string(int length) {
+		return align(OBJECT_HEADER + 4 + 4 + REFERENCE) + charArray(length);
+	}
+
+	private static long charArray(int length) {
+		return align(ARRAY_HEADER + 2L * length);
+	}
+
+	private static long intArray(int length) {
+		return align(ARRAY_HEADER + 4L * length);
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + getWordCount() + " words, " + getKeyCount() + " keys, "
+				+ (getHeapFootprint() / 1024) + " KB (HashMap: " + (getHashMapFootprint() / 1024) + " KB)";
+	}
+
+	/** Packs (key, word) pairs that are added in ascending key order into a CompactDictionary.
+	 * A word that is added twice for the same key is only kept once. Also used by
+	 * sortDictionaries, which sorts the pairs itself. */
+	public static class Builder {
+		private char[] keyPool = new char[1024];
+		private int keyPoolSize = 0;
+		private int[] keyOffsets;
+		private int[] keyWords;
+		private int keys = 0;
+		private char[] wordPool = new char[1024];
+		private int wordPoolSize = 0;
+		private int[] wordOffsets;
+		private int words = 0;
+
+		public Builder(int expectedWords) {
+			keyOffsets = new int[expectedWords + 1];
+			keyWords = new int[expectedWords + 1];
+			wordOffsets = new int[expectedWords + 1];
+		}
+
+		/** Adds key[keyFrom..keyTo) with word[wordFrom..wordTo) */
+		public void add(CharSequence key, int keyFrom, int keyTo, CharSequence word, int wordFrom, int wordTo) {
+			boolean sameKey = (keys > 0) && equal(keyPool, keyOffsets[keys - 1], keyPoolSize, key, keyFrom, keyTo);
+			if (!sameKey) {
+				keyPool = ensure(keyPool, keyPoolSize + (keyTo - keyFrom));
+				for (int i = keyFrom; i < keyTo; i++) {
+					keyPool[keyPoolSize++] = key.charAt(i);
+				}
+				keyOffsets = ensure(keyOffsets, keys + 2);
+				keyWords = ensure(keyWords, keys + 2);
+				keyWords[keys] = words;
+				keys++;
+				keyOffsets[keys] = keyPoolSize;
+			} else if (isDuplicateWord(word, wordFrom, wordTo)) {
+				return;
+			}
+			wordPool = ensure(wordPool, wordPoolSize + (wordTo - wordFrom));
+			for (int i = wordFrom; i < wordTo; i++) {
+				wordPool[wordPoolSize++] = word.charAt(i);
+			}
+			wordOffsets = ensure(wordOffsets, words + 2);
+			words++;
+			wordOffsets[words] = wordPoolSize;
+			keyWords[keys] = words;
+		}
+
+		/** Returns true if the current key already has this word */
+		private boolean isDuplicateWord(CharSequence word, int from, int to) {
+			for (int w = keyWords[keys - 1]; w < words; w++) {
+				if (equal(wordPool, wordOffsets[w], wordOffsets[w + 1], word, from, to)) {
+					return true;
+				}
+			}
+			return false;
+		}
+
+		public CompactDictionary build(String name) {
+			return new CompactDictionary(name,
+					Arrays.copyOf(keyPool, keyPoolSize), Arrays.copyOf(keyOffsets, keys + 1),
+					Arrays.copyOf(keyWords, keys + 1),
+					Arrays.copyOf(wordPool, wordPoolSize), Arrays.copyOf(wordOffsets, words + 1));
+		}
+
+		private static boolean equal(char[] pool, int from, int to, CharSequence s, int sFrom, int sTo) {
+			if ((to - from) != (sTo - sFrom)) {
+				return false;
+			}
+			for (int i = from, j = sFrom; i < to; i++, j++) {
+				if (pool[i] != s.charAt(j)) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		private static char[] ensure(char[] array, int size) {
+			return (size <= array.length) ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+		}
+
+		private static int[] ensure(int[] array, int size) {
+			return (size <= array.length) ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+		}
+	}
+}
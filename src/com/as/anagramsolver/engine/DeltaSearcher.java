@@ -0,0 +1,164 @@
+package com.as.anagramsolver.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Finds the same words as SubAnagramSearcher.search(value, minLength, listener), but keeps
+ * the result of the last search with its letters, so a search whose letters only gain or lose
+ * one letter is worked out from it instead of walking the index again.
+ *
+ * Every word of a rack is still a word of the rack with one more letter c, and the new ones
+ * are the keys that use every c of the bigger rack, which SubAnagramSearcher.searchUsingAll
+ * walks without going down any other branch. The words of a rack with one letter less are
+ * the ones of the last result whose key still fits, so they're filtered without a lookup.
+ * Anything else, blanks or another minLength included, is a full search.
+ *
+ * The result is kept by key, and the letters as their histogram: sorted, so equal letters
+ * are runs and one rack fits in another if a merge of the two never runs out. Only a search
+ * that ran to its end is kept, one that the listener or an interrupt stopped is incomplete.
+ * A search waits for the one that runs, so it can be shared by threads.
+ */
+public class DeltaSearcher {
+
+	private final SubAnagramSearcher searcher;
+	/** The words of each key of the last result */
+	private final Map<String, List<String>> result = new LinkedHashMap<String, List<String>>();
+	/** The sorted letters of the last result, null if there is none to work from */
+	private char[] letters;
+	private int minLength;
+	/** The key whose words the index handed out last, set by the KeyRecorder */
+	private String foundKey;
+
+	public DeltaSearcher(SortedKeyIndex index) {
+		this.searcher = new SubAnagramSearcher(new KeyRecorder(index));
+	}
+
+	/** Searches like SubAnagramSearcher.search(value, minLength, listener), from the last result
+	 * if the letters of value are the ones of the last search with one more or one less
+	 * @param value The normalized letters to search for anagrams
+	 * @param minLength The minimum length of the words returned
+	 * @param listener Receives the words and can stop the search
+	 */
+	public synchronized void search(String value, int minLength, final SubAnagramSearcher.MatchListener listener) {
+		char[] sorted = value.toCharArray();
+		Arrays.sort(sorted);
+		char[] last = letters;
+		// Forget the last result until this one is complete
+		letters = null;
+		boolean complete;
+		if ((last == null) || (minLength != this.minLength) || SubAnagramSearcher.hasBlanks(value)) {
+			complete = searchAll(value, minLength, listener);
+		} else if ((sorted.length == last.length + 1) && SubAnagramSearcher.fits(last, last.length, sorted, sorted.length)) {
+			Metrics.count(Metrics.DELTA_SEARCHES, 1);
+			complete = addLetter(value, minLength, addedLetter(last, sorted), listener);
+		} else if ((sorted.length == last.length - 1) && SubAnagramSearcher.fits(sorted, sorted.length, last, last.length)) {
+			Metrics.count(Metrics.DELTA_SEARCHES, 1);
+			complete = removeLetter(sorted, listener);
+		} else {
+			complete = searchAll(value, minLength, listener);
+		}
+		if (complete && !Thread.currentThread().isInterrupted()) {
+			letters = sorted;
+			this.minLength = minLength;
+		}
+	}
+
+	/** Forgets the last result, e.g. when the dictionary changed */
+	public synchronized void clear() {
+		result.clear();
+		letters = null;
+	}
+
+	/** A full search, that keeps every key it finds */
+	private boolean searchAll(String value, int minLength, SubAnagramSearcher.MatchListener listener) {
+		result.clear();
+		Recorder recorder = new Recorder(listener);
+		searcher.search(value, minLength, recorder);
+		return !recorder.stopped;
+	}
+
+	/** Hands out the last result and then walks only the keys that need every copy of the added letter */
+	private boolean addLetter(String value, int minLength, char added, SubAnagramSearcher.MatchListener listener) {
+		for (List<String> words : result.values()) {
+			if (!listener.onMatches(words)) {
+				return false;
+			}
+		}
+		Recorder recorder = new Recorder(listener);
+		searcher.searchUsingAll(value, minLength, added, recorder);
+		return !recorder.stopped;
+	}
+
+	/** Hands out the keys of the last result that the smaller rack still has and drops the others */
+	private boolean removeLetter(char[] sorted, SubAnagramSearcher.MatchListener listener) {
+		Iterator<Map.Entry<String, List<String>>> keys = result.entrySet().iterator();
+		while (keys.hasNext()) {
+			Map.Entry<String, List<String>> key = keys.next();
+			char[] chars = key.getKey().toCharArray();
+			if (!SubAnagramSearcher.fits(chars, chars.length, sorted, sorted.length)) {
+				keys.remove();
+			} else if (!listener.onMatches(key.getValue())) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns the letter that longer has one more of than shorter, both sorted */
+	private static char addedLetter(char[] shorter, char[] longer) {
+		for (int i = 0; i < shorter.length; i++) {
+			if (shorter[i] != longer[i]) {
+				return longer[i];
+			}
+		}
+		return longer[shorter.length];
+	}
+
+	/** Keeps the words of every key found with the key and hands them on */
+	private class Recorder implements SubAnagramSearcher.MatchListener {
+		private final SubAnagramSearcher.MatchListener listener;
+		boolean stopped = false;
+
+		Recorder(SubAnagramSearcher.MatchListener listener) {
+			this.listener = listener;
+		}
+
+		@Override
+		public boolean onMatches(Collection<String> words) {
+			result.put(foundKey, new ArrayList<String>(words));
+			stopped = !listener.onMatches(words);
+			return !stopped;
+		}
+	}
+
+	/** Tells which key the words handed to the listener are of: the walk calls addWords for a
+	 * key and hands its words to the listener right after */
+	private class KeyRecorder implements SortedKeyIndex {
+		private final SortedKeyIndex index;
+
+		KeyRecorder(SortedKeyIndex index) {
+			this.index = index;
+		}
+
+		@Override
+		public int probe(char[] key, int length) {
+			return index.probe(key, length);
+		}
+
+		@Override
+		public int nextChar(char[] key, int length, char from) {
+			return index.nextChar(key, length, from);
+		}
+
+		@Override
+		public void addWords(char[] key, int length, Collection<String> out) {
+			foundKey = new String(key, 0, length);
+			index.addWords(key, length, out);
+		}
+	}
+}
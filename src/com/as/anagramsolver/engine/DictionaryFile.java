@@ -0,0 +1,290 @@
+package com.as.anagramsolver.engine;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.zip.CRC32;
+
+/** Reads and writes the precomputed binary form of a CompactDictionary, so a dictionary can be
+ * opened with a few bulk copies instead of reading, sorting and packing the text files again.
+ *
+ * The file is generated by sortDictionaries and is laid out big endian as:
+ * <pre>
+ * int    MAGIC
+ * int    VERSION
+ * int    name length, followed by the name chars
+ * int    keyCount, keyPoolLength, wordCount, wordPoolLength
+ * int[]  keyOffsets  (keyCount + 1)
+ * int[]  keyWords    (keyCount + 1)
+ * int[]  wordOffsets (wordCount + 1)
+ * char[] keyPool     (keyPoolLength)
+ * char[] wordPool    (wordPoolLength)
+ * long   CRC32 of all the bytes before it
+ * </pre>
+ * or, for a FrontCodedDictionary, as:
+ * <pre>
+ * int    MAGIC
+ * int    FRONT_CODED_VERSION
+ * int    name length, followed by the name chars
+ * list   keys  (see FrontCodedList.write)
+ * list   words
+ * int    wordCount, followed by the index in words of each word of each key
+ * long   CRC32 of all the bytes before it
+ * </pre>
+ * Either one can be read as either kind of dictionary, it's converted when it's read.
+ */
+public class DictionaryFile {
+
+	/** "ASDX" */
+	public static final int MAGIC = 0x41534458;
+	/** Increased every time the layout changes. Files of other versions are rejected */
+	public static final int VERSION = 1;
+	/** The version of the files with a FrontCodedDictionary */
+	public static final int FRONT_CODED_VERSION = 2;
+
+	/** Writes the dictionary to the given file */
+	public static void write(CompactDictionary dictionary, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			write(dictionary, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Writes the dictionary to the given stream */
+	public static void write(CompactDictionary dictionary, OutputStream stream) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream(
+				(dictionary.keyPool.length + dictionary.wordPool.length) * 2
+				+ (dictionary.keyOffsets.length * 2 + dictionary.wordOffsets.length) * 4 + 64);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(VERSION);
+		out.writeInt(dictionary.getName().length());
+		out.writeChars(dictionary.getName());
+		out.writeInt(dictionary.getKeyCount());
+		out.writeInt(dictionary.keyPool.length);
+		out.writeInt(dictionary.getWordCount());
+		out.writeInt(dictionary.wordPool.length);
+		writeInts(out, dictionary.keyOffsets);
+		writeInts(out, dictionary.keyWords);
+		writeInts(out, dictionary.wordOffsets);
+		writeChars(out, dictionary.keyPool);
+		writeChars(out, dictionary.wordPool);
+		writeChecksum(bytes, out, stream);
+	}
+
+	/** Writes the front coded dictionary to the given file */
+	public static void write(FrontCodedDictionary dictionary, File file) throws IOException {
+		OutputStream out = new FileOutputStream(file);
+		try {
+			write(dictionary, out);
+		} finally {
+			out.close();
+		}
+	}
+
+	/** Writes the front coded dictionary to the given stream */
+	public static void write(FrontCodedDictionary dictionary, OutputStream stream) throws IOException {
+		ByteArrayOutputStream bytes = new ByteArrayOutputStream((int) dictionary.getDataSize() + 1024);
+		DataOutputStream out = new DataOutputStream(bytes);
+		out.writeInt(MAGIC);
+		out.writeInt(FRONT_CODED_VERSION);
+		out.writeInt(dictionary.getName().length());
+		out.writeChars(dictionary.getName());
+		dictionary.keys.write(out);
+		dictionary.words.write(out);
+		out.writeInt(dictionary.keyWords.length);
+		writeInts(out, dictionary.keyWords);
+		writeChecksum(bytes, out, stream);
+	}
+
+	/** Appends the CRC32 of everything written to bytes so far and copies them to the stream */
+	private static void writeChecksum(ByteArrayOutputStream bytes, DataOutputStream out, OutputStream stream)
+			throws IOException {
+		out.flush();
+		CRC32 crc = new CRC32();
+		crc.update(bytes.toByteArray());
+		out.writeLong(crc.getValue());
+		out.flush();
+		bytes.writeTo(stream);
+	}
+
+	private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+		for (int value : values) {
+			out.writeInt(value);
+		}
+	}
+
+	private static void writeChars(DataOutputStream out, char[] values) throws IOException {
+		for (char value : values) {
+			out.writeChar(value);
+		}
+	}
+
+	/** Memory maps the given file and reads the dictionary from it */
+	public static CompactDictionary read(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return read(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Reads the whole stream and the dictionary from it. Used where the file can't be mapped,
+	 * e.g. for a compressed resource */
+	public static CompactDictionary read(InputStream in) throws IOException {
+		return read(readFully(in));
+	}
+
+	/** Reads a dictionary from the given buffer, from its position to its limit. A front coded
+	 * one is expanded */
+	public static CompactDictionary read(ByteBuffer buffer) throws IOException {
+		if (readHeader(buffer) == FRONT_CODED_VERSION) {
+			return readFrontCodedBody(buffer).expand();
+		}
+		char[] name = readChars(buffer, buffer.getInt());
+		int keyCount = buffer.getInt();
+		int keyPoolLength = buffer.getInt();
+		int wordCount = buffer.getInt();
+		int wordPoolLength = buffer.getInt();
+		int[] keyOffsets = readInts(buffer, keyCount + 1);
+		int[] keyWords = readInts(buffer, keyCount + 1);
+		int[] wordOffsets = readInts(buffer, wordCount + 1);
+		char[] keyPool = readChars(buffer, keyPoolLength);
+		char[] wordPool = readChars(buffer, wordPoolLength);
+		return new CompactDictionary(new String(name), keyPool, keyOffsets, keyWords, wordPool, wordOffsets);
+	}
+
+	/** Memory maps the given file and reads the front coded dictionary from it */
+	public static FrontCodedDictionary readFrontCoded(File file) throws IOException {
+		FileInputStream in = new FileInputStream(file);
+		try {
+			FileChannel channel = in.getChannel();
+			return readFrontCoded(channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} finally {
+			in.close();
+		}
+	}
+
+	/** Reads the whole stream and the front coded dictionary from it */
+	public static FrontCodedDictionary readFrontCoded(InputStream in) throws IOException {
+		return readFrontCoded(readFully(in));
+	}
+
+	/** Reads a front coded dictionary from the given buffer, from its position to its limit.
+	 * One that isn't front coded is packed with the default block size */
+	public static FrontCodedDictionary readFrontCoded(ByteBuffer buffer) throws IOException {
+		if (readHeader(buffer) == VERSION) {
+			buffer.position(buffer.position() - 8);
+			return FrontCodedDictionary.compress(read(buffer));
+		}
+		return readFrontCodedBody(buffer);
+	}
+
+	/** Reads the rest of a front coded file, after its version */
+	private static FrontCodedDictionary readFrontCodedBody(ByteBuffer buffer) throws IOException {
+		char[] name = readChars(buffer, buffer.getInt());
+		FrontCodedList keys = FrontCodedList.read(buffer);
+		FrontCodedList words = FrontCodedList.read(buffer);
+		int[] keyWords = readInts(buffer, buffer.getInt());
+		return new FrontCodedDictionary(new String(name), keys, words, keyWords);
+	}
+
+	/** Checks the checksum, the magic and the version of the file in the buffer and leaves the
+	 * buffer after the version
+	 * @return the version, VERSION or FRONT_CODED_VERSION
+	 * @throws IOException if it isn't a dictionary file of either version or it is corrupt
+	 */
+	private static int readHeader(ByteBuffer buffer) throws IOException {
+		int start = buffer.position();
+		int end = buffer.limit() - 8;
+		if (end - start < 32) {
+			throw new IOException("Not a dictionary file");
+		}
+		CRC32 crc = new CRC32();
+		if (buffer.hasArray()) {
+			crc.update(buffer.array(), buffer.arrayOffset() + start, end - start);
+		} else {
+			byte[] chunk = new byte[1 << 16];
+			ByteBuffer data = buffer.duplicate();
+			data.limit(end);
+			while (data.hasRemaining()) {
+				int length = Math.min(chunk.length, data.remaining());
+				data.get(chunk, 0, length);
+				crc.update(chunk, 0, length);
+			}
+		}
+		if (crc.getValue() != buffer.getLong(end)) {
+			throw new IOException("Dictionary file checksum mismatch");
+		}
+
+		if (buffer.getInt() != MAGIC) {
+			throw new IOException("Not a dictionary file");
+		}
+		int version = buffer.getInt();
+		if ((version != VERSION) && (version != FRONT_CODED_VERSION)) {
+			throw new IOException("Unsupported dictionary file version " + version);
+		}
+		return version;
+	}
+
+	/** Reads the whole stream into a buffer */
+	private static ByteBuffer readFully(InputStream in) throws IOException {
+		int length = in.available();
+		if (length > 0) {
+			// Streams that know their length, like an asset, are read in place without copying them again
+			byte[] data = new byte[length];
+			int filled = 0;
+			int read;
+			while ((filled < length) && ((read = in.read(data, filled, length - filled)) != -1)) {
+				filled += read;
+			}
+			int next = (filled == length) ? in.read() : -1;
+			if ((filled == length) && (next == -1)) {
+				return ByteBuffer.wrap(data);
+			}
+			// It was only a guess, go on with the rest of the stream
+			ByteArrayOutputStream bytes = new ByteArrayOutputStream(2 * length);
+			bytes.write(data, 0, filled);
+			if (next != -1) {
+				bytes.write(next);
+			}
+			return readFully(in, bytes);
+		}
+		return readFully(in, new ByteArrayOutputStream(1 << 20));
+	}
+
+	/** Reads the rest of the stream after the bytes read already into a buffer with all of them */
+	private static ByteBuffer readFully(InputStream in, ByteArrayOutputStream bytes) throws IOException {
+		byte[] buffer = new byte[1 << 16];
+		int read;
+		while ((read = in.read(buffer)) != -1) {
+			bytes.write(buffer, 0, read);
+		}
+		return ByteBuffer.wrap(bytes.toByteArray());
+	}
+
+	private static int[] readInts(ByteBuffer buffer, int length) {
+		int[] values = new int[length];
+		buffer.asIntBuffer().get(values);
+		buffer.position(buffer.position() + length * 4);
+		return values;
+	}
+
+	private static char[] readChars(ByteBuffer buffer, int length) {
+		char[] values = new char[length];
+		buffer.asCharBuffer().get(values);
+		buffer.position(buffer.position() + length * 2);
+		return values;
+	}
+}
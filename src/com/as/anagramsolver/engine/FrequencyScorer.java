@@ -0,0 +1,70 @@
+package com.as.anagramsolver.engine;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Scores a word by how common it is, from a list of words with the most frequent first:
+ * the first of n words scores n, the last 1 and a word that isn't in the list 0. The
+ * dictionaries themselves are alphabetical, so the list comes from elsewhere, e.g. one
+ * word per line of a frequency list of the language. A word listed twice keeps its first rank.
+ * The app has no such lists, so only batchSolve (-s freq) sorts by it.
+ */
+public class FrequencyScorer implements WordScorer {
+
+	private final Map<String, Integer> scores;
+
+	/** @param words the words, the most frequent first */
+	public FrequencyScorer(Collection<String> words) {
+		scores = new HashMap<String, Integer>(2 * words.size());
+		int score = words.size();
+		for (String word : words) {
+			if (!scores.containsKey(word)) {
+				scores.put(word, score);
+			}
+			score--;
+		}
+	}
+
+	@Override
+	public int score(String word) {
+		Integer score = scores.get(word);
+		return (score == null) ? 0 : score;
+	}
+
+	/** Returns the number of words scored */
+	public int size() {
+		return scores.size();
+	}
+
+	/** Reads the list from a text file with one word per line, the most frequent first.
+	 * Empty lines are skipped and only the first column of a line with tabs or spaces is
+	 * kept, so the lists that have the counts next to the words can be used as they are.
+	 * @param file the list
+	 * @return
+	 * @throws IOException
+	 */
+	public static FrequencyScorer load(File file) throws IOException {
+		List<String> words = new ArrayList<String>();
+		LineReader reader = LineReader.open(file);
+		try {
+			while (reader.next()) {
+				String line = reader.toString().trim();
+				int end = 0;
+				while ((end < line.length()) && (line.charAt(end) != '\t') && (line.charAt(end) != ' ')) {
+					end++;
+				}
+				if (end > 0) {
+					words.add(line.substring(0, end));
+				}
+			}
+		} finally {
+			reader.close();
+		}
+		return new FrequencyScorer(words);
+	}
+}
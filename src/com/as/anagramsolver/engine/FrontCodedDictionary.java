@@ -0,0 +1,207 @@
+package com.as.anagramsolver.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** A CompactDictionary packed with front coding, for when the memory matters more than a
+ * few microseconds per lookup.
+ *
+ * The keys are a FrontCodedList in ascending order and each of them carries the number
+ * of its words. The words are a second FrontCodedList of the distinct words in ascending
+ * order, so neighbouring words share their prefixes like the keys do, and the words of each
+ * key are their indexes in that list, grouped by key in the order of the keys like in
+ * CompactDictionary: the words of a key are the indexes from the total of the counts before
+ * it on. Neither list has an offset per entry, only one per block, and a lookup decodes the
+ * one block of keys that can hold the key and then the block of each of its words.
+ *
+ * It answers the same SortedKeyIndex queries as CompactDictionary, so SubAnagramSearcher
+ * and PhraseSolver work on it as they are. Star patterns aren't supported, they need the
+ * words in their own order (see PatternIndex). DictionaryFile writes it as it is, so the
+ * precomputed dictionaries take about as much space on disk as here.
+ * Instances are immutable and safe to share between threads.
+ */
+public class FrontCodedDictionary implements SortedKeyIndex {
+
+	private final String name;
+	/** The keys in ascending order, counted with the number of their words */
+	final FrontCodedList keys;
+	/** The distinct words in ascending order */
+	final FrontCodedList words;
+	/** The index in words of each word of each key, grouped by key in the order of the keys */
+	final int[] keyWords;
+
+	FrontCodedDictionary(String name, FrontCodedList keys, FrontCodedList words, int[] keyWords) {
+		this.name = name;
+		this.keys = keys;
+		this.words = words;
+		this.keyWords = keyWords;
+	}
+
+	/** Packs the dictionary in blocks of FrontCodedList.DEFAULT_BLOCK_SIZE entries */
+	public static FrontCodedDictionary compress(CompactDictionary dictionary) {
+		return compress(dictionary, FrontCodedList.DEFAULT_BLOCK_SIZE);
+	}
+
+	/** Packs the dictionary in blocks of the given number of entries
+	 * @param dictionary the dictionary to pack
+	 * @param blockSize the entries per block of both the keys and the words
+	 * @return
+	 */
+	public static FrontCodedDictionary compress(CompactDictionary dictionary, int blockSize) {
+		FrontCodedList.Builder keys = new FrontCodedList.Builder(blockSize, true);
+		for (int i = 0; i < dictionary.getKeyCount(); i++) {
+			keys.add(dictionary.keyPool, dictionary.keyOffsets[i], dictionary.keyOffsets[i + 1],
+					dictionary.keyWords[i + 1] - dictionary.keyWords[i]);
+		}
+		String[] sorted = new String[dictionary.getWordCount()];
+		for (int w = 0; w < sorted.length; w++) {
+			sorted[w] = dictionary.getWord(w);
+		}
+		Arrays.sort(sorted);
+		FrontCodedList.Builder words = new FrontCodedList.Builder(blockSize, false);
+		int distinct = 0;
+		for (int w = 0; w < sorted.length; w++) {
+			if ((distinct == 0) || !sorted[w].equals(sorted[distinct - 1])) {
+				sorted[distinct++] = sorted[w];
+				char[] chars = sorted[w].toCharArray();
+				words.add(chars, 0, chars.length);
+			}
+		}
+		int[] keyWords = new int[dictionary.getWordCount()];
+		for (int w = 0; w < keyWords.length; w++) {
+			keyWords[w] = Arrays.binarySearch(sorted, 0, distinct, dictionary.getWord(w));
+		}
+		return new FrontCodedDictionary(dictionary.getName(), keys.build(), words.build(), keyWords);
+	}
+
+	/** Unpacks the dictionary into a CompactDictionary with the same keys and words, e.g. to
+	 * run the searches that need one after reading it from a file */
+	public CompactDictionary expand() {
+		List<String> sorted = new ArrayList<String>(words.size());
+		words.addAll(0, words.size(), sorted);
+		CompactDictionary.Builder builder = new CompactDictionary.Builder(keyWords.length);
+		FrontCodedList.Entry entry = new FrontCodedList.Entry();
+		for (int i = 0; i < keys.size(); i++) {
+			keys.read(i, entry);
+			String key = entry.toString();
+			for (int w = entry.countBefore; w < entry.countBefore + entry.count; w++) {
+				String word = sorted.get(keyWords[w]);
+				builder.add(key, 0, key.length(), word, 0, word.length());
+			}
+		}
+		return builder.build(name);
+	}
+
+	public String getName() {
+		return name;
+	}
+
+	/** Returns the number of words in the dictionary */
+	public int getWordCount() {
+		return keyWords.length;
+	}
+
+	/** Returns the number of distinct keys in the dictionary */
+	public int getKeyCount() {
+		return keys.size();
+	}
+
+	/** Returns the i-th key, 0 &lt;= i &lt; getKeyCount(). Keys are in ascending order */
+	public String getKey(int i) {
+		return keys.get(i);
+	}
+
+	/** Returns the index of the first word of the i-th key, so its words are the words
+	 * getFirstWord(i) to getFirstWord(i + 1). getFirstWord(getKeyCount()) is getWordCount() */
+	public int getFirstWord(int i) {
+		if (i == keys.size()) {
+			return keyWords.length;
+		}
+		FrontCodedList.Entry entry = new FrontCodedList.Entry();
+		keys.read(i, entry);
+		return entry.countBefore;
+	}
+
+	/** Returns the i-th word, 0 &lt;= i &lt; getWordCount(). Words are grouped by their key */
+	public String getWord(int i) {
+		return words.get(keyWords[i]);
+	}
+
+	/** Returns a Set<String> with all the words that can be formed from the given letters in value,
+	 * like CompactDictionary.getMatchingAnagrams
+	 * @param value The normalized letters to search for anagrams
+	 * @return
+	 */
+	public Set<String> getMatchingAnagrams(String value) {
+		char[] l = value.toCharArray();
+		Arrays.sort(l);
+
+		Set<String> matchingWords = new HashSet<String>();
+		addWords(l, l.length, matchingWords);
+		return matchingWords;
+	}
+
+	@Override
+	public int probe(char[] key, int length) {
+		FrontCodedList.Entry entry = new FrontCodedList.Entry();
+		int i = keys.find(key, 0, length, entry);
+		if (i >= 0) {
+			return KEY;
+		}
+		i = -(i + 1);
+		if ((i < keys.size()) && entry.startsWith(key, length)) {
+			return PREFIX;
+		}
+		return NONE;
+	}
+
+	@Override
+	public int nextChar(char[] key, int length, char from) {
+		// Find the first key >= prefix + from, in place if key has room for it
+		char[] probe = (key.length > length) ? key : Arrays.copyOf(key, length + 1);
+		char saved = probe[length];
+		probe[length] = from;
+		FrontCodedList.Entry entry = new FrontCodedList.Entry();
+		int i = keys.find(probe, 0, length + 1, entry);
+		probe[length] = saved;
+		if (i < 0) {
+			i = -(i + 1);
+		}
+		if ((i < keys.size()) && entry.startsWith(key, length)) {
+			return entry.chars[length];
+		}
+		return -1;
+	}
+
+	@Override
+	public void addWords(char[] key, int length, Collection<String> out) {
+		FrontCodedList.Entry entry = new FrontCodedList.Entry();
+		if (keys.find(key, 0, length, entry) >= 0) {
+			FrontCodedList.Entry word = new FrontCodedList.Entry();
+			for (int w = entry.countBefore; w < entry.countBefore + entry.count; w++) {
+				words.read(keyWords[w], word);
+				out.add(word.toString());
+			}
+		}
+	}
+
+	/** Returns the number of bytes of the encoded keys and words and of the word indexes */
+	public long getDataSize() {
+		return (long) keys.getDataSize() + words.getDataSize() + 4L * keyWords.length;
+	}
+
+	/** Returns the approximate number of bytes this dictionary takes in the heap */
+	public long getHeapFootprint() {
+		return keys.getHeapFootprint() + words.getHeapFootprint() + ((16 + 4L * keyWords.length + 7) & ~7L) + 32;
+	}
+
+	@Override
+	public String toString() {
+		return name + ": " + getWordCount() + " words, " + getKeyCount() + " keys, "
+				+ (getHeapFootprint() / 1024) + " KB in blocks of " + keys.getBlockSize();
+	}
+}
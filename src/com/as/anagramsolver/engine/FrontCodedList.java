@@ -0,0 +1,440 @@
+package com.as.anagramsolver.engine;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+import java.util.Collection;
+
+/** A list of strings packed with front coding: the entries are cut in blocks of blockSize
+ * and only the first entry of a block (its head) is stored whole. Every other entry is
+ * stored as the number of chars it shares with the entry before it and the chars after
+ * those, so a run of sorted words like snake, snakes, snaky takes a few bytes per word.
+ * Lengths and chars are stored as varints (7 bits per byte), so ascii takes one byte a char.
+ *
+ * Only the block index (where each block starts) is kept as an int array. An entry is
+ * read by decoding its block from the head on, and when the entries were added in ascending
+ * order find() does a binary search over the block heads and then decodes the one block
+ * that can hold the key. Nothing else is ever decompressed.
+ *
+ * Each entry can also have a count, e.g. the number of words of a key, and the list keeps
+ * the total of the counts before each block, so the sum of the counts before any entry is
+ * known after decoding its block. That is how a list of keys points into a list of words
+ * without an offset per key.
+ *
+ * Instances are immutable and safe to share between threads. An Entry is not, it is the
+ * decoding buffer of one caller.
+ */
+public class FrontCodedList {
+
+	public static final int DEFAULT_BLOCK_SIZE = 16;
+
+	/** Used instead of the sizes of the VM for the footprint estimates, like CompactDictionary */
+	private static final int OBJECT_HEADER = 12, ARRAY_HEADER = 16, REFERENCE = 4;
+
+	private final int size;
+	private final int blockSize;
+	/** The length of the longest entry, so an Entry never grows while decoding */
+	private final int maxLength;
+	/** True if the entries were added in ascending order, which find() needs */
+	private final boolean sorted;
+	private final byte[] data;
+	/** The i-th block starts at data[blockOffsets[i]] */
+	private final int[] blockOffsets;
+	/** The total of the counts of the entries before the i-th block, null without counts */
+	private final int[] blockCounts;
+
+	/** An entry as decoded by read() and find(). Only the first length chars are the entry */
+	public static class Entry {
+		public char[] chars = new char[0];
+		public int length;
+		/** The index of the entry in the list */
+		public int index;
+		/** The count of the entry and the total of the counts before it, 0 without counts */
+		public int count, countBefore;
+
+		/** Returns true if the entry starts with prefix[0..length) */
+		public boolean startsWith(char[] prefix, int prefixLength) {
+			if (length < prefixLength) {
+				return false;
+			}
+			for (int i = 0; i < prefixLength; i++) {
+				if (chars[i] != prefix[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		@Override
+		public String toString() {
+			return new String(chars, 0, length);
+		}
+	}
+
+	private FrontCodedList(int size, int blockSize, int maxLength, boolean sorted, byte[] data,
+			int[] blockOffsets, int[] blockCounts) {
+		this.size = size;
+		this.blockSize = blockSize;
+		this.maxLength = maxLength;
+		this.sorted = sorted;
+		this.data = data;
+		this.blockOffsets = blockOffsets;
+		this.blockCounts = blockCounts;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public int getBlockSize() {
+		return blockSize;
+	}
+
+	/** Returns the i-th entry */
+	public String get(int i) {
+		Entry entry = new Entry();
+		read(i, entry);
+		return entry.toString();
+	}
+
+	/** Decodes the i-th entry into the given entry */
+	public void read(int i, Entry entry) {
+		seek(i, entry);
+	}
+
+	/** Adds the entries from to to - 1 to out, decoding each block once */
+	public void addAll(int from, int to, Collection<String> out) {
+		if (from >= to) {
+			return;
+		}
+		Entry entry = new Entry();
+		int p = seek(from, entry);
+		out.add(entry.toString());
+		for (int i = from + 1; i < to; i++) {
+			p = ((i % blockSize) == 0) ? startBlock(i / blockSize, entry) : next(p, entry);
+			out.add(entry.toString());
+		}
+	}
+
+	/** Finds key[from..to) in a list whose entries were added in ascending order, compared
+	 * like String.compareTo. The entry is left with the key if it is found, else with the
+	 * first entry after it, if there is one.
+	 * @return the index of the key or -(insertion point) - 1 if it isn't in the list
+	 * @throws UnsupportedOperationException if the entries weren't added in ascending order
+	 */
+	public int find(char[] key, int from, int to, Entry entry) {
+		if (!sorted) {
+			throw new UnsupportedOperationException("The entries aren't sorted");
+		}
+		if (size == 0) {
+			return -1;
+		}
+		// The last block whose head isn't after the key
+		int low = 0, high = blockOffsets.length - 1;
+		while (low <= high) {
+			int mid = (low + high) >>> 1;
+			if (compareHead(mid, key, from, to) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid - 1;
+			}
+		}
+		int block = high;
+		if (block < 0) {
+			read(0, entry);
+			return -1;
+		}
+		int i = block * blockSize;
+		int last = Math.min(size, i + blockSize);
+		int p = startBlock(block, entry);
+		while (true) {
+			int cmp = compare(entry, key, from, to);
+			if (cmp == 0) {
+				return i;
+			} else if (cmp > 0) {
+				return -(i + 1);
+			}
+			if (++i == last) {
+				break;
+			}
+			p = next(p, entry);
+		}
+		if (i < size) {
+			startBlock(i / blockSize, entry);
+		}
+		return -(i + 1);
+	}
+
+	/** Returns the number of bytes of the encoded entries */
+	public int getDataSize() {
+		return data.length;
+	}
+
+	/** Returns the approximate number of bytes this list takes in the heap */
+	public long getHeapFootprint() {
+		return align(OBJECT_HEADER + 4 * 4 + 3 * REFERENCE) + align(ARRAY_HEADER + data.length)
+				+ align(ARRAY_HEADER + 4L * blockOffsets.length)
+				+ ((blockCounts != null) ? align(ARRAY_HEADER + 4L * blockCounts.length) : 0);
+	}
+
+	/** Writes the list the way read() reads it back: its sizes, the block index and the encoded entries */
+	void write(DataOutputStream out) throws IOException {
+		out.writeInt(size);
+		out.writeInt(blockSize);
+		out.writeInt(maxLength);
+		out.writeBoolean(sorted);
+		out.writeBoolean(blockCounts != null);
+		out.writeInt(blockOffsets.length);
+		for (int offset : blockOffsets) {
+			out.writeInt(offset);
+		}
+		if (blockCounts != null) {
+			for (int count : blockCounts) {
+				out.writeInt(count);
+			}
+		}
+		out.writeInt(data.length);
+		out.write(data);
+	}
+
+	/** Reads a list written by write() from the buffer, which is left after it */
+	static FrontCodedList read(ByteBuffer buffer) throws IOException {
+		int size = buffer.getInt();
+		int blockSize = buffer.getInt();
+		int maxLength = buffer.getInt();
+		boolean sorted = buffer.get() != 0;
+		boolean counts = buffer.get() != 0;
+		int blocks = buffer.getInt();
+		if ((size < 0) || (blockSize < 1) || (blocks != (size + blockSize - 1) / blockSize)) {
+			throw new IOException("Invalid front coded list");
+		}
+		int[] blockOffsets = new int[blocks];
+		buffer.asIntBuffer().get(blockOffsets);
+		buffer.position(buffer.position() + 4 * blocks);
+		int[] blockCounts = null;
+		if (counts) {
+			blockCounts = new int[blocks];
+			buffer.asIntBuffer().get(blockCounts);
+			buffer.position(buffer.position() + 4 * blocks);
+		}
+		byte[] data = new byte[buffer.getInt()];
+		buffer.get(data);
+		return new FrontCodedList(size, blockSize, maxLength, sorted, data, blockOffsets, blockCounts);
+	}
+
+	/** Decodes the i-th entry into the entry and returns where the next entry starts */
+	private int seek(int i, Entry entry) {
+		if ((i < 0) || (i >= size)) {
+			throw new IndexOutOfBoundsException("Index: " + i + ", size: " + size);
+		}
+		int block = i / blockSize;
+		int p = startBlock(block, entry);
+		for (int e = block * blockSize; e < i; e++) {
+			p = next(p, entry);
+		}
+		return p;
+	}
+
+	/** Decodes the head of the block into the entry and returns where the next entry starts */
+	private int startBlock(int block, Entry entry) {
+		if (entry.chars.length < maxLength) {
+			entry.chars = new char[maxLength];
+		}
+		int p = blockOffsets[block];
+		int length = readVarint(p);
+		p += varintSize(length);
+		p = readChars(p, entry.chars, 0, length);
+		entry.length = length;
+		entry.index = block * blockSize;
+		entry.countBefore = (blockCounts != null) ? blockCounts[block] : 0;
+		entry.count = 0;
+		return readCount(p, entry);
+	}
+
+	/** Decodes the entry after the one in entry, whose encoding ends at p, and returns where the next one starts */
+	private int next(int p, Entry entry) {
+		int shared = readVarint(p);
+		p += varintSize(shared);
+		int suffix = readVarint(p);
+		p += varintSize(suffix);
+		p = readChars(p, entry.chars, shared, suffix);
+		entry.length = shared + suffix;
+		entry.index++;
+		entry.countBefore += entry.count;
+		return readCount(p, entry);
+	}
+
+	private int readCount(int p, Entry entry) {
+		if (blockCounts != null) {
+			entry.count = readVarint(p);
+			p += varintSize(entry.count);
+		}
+		return p;
+	}
+
+	private int readChars(int p, char[] out, int from, int length) {
+		byte[] d = data;
+		for (int i = from; i < from + length; i++) {
+			int c = d[p++];
+			if (c < 0) {
+				c = readVarint(p - 1);
+				p += varintSize(c) - 1;
+			}
+			out[i] = (char) c;
+		}
+		return p;
+	}
+
+	/** Compares the head of the block with key[from..to) like String.compareTo, without decoding it first */
+	private int compareHead(int block, char[] key, int from, int to) {
+		int p = blockOffsets[block];
+		int length = readVarint(p);
+		p += varintSize(length);
+		int n = Math.min(length, to - from);
+		for (int i = 0; i < n; i++) {
+			int c = readVarint(p);
+			p += varintSize(c);
+			if (c != key[from + i]) {
+				return c - key[from + i];
+			}
+		}
+		return length - (to - from);
+	}
+
+	private static int compare(Entry entry, char[] key, int from, int to) {
+		int n = Math.min(entry.length, to - from);
+		char[] chars = entry.chars;
+		for (int i = 0; i < n; i++) {
+			if (chars[i] != key[from + i]) {
+				return chars[i] - key[from + i];
+			}
+		}
+		return entry.length - (to - from);
+	}
+
+	private int readVarint(int p) {
+		byte[] d = data;
+		int b = d[p];
+		if (b >= 0) {
+			return b;
+		}
+		int value = b & 0x7F;
+		int shift = 7;
+		do {
+			b = d[++p];
+			value |= (b & 0x7F) << shift;
+			shift += 7;
+		} while (b < 0);
+		return value;
+	}
+
+	private static int varintSize(int value) {
+		int size = 1;
+		while ((value >>>= 7) != 0) {
+			size++;
+		}
+		return size;
+	}
+
+	private static long align(long bytes) {
+		return (bytes + 7) & ~7L;
+	}
+
+	/** Front codes the entries that are added to it, in the order they are added */
+	public static class Builder {
+		private final int blockSize;
+		private final boolean counts;
+		private byte[] data = new byte[1024];
+		private int dataSize = 0;
+		private int[] blockOffsets = new int[64];
+		private int[] blockCounts;
+		private int size = 0;
+		private int maxLength = 0;
+		private int totalCount = 0;
+		private boolean sorted = true;
+		private char[] previous = new char[64];
+		private int previousLength = 0;
+
+		/** @param blockSize the entries per block, more makes the list smaller and reading an entry slower
+		 * @param counts true if every entry is added with a count
+		 */
+		public Builder(int blockSize, boolean counts) {
+			if (blockSize < 1) {
+				throw new IllegalArgumentException("Block size must be positive: " + blockSize);
+			}
+			this.blockSize = blockSize;
+			this.counts = counts;
+			blockCounts = counts ? new int[64] : null;
+		}
+
+		/** Adds chars[from..to) */
+		public void add(char[] chars, int from, int to) {
+			add(chars, from, to, 0);
+		}
+
+		/** Adds chars[from..to) with its count, which is only kept if the builder was made with counts */
+		public void add(char[] chars, int from, int to, int count) {
+			int length = to - from;
+			int n = Math.min(length, previousLength);
+			int shared = 0;
+			while ((shared < n) && (chars[from + shared] == previous[shared])) {
+				shared++;
+			}
+			if (sorted && (size > 0)) {
+				// After the previous entry or equal to it, so either the first different char is bigger or it is longer
+				sorted = (shared < n) ? (chars[from + shared] > previous[shared]) : (length >= previousLength);
+			}
+			if ((size % blockSize) == 0) {
+				int block = size / blockSize;
+				blockOffsets = ensure(blockOffsets, block + 1);
+				blockOffsets[block] = dataSize;
+				if (counts) {
+					blockCounts = ensure(blockCounts, block + 1);
+					blockCounts[block] = totalCount;
+				}
+				// The head is stored whole
+				shared = 0;
+				writeVarint(length);
+			} else {
+				writeVarint(shared);
+				writeVarint(length - shared);
+			}
+			for (int i = from + shared; i < to; i++) {
+				writeVarint(chars[i]);
+			}
+			if (counts) {
+				writeVarint(count);
+				totalCount += count;
+			}
+			if (previous.length < length) {
+				previous = new char[Math.max(length, 2 * previous.length)];
+			}
+			System.arraycopy(chars, from, previous, 0, length);
+			previousLength = length;
+			maxLength = Math.max(maxLength, length);
+			size++;
+		}
+
+		public FrontCodedList build() {
+			int blocks = (size + blockSize - 1) / blockSize;
+			return new FrontCodedList(size, blockSize, maxLength, sorted, Arrays.copyOf(data, dataSize),
+					Arrays.copyOf(blockOffsets, blocks), counts ? Arrays.copyOf(blockCounts, blocks) : null);
+		}
+
+		private void writeVarint(int value) {
+			if (data.length < dataSize + 5) {
+				data = Arrays.copyOf(data, 2 * data.length);
+			}
+			while ((value & ~0x7F) != 0) {
+				data[dataSize++] = (byte) ((value & 0x7F) | 0x80);
+				value >>>= 7;
+			}
+			data[dataSize++] = (byte) value;
+		}
+
+		private static int[] ensure(int[] array, int size) {
+			return (size <= array.length) ? array : Arrays.copyOf(array, Math.max(size, array.length * 2));
+		}
+	}
+}
@@ -0,0 +1,239 @@
+package com.as.anagramsolver.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Finds the words that can be formed from some given letters, like SubAnagramSearcher, but by
+ * scanning every key of a CompactDictionary instead of walking them.
+ *
+ * Each key has two longs next to it: a bit for every letter it has (the 63 most common
+ * letters of the dictionary get their own bit) and the counts of its 16 most common letters
+ * packed in 4 bit fields. Most keys are rejected by one AND with the mask of the rack and the
+ * rest by one subtraction that compares all 16 counts at once. Only the few keys the two
+ * longs can't decide for (rare letters used twice, more than 7 of a letter, letters without
+ * a bit) are compared letter by letter. The time of a search hardly depends on the rack, so
+ * it only beats the walk for long racks (MIN_RACK_LENGTH letters and more, see
+ * SubAnagramSearchBenchmark), where the walk has many more branches to try. batchSolve
+ * picks it for those. The app keeps its dictionaries in sqlite and not in a
+ * CompactDictionary, so it always walks.
+ */
+public class HistogramScanner {
+
+	/** Letters with their own bit in the masks, the rest share NEEDS_CHECK */
+	private static final int MASK_LETTERS = 63;
+	/** Letters with a count in the packed counts */
+	private static final int COUNTED_LETTERS = 16;
+	/** Set in the mask of the keys that the masks and counts can't decide for */
+	private static final long NEEDS_CHECK = 1L << 63;
+	/** The highest bit of each 4 bit count */
+	private static final long GUARDS = 0x8888888888888888L;
+	private static final int MAX_COUNT = 7;
+	/** How many keys are scanned between two checks of the interrupt flag, minus one */
+	private static final int INTERRUPT_CHECK_MASK = 0x3FF;
+
+	/** The rack length, blanks included, from which a scan is faster than the walk of
+	 * SubAnagramSearcher on the dictionaries of the app */
+	public static final int MIN_RACK_LENGTH = 14;
+
+	private final CompactDictionary dictionary;
+	/** The bit of each letter, -1 for the ones without a bit */
+	private final byte[] bits;
+	/** The letter mask of each key */
+	private final long[] masks;
+	/** The packed letter counts of each key */
+	private final long[] counts;
+
+	public HistogramScanner(CompactDictionary dictionary) {
+		this.dictionary = dictionary;
+		int keys = dictionary.getKeyCount();
+
+		// Give the bits to the most common letters
+		int[] frequency = new int[Character.MAX_VALUE + 1];
+		for (int k = 0; k < keys; k++) {
+			for (int i = 0; i < dictionary.getKeyLength(k); i++) {
+				frequency[dictionary.getKeyLetter(k, i)]++;
+			}
+		}
+		char[] alphabet = mostCommon(frequency, MASK_LETTERS);
+		bits = new byte[Character.MAX_VALUE + 1];
+		Arrays.fill(bits, (byte) -1);
+		for (int i = 0; i < alphabet.length; i++) {
+			bits[alphabet[i]] = (byte) i;
+		}
+
+		masks = new long[keys];
+		counts = new long[keys];
+		for (int k = 0; k < keys; k++) {
+			long mask = 0, packed = 0;
+			int to = dictionary.getKeyLength(k);
+			// The letters of a key are sorted, so equal letters are next to each other
+			for (int i = 0; i < to; ) {
+				char c = dictionary.getKeyLetter(k, i);
+				int run = 1;
+				while ((i + run < to) && (dictionary.getKeyLetter(k, i + run) == c)) {
+					run++;
+				}
+				i += run;
+				int bit = bits[c];
+				if (bit < 0) {
+					mask |= NEEDS_CHECK;
+					continue;
+				}
+				mask |= 1L << bit;
+				if (bit < COUNTED_LETTERS) {
+					if (run > MAX_COUNT) {
+						mask |= NEEDS_CHECK;
+					}
+					packed |= ((long) Math.min(run, MAX_COUNT)) << (4 * bit);
+				} else if (run > 1) {
+					mask |= NEEDS_CHECK;
+				}
+			}
+			masks[k] = mask;
+			counts[k] = packed;
+		}
+	}
+
+	/** Returns a Set<String> with all the words that can be formed from the given letters in value
+	 * or from any subset of them that has at least minLength letters, like SubAnagramSearcher.
+	 * @param value The normalized letters to search for anagrams. A BLANK matches any letter
+	 * @param minLength The minimum length of the words returned
+	 * @return
+	 */
+	public Set<String> search(String value, int minLength) {
+		final Set<String> matchingWords = new HashSet<String>();
+		search(value, minLength, new SubAnagramSearcher.MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				matchingWords.addAll(words);
+				return true;
+			}
+		});
+		return matchingWords;
+	}
+
+	/** Searches like search(String, int) but hands the words of each key to the listener as soon
+	 * as it is found.
+	 * @param value The normalized letters to search for anagrams. A BLANK matches any letter
+	 * @param minLength The minimum length of the words returned
+	 * @param listener Receives the words and can stop the search, like an interrupt of the thread
+	 */
+	public void search(String value, int minLength, SubAnagramSearcher.MatchListener listener) {
+		char[] letters = value.toCharArray();
+		Arrays.sort(letters);
+		int blanks = 0;
+		int length = 0;
+		for (char c : letters) {
+			if (c == SubAnagramSearcher.BLANK) {
+				blanks++;
+			} else {
+				letters[length++] = c;
+			}
+		}
+
+		// The mask and packed counts of the rack. NEEDS_CHECK is always set so the keys with
+		// it pass the mask test and are checked letter by letter
+		long rackMask = NEEDS_CHECK;
+		long rackCounts = 0;
+		for (int i = 0; i < length; ) {
+			char c = letters[i];
+			int run = 1;
+			while ((i + run < length) && (letters[i + run] == c)) {
+				run++;
+			}
+			i += run;
+			int bit = bits[c];
+			if (bit >= 0) {
+				rackMask |= 1L << bit;
+				if (bit < COUNTED_LETTERS) {
+					rackCounts |= ((long) Math.min(run, MAX_COUNT)) << (4 * bit);
+				}
+			}
+		}
+		rackCounts |= GUARDS;
+
+		int maxLength = length + blanks;
+		minLength = Math.max(1, minLength);
+		List<String> words = new ArrayList<String>();
+		for (int k = 0; k < masks.length; k++) {
+			if (((k & INTERRUPT_CHECK_MASK) == 0) && Thread.currentThread().isInterrupted()) {
+				return;
+			}
+			int keyLength = dictionary.getKeyLength(k);
+			if ((keyLength < minLength) || (keyLength > maxLength)) {
+				continue;
+			}
+			long mask = masks[k];
+			if (blanks == 0) {
+				// A letter the rack doesn't have or a count higher than the one of the rack
+				// clears a guard bit, since no count is above 7 a borrow never crosses fields
+				if (((mask & ~rackMask) != 0) || (((rackCounts - counts[k]) & GUARDS) != GUARDS)) {
+					continue;
+				}
+				if ((mask < 0) && !fits(k, letters, length, 0)) {
+					continue;
+				}
+			} else {
+				// Every letter the rack doesn't have needs at least one blank
+				if ((Long.bitCount(mask & ~rackMask) > blanks) || !fits(k, letters, length, blanks)) {
+					continue;
+				}
+			}
+			words.clear();
+			dictionary.addWords(k, words);
+			if (!listener.onMatches(words)) {
+				return;
+			}
+		}
+	}
+
+	/** Returns true if the k-th key can be made of letters[0..length) and the given blanks */
+	private boolean fits(int k, char[] letters, int length, int blanks) {
+		int to = dictionary.getKeyLength(k);
+		int j = 0;
+		// Both are sorted, so walk them together like a merge
+		for (int i = 0; i < to; i++) {
+			char c = dictionary.getKeyLetter(k, i);
+			while ((j < length) && (letters[j] < c)) {
+				j++;
+			}
+			if ((j < length) && (letters[j] == c)) {
+				j++;
+			} else if (!Character.isLetter(c) || (--blanks < 0)) {
+				// Like in the walk a blank only stands for a letter
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/** Returns the approximate number of bytes the masks, counts and bits take in the heap */
+	public long getHeapFootprint() {
+		return 2 * (16 + 8L * masks.length) + 16 + bits.length;
+	}
+
+	/** Returns at most max of the chars with a frequency, the most frequent first */
+	private static char[] mostCommon(int[] frequency, int max) {
+		char[] letters = new char[max];
+		int found = 0;
+		boolean[] taken = new boolean[frequency.length];
+		while (found < max) {
+			int best = -1;
+			for (int c = 0; c < frequency.length; c++) {
+				if (!taken[c] && (frequency[c] > 0) && ((best < 0) || (frequency[c] > frequency[best]))) {
+					best = c;
+				}
+			}
+			if (best < 0) {
+				break;
+			}
+			taken[best] = true;
+			letters[found++] = (char) best;
+		}
+		return Arrays.copyOf(letters, found);
+	}
+}
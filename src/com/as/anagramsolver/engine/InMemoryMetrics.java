@@ -0,0 +1,88 @@
+package com.as.anagramsolver.engine;
+
+import java.util.Map;
+import java.util.TreeMap;
+
+/** The default MetricsSink: keeps every counter and a LatencyHistogram of every timer in
+ * memory, until they are dumped with toString() for a log or toJson() for a tool. */
+public class InMemoryMetrics implements MetricsSink {
+
+	private final Map<String, long[]> counters = new TreeMap<String, long[]>();
+	private final Map<String, LatencyHistogram> timers = new TreeMap<String, LatencyHistogram>();
+
+	@Override
+	public synchronized void count(String name, long delta) {
+		long[] counter = counters.get(name);
+		if (counter == null) {
+			counter = new long[1];
+			counters.put(name, counter);
+		}
+		counter[0] += delta;
+	}
+
+	@Override
+	public synchronized void time(String name, long nanos) {
+		LatencyHistogram timer = timers.get(name);
+		if (timer == null) {
+			timer = new LatencyHistogram();
+			timers.put(name, timer);
+		}
+		timer.record(nanos);
+	}
+
+	/** Returns the value of the counter or 0 if it was never counted */
+	public synchronized long getCount(String name) {
+		long[] counter = counters.get(name);
+		return (counter == null) ? 0 : counter[0];
+	}
+
+	/** Returns the durations of the timer or null if it was never timed */
+	public synchronized LatencyHistogram getTimer(String name) {
+		return timers.get(name);
+	}
+
+	public synchronized void clear() {
+		counters.clear();
+		timers.clear();
+	}
+
+	/** Returns one line per counter and timer, e.g. "db.queries=12" and
+	 * "db.query: n=12 mean=80us p50=70us p90=150us p99=300us max=310us" */
+	@Override
+	public synchronized String toString() {
+		StringBuilder dump = new StringBuilder();
+		for (Map.Entry<String, long[]> counter : counters.entrySet()) {
+			dump.append(counter.getKey()).append('=').append(counter.getValue()[0]).append('\n');
+		}
+		for (Map.Entry<String, LatencyHistogram> timer : timers.entrySet()) {
+			dump.append(timer.getKey()).append(": ").append(timer.getValue()).append('\n');
+		}
+		return dump.toString();
+	}
+
+	/** Returns all the metrics as one JSON object, with the times in microseconds:
+	 * {"counters":{"db.queries":12},"timers":{"db.query":{"n":12,"mean":80,"p50":70,...}}} */
+	public synchronized String toJson() {
+		StringBuilder json = new StringBuilder("{\"counters\":{");
+		boolean first = true;
+		for (Map.Entry<String, long[]> counter : counters.entrySet()) {
+			json.append(first ? "" : ",").append('"').append(counter.getKey()).append("\":")
+				.append(counter.getValue()[0]);
+			first = false;
+		}
+		json.append("},\"timers\":{");
+		first = true;
+		for (Map.Entry<String, LatencyHistogram> entry : timers.entrySet()) {
+			LatencyHistogram timer = entry.getValue();
+			json.append(first ? "" : ",").append('"').append(entry.getKey()).append("\":{")
+				.append("\"n\":").append(timer.getCount())
+				.append(",\"mean\":").append(timer.getMean() / 1000)
+				.append(",\"p50\":").append(timer.getPercentile(50) / 1000)
+				.append(",\"p90\":").append(timer.getPercentile(90) / 1000)
+				.append(",\"p99\":").append(timer.getPercentile(99) / 1000)
+				.append(",\"max\":").append(timer.getMax() / 1000).append('}');
+			first = false;
+		}
+		return json.append("}}").toString();
+	}
+}
@@ -0,0 +1,152 @@
+package com.as.anagramsolver.engine;
+
+import java.text.Normalizer;
+import java.util.Arrays;
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Turns words into the keys the dictionaries are indexed by: every character folded to its
+ * lower case letter without accents, then sorted. It is used both by sortDictionaries to
+ * write the sorted dictionary files and by the searches, so the keys of both sides are the
+ * same.
+ *
+ * The folding is looked up in a table built once per language: the character is lower cased
+ * with the locale of the language (so I is a dotless i only in Turkish), decomposed with NFD
+ * and stripped of its combining marks. On top of that the German sharp s becomes ss and
+ * the Greek final sigma a normal sigma. The result is written to a buffer that is reused by
+ * every call, so a normalizer doesn't allocate anything once its buffer is big enough. That
+ * also means an instance must not be shared between threads.
+ */
+public class KeyNormalizer {
+
+	/** Characters below this are folded with the table, the rest with Character.toLowerCase */
+	private static final int TABLE_SIZE = 0x2000;
+
+	/** The fold tables of each language, built on first use */
+	private static final Map<Language, char[][]> tables = new EnumMap<Language, char[][]>(Language.class);
+
+	/** The first char each char folds to, or 0 if it is dropped */
+	private final char[] first;
+	/** The second char each char folds to, e.g. the second s of the sharp s, or 0 */
+	private final char[] second;
+	private char[] buffer = new char[32];
+	private int length = 0;
+
+	public KeyNormalizer(Language language) {
+		char[][] table = getTable(language);
+		first = table[0];
+		second = table[1];
+	}
+
+	/** Writes the key of the word to the buffer: its folded characters in ascending order
+	 * @param word the word to normalize
+	 * @return the length of the key
+	 */
+	public int normalize(CharSequence word) {
+		fold(word);
+		Arrays.sort(buffer, 0, length);
+		return length;
+	}
+
+	/** Writes the folded characters of the word to the buffer in their original order.
+	 * Wildcards and any other characters without a lower case or accent are kept as they are.
+	 * @param word the word to fold
+	 * @return the length of the folded word
+	 */
+	public int fold(CharSequence word) {
+		int wordLength = word.length();
+		// Only the sharp s and the like grow, and none of them more than twice
+		if (buffer.length < 2 * wordLength) {
+			buffer = new char[2 * wordLength];
+		}
+		length = 0;
+		for (int i = 0; i < wordLength; i++) {
+			char c = word.charAt(i);
+			if (c < TABLE_SIZE) {
+				char f = first[c];
+				if (f != 0) {
+					buffer[length++] = f;
+					char s = second[c];
+					if (s != 0) {
+						buffer[length++] = s;
+					}
+				}
+			} else if (!isDropped(c)) {
+				buffer[length++] = Character.toLowerCase(c);
+			}
+		}
+		return length;
+	}
+
+	/** Returns the buffer with the result of the last call. Only the first getLength() chars are part of it */
+	public char[] getBuffer() {
+		return buffer;
+	}
+
+	/** Returns the length of the result of the last call */
+	public int getLength() {
+		return length;
+	}
+
+	/** Returns the result of the last call as a String */
+	@Override
+	public String toString() {
+		return new String(buffer, 0, length);
+	}
+
+	/** Returns the key of the word as a String. Allocates, so meant for single lookups
+	 * @param word the word to normalize
+	 * @return
+	 */
+	public String key(CharSequence word) {
+		normalize(word);
+		return toString();
+	}
+
+	/** Returns true for the characters that never end up in a key, e.g. combining marks or a byte order mark */
+	private static boolean isDropped(char c) {
+		int type = Character.getType(c);
+		return (type == Character.NON_SPACING_MARK) || (type == Character.ENCLOSING_MARK)
+				|| (type == Character.FORMAT);
+	}
+
+	private static char[][] getTable(Language language) {
+		synchronized (tables) {
+			char[][] table = tables.get(language);
+			if (table == null) {
+				table = buildTable(language);
+				tables.put(language, table);
+			}
+			return table;
+		}
+	}
+
+	private static char[][] buildTable(Language language) {
+		char[] first = new char[TABLE_SIZE];
+		char[] second = new char[TABLE_SIZE];
+		StringBuilder folded = new StringBuilder();
+		for (int c = 1; c < TABLE_SIZE; c++) {
+			// Lower case first so the locale sees the dotted and dotless I before NFD takes their dot apart
+			String lower = String.valueOf((char) c).toLowerCase(language.getLocale());
+			String decomposed = Normalizer.normalize(lower, Normalizer.Form.NFD);
+			folded.setLength(0);
+			for (int i = 0; i < decomposed.length(); i++) {
+				char d = decomposed.charAt(i);
+				if (d == '\u00df') {
+					folded.append("ss");
+				} else if (d == '\u03c2') {
+					folded.append('\u03c3');
+				} else if (!isDropped(d)) {
+					folded.append(d);
+				}
+			}
+			if (folded.length() > 0) {
+				first[c] = folded.charAt(0);
+			}
+			if (folded.length() > 1) {
+				second[c] = folded.charAt(1);
+			}
+		}
+		return new char[][] { first, second };
+	}
+}
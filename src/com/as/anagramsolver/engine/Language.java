@@ -0,0 +1,58 @@
+package com.as.anagramsolver.engine;
+
+import java.util.Locale;
+
+/** The languages the app has dictionaries for, in the same order as
+ * DictionaryDBCreator.DICTIONARIES. Each one knows the name of its text dictionary file
+ * (dictionaries/&lt;fileName&gt;), of the sorted version of it (dictionaries/&lt;fileName&gt;_sorted)
+ * and of the binary dictionary of the app (assets/dictionaries/&lt;fileName&gt;.dict).
+ */
+public enum Language {
+	ENGLISH("English", "en_us", new Locale("en", "US")),
+	GREEK("Greek", "el_gr", new Locale("el", "GR")),
+	POLISH("Polish", "pl_pl", new Locale("pl", "PL")),
+	FRENCH("French", "fr_fr", new Locale("fr", "FR")),
+	GERMAN("German", "de_de", new Locale("de", "DE")),
+	SPANISH("Spanish", "es_es", new Locale("es", "ES")),
+	ITALIAN("Italian", "it_it", new Locale("it", "IT")),
+	TURKISH("Turkish", "tr_tr", new Locale("tr", "TR"));
+
+	private final String name;
+	private final String fileName;
+	private final Locale locale;
+
+	private Language(String name, String fileName, Locale locale) {
+		this.name = name;
+		this.fileName = fileName;
+		this.locale = locale;
+	}
+
+	/** Returns the name of the language as it is shown to the user and used for its table */
+	public String getName() {
+		return name;
+	}
+
+	/** Returns the name of the raw dictionary file, e.g. en_us */
+	public String getFileName() {
+		return fileName;
+	}
+
+	/** Returns the name of the raw sorted dictionary file, e.g. en_us_sorted */
+	public String getSortedFileName() {
+		return fileName + "_sorted";
+	}
+
+	public Locale getLocale() {
+		return locale;
+	}
+
+	/** Returns the language with the given name or file name (case insensitive), or null */
+	public static Language fromName(String name) {
+		for (Language language : values()) {
+			if (language.name.equalsIgnoreCase(name) || language.fileName.equalsIgnoreCase(name)) {
+				return language;
+			}
+		}
+		return null;
+	}
+}
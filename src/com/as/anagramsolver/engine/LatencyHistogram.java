@@ -0,0 +1,117 @@
+package com.as.anagramsolver.engine;
+
+import java.util.Arrays;
+
+/** Counts durations in a fixed number of buckets so percentiles can be reported over any
+ * number of samples without keeping them. Each power of two range of nanoseconds is split
+ * in SUB_BUCKETS equal buckets, so a percentile is off by at most 1/SUB_BUCKETS of its value.
+ * All the methods are synchronized so any thread can record.
+ */
+public class LatencyHistogram {
+
+	private static final int SUB_BUCKET_BITS = 4;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	/** Durations up to 2^RANGES ns (about 18 minutes), longer ones go in the last bucket */
+	private static final int RANGES = 40;
+
+	private final long[] buckets = new long[(RANGES + 1) * SUB_BUCKETS];
+	private long count = 0;
+	private long total = 0;
+	private long max = 0;
+
+	/** Adds one duration in nanoseconds */
+	public synchronized void record(long nanos) {
+		nanos = Math.max(0, nanos);
+		buckets[bucketOf(nanos)]++;
+		count++;
+		total += nanos;
+		max = Math.max(max, nanos);
+	}
+
+	/** Adds all the durations of another histogram */
+	public synchronized void add(LatencyHistogram other) {
+		synchronized (other) {
+			for (int i = 0; i < buckets.length; i++) {
+				buckets[i] += other.buckets[i];
+			}
+			count += other.count;
+			total += other.total;
+			max = Math.max(max, other.max);
+		}
+	}
+
+	public synchronized long getCount() {
+		return count;
+	}
+
+	public synchronized long getMax() {
+		return max;
+	}
+
+	/** Returns the mean duration in nanoseconds or 0 if there are none */
+	public synchronized long getMean() {
+		return (count == 0) ? 0 : total / count;
+	}
+
+	/** Returns the duration in nanoseconds that the given percent of the durations don't exceed,
+	 * rounded up to the end of its bucket, or 0 if there are none
+	 * @param percent e.g. 50 for the median or 99
+	 * @return
+	 */
+	public synchronized long getPercentile(double percent) {
+		if (count == 0) {
+			return 0;
+		}
+		long rank = Math.max(1, (long) Math.ceil(count * percent / 100));
+		long seen = 0;
+		for (int i = 0; i < buckets.length; i++) {
+			seen += buckets[i];
+			if (seen >= rank) {
+				return Math.min(max, upperBound(i));
+			}
+		}
+		return max;
+	}
+
+	public synchronized void clear() {
+		Arrays.fill(buckets, 0);
+		count = 0;
+		total = 0;
+		max = 0;
+	}
+
+	/** Returns e.g. "n=1000 mean=12us p50=10us p90=20us p99=40us max=95us" */
+	@Override
+	public synchronized String toString() {
+		return "n=" + count + " mean=" + micros(getMean()) + " p50=" + micros(getPercentile(50))
+				+ " p90=" + micros(getPercentile(90)) + " p99=" + micros(getPercentile(99))
+				+ " max=" + micros(max);
+	}
+
+	private static String micros(long nanos) {
+		return (nanos / 1000) + "us";
+	}
+
+	private static int bucketOf(long nanos) {
+		if (nanos < SUB_BUCKETS) {
+			return (int) nanos;
+		}
+		// The range is the position of the highest bit, the sub bucket the bits right after it
+		int range = 63 - Long.numberOfLeadingZeros(nanos) - SUB_BUCKET_BITS + 1;
+		if (range > RANGES) {
+			return (RANGES + 1) * SUB_BUCKETS - 1;
+		}
+		int sub = (int) (nanos >>> (range - 1)) & (SUB_BUCKETS - 1);
+		return range * SUB_BUCKETS + sub;
+	}
+
+	/** Returns the largest duration that goes in the i-th bucket */
+	private static long upperBound(int i) {
+		int range = i / SUB_BUCKETS;
+		int sub = i % SUB_BUCKETS;
+		if (range == 0) {
+			return sub;
+		}
+		return ((long) (SUB_BUCKETS + sub + 1) << (range - 1)) - 1;
+	}
+}
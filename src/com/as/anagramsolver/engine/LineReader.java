@@ -0,0 +1,257 @@
+package com.as.anagramsolver.engine;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+
+/** Reads the lines of a UTF-8 text file, like the dictionaries, without a String per line.
+ *
+ * A file is memory mapped and any other stream is read, in both cases a big block at a
+ * time into the same array, so the loops over the bytes run on a plain array instead of a
+ * ByteBuffer. Only a line longer than the block makes it grow. next() only finds
+ * where the next line ends, the line is decoded to chars the first time they are asked
+ * for, in a buffer that is reused for every line, and a String is only made by
+ * toString(). The reader itself is the CharSequence of the current line, so it can be
+ * handed to e.g. KeyNormalizer.normalize() as it is.
+ *
+ * Lines only end at \n, a \r right before it (or at the end of the input) is dropped.
+ * Unlike BufferedReader.readLine a lone \r doesn't end a line, it stays in it. A byte
+ * order mark at the start is skipped. Invalid UTF-8 is decoded to U+FFFD. Not thread safe.
+ */
+public class LineReader implements CharSequence {
+
+	private static final int BLOCK_SIZE = 64 * 1024;
+	private static final char REPLACEMENT = '\uFFFD';
+
+	/** The stream the blocks are read from, null when the whole file is mapped */
+	private final InputStream in;
+	/** The mapped file the blocks are copied from, null when reading a stream */
+	private final ByteBuffer mapped;
+	private final FileInputStream file;
+	private byte[] bytes = new byte[BLOCK_SIZE];
+	/** The bytes of the current line are bytes[lineStart, lineEnd) without the line break */
+	private int lineStart = 0, lineEnd = 0;
+	/** Where the search for the next line starts */
+	private int position = 0;
+	/** The end of the bytes read so far */
+	private int limit = 0;
+	private boolean endOfInput = false;
+	private boolean firstLine = true;
+
+	private char[] chars = new char[64];
+	private int length = 0;
+	private boolean decoded = false;
+
+	/** Reads the lines of the given stream in blocks */
+	public LineReader(InputStream in) {
+		this.in = in;
+		this.mapped = null;
+		this.file = null;
+	}
+
+	private LineReader(FileInputStream file, ByteBuffer mapped) {
+		this.in = null;
+		this.mapped = mapped;
+		this.file = file;
+	}
+
+	/** Returns a reader of the lines of the given file, which is memory mapped
+	 * @param file the UTF-8 file to read
+	 * @return
+	 * @throws IOException if the file can't be opened or mapped
+	 */
+	public static LineReader open(File file) throws IOException {
+		FileInputStream stream = new FileInputStream(file);
+		try {
+			FileChannel channel = stream.getChannel();
+			return new LineReader(stream, channel.map(FileChannel.MapMode.READ_ONLY, 0, channel.size()));
+		} catch (IOException e) {
+			stream.close();
+			throw e;
+		}
+	}
+
+	/** Moves to the next line
+	 * @return false at the end of the input
+	 * @throws IOException if the stream can't be read
+	 */
+	public boolean next() throws IOException {
+		decoded = false;
+		length = 0;
+		int end = indexOfNewLine(position);
+		while ((end < 0) && !endOfInput) {
+			int searched = limit - position;
+			fill();
+			end = indexOfNewLine(position + searched);
+		}
+		if (end < 0) {
+			if (position >= limit) {
+				lineStart = lineEnd = position;
+				return false;
+			}
+			// The last line doesn't have a line break
+			end = limit;
+		}
+		lineStart = position;
+		lineEnd = end;
+		position = end + 1;
+		if ((lineEnd > lineStart) && (bytes[lineEnd - 1] == '\r')) {
+			lineEnd--;
+		}
+		if (firstLine) {
+			firstLine = false;
+			// The byte order mark EF BB BF
+			if ((lineEnd - lineStart >= 3) && (bytes[lineStart] == (byte) 0xEF)
+					&& (bytes[lineStart + 1] == (byte) 0xBB) && (bytes[lineStart + 2] == (byte) 0xBF)) {
+				lineStart += 3;
+			}
+		}
+		return true;
+	}
+
+	/** Returns the index of the first \n at or after from, -1 if there is none in the bytes read */
+	private int indexOfNewLine(int from) {
+		byte[] b = bytes;
+		for (int i = from; i < limit; i++) {
+			if (b[i] == '\n') {
+				return i;
+			}
+		}
+		return -1;
+	}
+
+	/** Moves the unread bytes to the start of the block and reads more after them, in a
+	 * bigger block if a line doesn't fit */
+	private void fill() throws IOException {
+		byte[] block = bytes;
+		int unread = limit - position;
+		if (unread == block.length) {
+			block = new byte[2 * block.length];
+		}
+		System.arraycopy(bytes, position, block, 0, unread);
+		bytes = block;
+		position = 0;
+		limit = unread;
+		int read;
+		if (mapped != null) {
+			read = Math.min(mapped.remaining(), block.length - limit);
+			mapped.get(block, limit, read);
+			if (read == 0) {
+				read = -1;
+			}
+		} else {
+			read = in.read(block, limit, block.length - limit);
+		}
+		if (read < 0) {
+			endOfInput = true;
+		} else {
+			limit += read;
+		}
+	}
+
+	/** Decodes the current line, if it isn't yet, and returns its chars. Only the first
+	 * length() of them belong to the line and they change with the next line.
+	 * @return
+	 */
+	public char[] getChars() {
+		if (!decoded) {
+			decode();
+		}
+		return chars;
+	}
+
+	private void decode() {
+		if (chars.length < lineEnd - lineStart) {
+			chars = new char[Math.max(lineEnd - lineStart, 2 * chars.length)];
+		}
+		byte[] b = bytes;
+		char[] out = chars;
+		int n = 0;
+		int i = lineStart;
+		while (i < lineEnd) {
+			int c = b[i++];
+			if (c >= 0) {
+				out[n++] = (char) c;
+				continue;
+			}
+			// The number of continuation bytes and the lowest value that needs them
+			int more, min;
+			if ((c & 0xE0) == 0xC0) {
+				more = 1;
+				min = 0x80;
+				c &= 0x1F;
+			} else if ((c & 0xF0) == 0xE0) {
+				more = 2;
+				min = 0x800;
+				c &= 0x0F;
+			} else if ((c & 0xF8) == 0xF0) {
+				more = 3;
+				min = 0x10000;
+				c &= 0x07;
+			} else {
+				out[n++] = REPLACEMENT;
+				continue;
+			}
+			int j = 0;
+			while ((j < more) && (i < lineEnd) && ((b[i] & 0xC0) == 0x80)) {
+				c = (c << 6) | (b[i++] & 0x3F);
+				j++;
+			}
+			if ((j < more) || (c < min) || (c > Character.MAX_CODE_POINT)) {
+				out[n++] = REPLACEMENT;
+			} else if (c >= Character.MIN_SUPPLEMENTARY_CODE_POINT) {
+				// A code point and its surrogate pair both take 4 bytes, so out is big enough
+				c -= Character.MIN_SUPPLEMENTARY_CODE_POINT;
+				out[n++] = (char) (Character.MIN_HIGH_SURROGATE + (c >>> 10));
+				out[n++] = (char) (Character.MIN_LOW_SURROGATE + (c & 0x3FF));
+			} else {
+				out[n++] = (char) c;
+			}
+		}
+		length = n;
+		decoded = true;
+	}
+
+	@Override
+	public int length() {
+		if (!decoded) {
+			decode();
+		}
+		return length;
+	}
+
+	@Override
+	public char charAt(int index) {
+		if (!decoded) {
+			decode();
+		}
+		if (index >= length) {
+			throw new IndexOutOfBoundsException("Index: " + index + ", length: " + length);
+		}
+		return chars[index];
+	}
+
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return toString().substring(start, end);
+	}
+
+	/** Returns the current line as a String */
+	@Override
+	public String toString() {
+		return new String(getChars(), 0, length);
+	}
+
+	/** Closes the stream or file that is read */
+	public void close() throws IOException {
+		if (in != null) {
+			in.close();
+		}
+		if (file != null) {
+			file.close();
+		}
+	}
+}
@@ -0,0 +1,79 @@
+package com.as.anagramsolver.engine;
+
+/** Where the hot paths of the searches record their counters and timings. Nothing is
+ * recorded until a MetricsSink is set, and until then every call is a read of a field and a
+ * branch, so the calls can stay in the code of the searches for good.
+ *
+ * Timings go like: long start = Metrics.start(); ... Metrics.stop(Metrics.DB_QUERY, start);
+ * start() doesn't even read the clock while there is no sink.
+ */
+public final class Metrics {
+
+	/** Queries sent to SQLite */
+	public static final String DB_QUERIES = "db.queries";
+	/** Rows read from the cursors of those queries */
+	public static final String DB_ROWS = "db.rows";
+	/** Time of each query, cursor reading included */
+	public static final String DB_QUERY = "db.query";
+	/** Lookups answered by the ResultCaches of DictionaryDBCreator */
+	public static final String CACHE_HITS = "cache.hits";
+	/** Lookups the ResultCaches didn't have */
+	public static final String CACHE_MISSES = "cache.misses";
+	/** Prefixes of keys looked up by the sub-anagram walk */
+	public static final String PREFIXES_VISITED = "walk.prefixes.visited";
+	/** Prefixes dropped because no key starts with them or none can be long enough */
+	public static final String PREFIXES_PRUNED = "walk.prefixes.pruned";
+	/** Keys found by the sub-anagram walk */
+	public static final String KEYS_FOUND = "walk.keys.found";
+	/** Searches worked out from the last result by DeltaSearcher */
+	public static final String DELTA_SEARCHES = "walk.delta_searches";
+	/** Time to normalize the letters of a search */
+	public static final String NORMALIZE = "search.normalize";
+	/** Time from the start of a search to its first result on the screen */
+	public static final String FIRST_RESULT = "search.first_result";
+	/** Time of a whole search */
+	public static final String SEARCH = "search.total";
+	/** Time to put a batch of results in its sorted place in the list */
+	public static final String SORTED_INSERT = "ui.sorted_insert";
+	/** Words found that didn't make it to the first results kept by a TopK, or fell out of them */
+	public static final String RANK_DROPPED = "rank.dropped";
+
+	private static volatile MetricsSink sink;
+
+	private Metrics() {
+	}
+
+	/** Sets where the metrics go, null to stop recording */
+	public static void setSink(MetricsSink metricsSink) {
+		sink = metricsSink;
+	}
+
+	public static MetricsSink getSink() {
+		return sink;
+	}
+
+	public static boolean isEnabled() {
+		return sink != null;
+	}
+
+	/** Adds delta to the counter with the given name */
+	public static void count(String name, long delta) {
+		MetricsSink current = sink;
+		if (current != null) {
+			current.count(name, delta);
+		}
+	}
+
+	/** Returns the start time to pass to stop(), 0 if nothing is recorded */
+	public static long start() {
+		return (sink != null) ? System.nanoTime() : 0;
+	}
+
+	/** Records the time since start in the timer with the given name */
+	public static void stop(String name, long start) {
+		MetricsSink current = sink;
+		if ((current != null) && (start != 0)) {
+			current.time(name, System.nanoTime() - start);
+		}
+	}
+}
@@ -0,0 +1,12 @@
+package com.as.anagramsolver.engine;
+
+/** Receives the counters and timings recorded through Metrics. Implementations are called
+ * from any thread and must be thread safe. */
+public interface MetricsSink {
+
+	/** Adds delta to the counter with the given name */
+	void count(String name, long delta);
+
+	/** Records one duration of the timer with the given name */
+	void time(String name, long nanos);
+}
@@ -0,0 +1,105 @@
+package com.as.anagramsolver.engine;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/** Runs the same task on several dictionaries at once on a bounded pool of worker threads,
+ * e.g. one search for every enabled language or the loading of every dictionary.
+ * The total time is close to that of the slowest dictionary instead of the sum of all.
+ */
+public class MultiDictionarySearcher {
+
+	/** A task to run on one dictionary */
+	public interface Task<T> {
+		T run(String dict) throws Exception;
+	}
+
+	private final ExecutorService executor;
+
+	public MultiDictionarySearcher(ExecutorService executor) {
+		this.executor = executor;
+	}
+
+	/** Returns a pool with a daemon thread for each processor */
+	public static ExecutorService newWorkerPool() {
+		return Executors.newFixedThreadPool(Runtime.getRuntime().availableProcessors(), new ThreadFactory() {
+			private int count = 0;
+
+			@Override
+			public synchronized Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "dictionary-worker-" + (++count));
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+	}
+
+	/** Runs the task on all the given dictionaries in parallel and waits for all of them.
+	 * If one of them fails the others are cancelled and its exception is thrown.
+	 * @return the result of each dictionary, in the order of dicts
+	 */
+	public <T> Map<String, T> runAll(Collection<String> dicts, final Task<T> task)
+			throws InterruptedException, ExecutionException {
+		Map<String, Future<T>> futures = new LinkedHashMap<String, Future<T>>();
+		for (final String dict : dicts) {
+			futures.put(dict, executor.submit(new Callable<T>() {
+				@Override
+				public T call() throws Exception {
+					return task.run(dict);
+				}
+			}));
+		}
+
+		Map<String, T> results = new LinkedHashMap<String, T>();
+		try {
+			for (Map.Entry<String, Future<T>> future : futures.entrySet()) {
+				results.put(future.getKey(), future.getValue().get());
+			}
+		} finally {
+			for (Future<T> future : futures.values()) {
+				future.cancel(true);
+			}
+		}
+		return results;
+	}
+
+	/** Runs the search on all the given dictionaries in parallel and returns all the words found,
+	 * each tagged with the dictionary it came from */
+	public List<TaggedWord> searchAll(Collection<String> dicts, Task<? extends Collection<String>> search)
+			throws InterruptedException, ExecutionException {
+		List<TaggedWord> words = new ArrayList<TaggedWord>();
+		for (Map.Entry<String, ? extends Collection<String>> result : runAll(dicts, search).entrySet()) {
+			for (String word : result.getValue()) {
+				words.add(new TaggedWord(word, result.getKey()));
+			}
+		}
+		return words;
+	}
+
+	/** Loads the dictionaries of the given languages from rawDir in parallel
+	 * @return each dictionary by the name of its language
+	 */
+	public Map<String, CompactDictionary> loadAll(Collection<Language> languages, final File rawDir)
+			throws InterruptedException, ExecutionException {
+		List<String> names = new ArrayList<String>();
+		for (Language language : languages) {
+			names.add(language.getName());
+		}
+		return runAll(names, new Task<CompactDictionary>() {
+			@Override
+			public CompactDictionary run(String dict) throws Exception {
+				return CompactDictionary.load(Language.fromName(dict), rawDir);
+			}
+		});
+	}
+}
@@ -0,0 +1,192 @@
+package com.as.anagramsolver.engine;
+
+import java.util.HashSet;
+import java.util.Set;
+
+/** Answers star patterns like snak*, *ake, wo*rd or sn?ke over the words of a
+ * CompactDictionary without looking at every word.
+ *
+ * It keeps two orderings of the word ids: by the word and by the reversed word, both
+ * compared case insensitively like LIKE. The literal prefix of a pattern is a range in the
+ * first one, its literal suffix is a range in the second and a pattern that has both
+ * only checks the smaller of the two ranges. The words of the range are then matched
+ * against the whole pattern. Only patterns that start and end with a wildcard still
+ * have to go through every word.
+ */
+public class PatternIndex {
+
+	private final CompactDictionary dictionary;
+	/** The word ids sorted by word */
+	private final int[] byWord;
+	/** The word ids sorted by reversed word */
+	private final int[] byReversedWord;
+
+	public PatternIndex(CompactDictionary dictionary) {
+		this.dictionary = dictionary;
+		int words = dictionary.getWordCount();
+		byWord = sortedIds(words, false);
+		byReversedWord = sortedIds(words, true);
+	}
+
+	/** Returns the words that match the pattern. * or % matches any number of characters,
+	 * ? or _ exactly one and ascii letters are compared case insensitively.
+	 * @param pattern The word to search for. Looks like word* or *word or wo*rd
+	 * @return
+	 */
+	public Set<String> match(String pattern) {
+		Set<String> matchingWords = new HashSet<String>();
+		if ((pattern == null) || pattern.isEmpty()) {
+			return matchingWords;
+		}
+		char[] p = pattern.toCharArray();
+		int prefix = 0;
+		while ((prefix < p.length) && !isWildcard(p[prefix])) {
+			prefix++;
+		}
+		int suffix = 0;
+		while ((suffix < p.length - prefix) && !isWildcard(p[p.length - 1 - suffix])) {
+			suffix++;
+		}
+
+		int[] ids = null;
+		int from = 0, to = 0;
+		if (prefix > 0) {
+			from = lowerBound(byWord, p, 0, prefix, false);
+			to = upperBound(byWord, p, 0, prefix, false);
+			ids = byWord;
+		}
+		if (suffix > 0) {
+			int rFrom = lowerBound(byReversedWord, p, p.length - suffix, p.length, true);
+			int rTo = upperBound(byReversedWord, p, p.length - suffix, p.length, true);
+			if ((ids == null) || ((rTo - rFrom) < (to - from))) {
+				ids = byReversedWord;
+				from = rFrom;
+				to = rTo;
+			}
+		}
+
+		char[] pool = dictionary.wordPool;
+		int[] offsets = dictionary.wordOffsets;
+		if (ids == null) {
+			for (int w = 0; w < dictionary.getWordCount(); w++) {
+				if (CompactDictionary.like(p, pool, offsets[w], offsets[w + 1])) {
+					matchingWords.add(dictionary.getWord(w));
+				}
+			}
+			return matchingWords;
+		}
+		for (int i = from; i < to; i++) {
+			int w = ids[i];
+			if (CompactDictionary.like(p, pool, offsets[w], offsets[w + 1])) {
+				matchingWords.add(dictionary.getWord(w));
+			}
+		}
+		return matchingWords;
+	}
+
+	/** Returns the approximate number of bytes the two orderings take in the heap */
+	public long getHeapFootprint() {
+		return 2 * (16 + 4L * byWord.length);
+	}
+
+	private static boolean isWildcard(char c) {
+		return (c == '*') || (c == '%') || (c == '?') || (c == '_');
+	}
+
+	/** Returns the first position in ids whose word (or reversed word) doesn't sort before
+	 * the literal p[from..to) (read backwards when reversed) */
+	private int lowerBound(int[] ids, char[] p, int from, int to, boolean reversed) {
+		int low = 0, high = ids.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparePrefix(ids[mid], p, from, to, reversed) < 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/** Returns the first position in ids whose word (or reversed word) sorts after all the
+	 * words that start with the literal p[from..to) */
+	private int upperBound(int[] ids, char[] p, int from, int to, boolean reversed) {
+		int low = 0, high = ids.length;
+		while (low < high) {
+			int mid = (low + high) >>> 1;
+			if (comparePrefix(ids[mid], p, from, to, reversed) <= 0) {
+				low = mid + 1;
+			} else {
+				high = mid;
+			}
+		}
+		return low;
+	}
+
+	/** Compares the first chars of the word (or reversed word) w with the literal: negative if
+	 * the word sorts before it, 0 if it starts with it and positive if it sorts after it */
+	private int comparePrefix(int w, char[] p, int from, int to, boolean reversed) {
+		int length = to - from;
+		int wordLength = dictionary.wordOffsets[w + 1] - dictionary.wordOffsets[w];
+		for (int i = 0; i < length; i++) {
+			if (i >= wordLength) {
+				return -1;
+			}
+			char c1 = CompactDictionary.foldAscii(charAt(w, i, wordLength, reversed));
+			char c2 = CompactDictionary.foldAscii(reversed ? p[to - 1 - i] : p[from + i]);
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return 0;
+	}
+
+	private char charAt(int w, int i, int wordLength, boolean reversed) {
+		int start = dictionary.wordOffsets[w];
+		return dictionary.wordPool[reversed ? start + wordLength - 1 - i : start + i];
+	}
+
+	/** Compares the words (or reversed words) a and b */
+	private int compareWords(int a, int b, boolean reversed) {
+		int aLength = dictionary.wordOffsets[a + 1] - dictionary.wordOffsets[a];
+		int bLength = dictionary.wordOffsets[b + 1] - dictionary.wordOffsets[b];
+		int length = Math.min(aLength, bLength);
+		for (int i = 0; i < length; i++) {
+			char c1 = CompactDictionary.foldAscii(charAt(a, i, aLength, reversed));
+			char c2 = CompactDictionary.foldAscii(charAt(b, i, bLength, reversed));
+			if (c1 != c2) {
+				return c1 - c2;
+			}
+		}
+		return aLength - bLength;
+	}
+
+	/** Returns the ids 0 to words - 1 sorted by word or reversed word with a merge sort */
+	private int[] sortedIds(int words, boolean reversed) {
+		int[] ids = new int[words];
+		for (int i = 0; i < words; i++) {
+			ids[i] = i;
+		}
+		int[] buffer = new int[words];
+		for (int width = 1; width < words; width *= 2) {
+			for (int low = 0; low < words; low += 2 * width) {
+				int mid = Math.min(low + width, words);
+				int high = Math.min(low + 2 * width, words);
+				int i = low, j = mid, k = low;
+				while ((i < mid) && (j < high)) {
+					buffer[k++] = (compareWords(ids[i], ids[j], reversed) <= 0) ? ids[i++] : ids[j++];
+				}
+				while (i < mid) {
+					buffer[k++] = ids[i++];
+				}
+				while (j < high) {
+					buffer[k++] = ids[j++];
+				}
+			}
+			int[] swap = ids;
+			ids = buffer;
+			buffer = swap;
+		}
+		return ids;
+	}
+}
@@ -0,0 +1,410 @@
+package com.as.anagramsolver.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/** Finds phrases of dictionary words that use up all the given letters exactly, e.g.
+ * dormitory gives dirty room.
+ *
+ * The keys that fit in the letters are found once with a SubAnagramSearcher. The phrases are
+ * then built by taking keys out of the remaining letters, in ascending key order so every
+ * combination is found once. A branch is only followed if its remaining letters can be used
+ * up with the words left: that is worked out only as deep as the words left, from the keys
+ * that have the lowest remaining letter (one of them must be taken), and remembered for each
+ * state of remaining letters, either as the fewest keys or as "more than d". Remaining letters
+ * that even the longest keys can't use up in time are dropped without a lookup.
+ *
+ * The search space still grows very fast with the number of letters, so the words per phrase,
+ * the phrases returned and the steps of a search are limited. A search that runs out of steps
+ * ends with the phrases it found so far, and it stops when the listener says so or the thread
+ * is interrupted, e.g. by AsyncTask.cancel(true), which is checked in the recursion too.
+ */
+public class PhraseSolver {
+
+	public static final int DEFAULT_MAX_WORDS = 3;
+	public static final int DEFAULT_MAX_RESULTS = 1000;
+	/** The steps of a search by default, a few seconds on a phone */
+	public static final long DEFAULT_MAX_STEPS = 50000000;
+	/** The most words of a phrase, so the counts fit in the bytes of the memo */
+	public static final int MAX_WORDS_LIMIT = 100;
+
+	/** States with more combinations than this are remembered in a map instead of an array */
+	private static final long MAX_TABLE_STATES = 1 << 22;
+	/** The most states remembered in the map, the others are worked out again when needed */
+	private static final int MAX_MAP_STATES = 1 << 18;
+	/** How many steps are taken between two checks of the interrupt flag, minus one */
+	private static final int INTERRUPT_CHECK_MASK = 0x3FF;
+
+	private final SortedKeyIndex index;
+	private final long maxSteps;
+
+	public PhraseSolver(SortedKeyIndex index) {
+		this(index, DEFAULT_MAX_STEPS);
+	}
+
+	/**
+	 * @param index the keys and words of the dictionary
+	 * @param maxSteps the states a search may look at before it ends with what it found so far
+	 */
+	public PhraseSolver(SortedKeyIndex index, long maxSteps) {
+		this.index = index;
+		this.maxSteps = maxSteps;
+	}
+
+	/** Returns the phrases that use up all the letters, like solve(String, int, int, int, MatchListener)
+	 * @param value The normalized letters of the phrase
+	 * @param maxWords The maximum number of words of a phrase
+	 * @param minWordLength The minimum length of each word
+	 * @param maxResults The maximum number of phrases returned
+	 * @return
+	 */
+	public List<String> solve(String value, int maxWords, int minWordLength, int maxResults) {
+		final List<String> phrases = new ArrayList<String>();
+		solve(value, maxWords, minWordLength, maxResults, new SubAnagramSearcher.MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				phrases.addAll(words);
+				return true;
+			}
+		});
+		return phrases;
+	}
+
+	/** Finds the phrases that use up all the letters and hands them to the listener as soon
+	 * as they are found, the phrases of each combination of keys at a time. The words of a
+	 * phrase are separated by a space.
+	 * @param value The normalized letters of the phrase
+	 * @param maxWords The maximum number of words of a phrase
+	 * @param minWordLength The minimum length of each word
+	 * @param maxResults The maximum number of phrases found
+	 * @param listener Receives the phrases and can stop the search
+	 * @return false if the search ran out of steps or was interrupted before it was done
+	 */
+	public boolean solve(String value, int maxWords, int minWordLength, int maxResults,
+			SubAnagramSearcher.MatchListener listener) {
+		if ((value == null) || value.isEmpty() || (maxWords < 1) || (maxResults < 1)) {
+			return true;
+		}
+		char[] letters = value.toCharArray();
+		Arrays.sort(letters);
+		int distinct = 0;
+		int[] counts = new int[letters.length];
+		for (int i = 0; i < letters.length; i++) {
+			if ((distinct == 0) || (letters[i] != letters[distinct - 1])) {
+				letters[distinct++] = letters[i];
+			}
+			counts[distinct - 1]++;
+		}
+
+		List<String> keys = findKeys(value, minWordLength);
+		if (Thread.currentThread().isInterrupted()) {
+			return false;
+		}
+		if (keys.isEmpty()) {
+			return true;
+		}
+		Search search = new Search(Arrays.copyOf(letters, distinct), Arrays.copyOf(counts, distinct), keys,
+				Math.min(maxWords, MAX_WORDS_LIMIT), maxResults, listener);
+		search.run();
+		return !search.cutShort;
+	}
+
+	/** Returns the keys that can be made of some of the letters, sorted */
+	private List<String> findKeys(String value, int minWordLength) {
+		final List<String> keys = new ArrayList<String>();
+		// The same walk as a sub-anagram search, only handing on the keys instead of their words
+		SortedKeyIndex keysOnly = new SortedKeyIndex() {
+			@Override
+			public int probe(char[] key, int length) {
+				return index.probe(key, length);
+			}
+
+			@Override
+			public int nextChar(char[] key, int length, char from) {
+				return index.nextChar(key, length, from);
+			}
+
+			@Override
+			public void addWords(char[] key, int length, Collection<String> out) {
+				out.add(new String(key, 0, length));
+			}
+		};
+		new SubAnagramSearcher(keysOnly).search(value, minWordLength, new SubAnagramSearcher.MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				keys.addAll(words);
+				return !Thread.currentThread().isInterrupted();
+			}
+		});
+		Collections.sort(keys);
+		return keys;
+	}
+
+	/** The state of one search */
+	private class Search {
+		private final int distinct;
+		/** The letters left of each distinct letter */
+		private final int[] remaining;
+		/** The remaining letters are numbered state = sum(remaining[i] * strides[i]) */
+		private final long[] strides;
+		/** The letters of each key as counts of the distinct letters */
+		private final int[][] keyCounts;
+		/** How much taking each key lowers the state */
+		private final long[] keyStates;
+		private final int[] keyLengths;
+		private int maxKeyLength = 0;
+		/** The indexes of the keys that have each distinct letter */
+		private final int[][] keysWith;
+		private final List<List<String>> keyWords = new ArrayList<List<String>>();
+		private final int maxWords;
+		private final int maxResults;
+		private final SubAnagramSearcher.MatchListener listener;
+
+		/** What is known of each state: the fewest keys that use it up plus one, or minus
+		 * the number of keys that aren't enough to, or 0 if nothing is known yet */
+		private byte[] fewestTable;
+		private Map<Long, Byte> fewestMap;
+
+		/** The indexes of the keys taken so far */
+		private final int[] taken;
+		private final List<String> phrases = new ArrayList<String>();
+		private int found = 0;
+		long steps = 0;
+		private boolean stopped = false;
+		/** Whether the search stopped before it was done, for lack of steps or by an interrupt */
+		boolean cutShort = false;
+
+		Search(char[] letters, int[] counts, List<String> keys, int maxWords, int maxResults,
+				SubAnagramSearcher.MatchListener listener) {
+			this.distinct = letters.length;
+			this.remaining = counts;
+			this.maxWords = maxWords;
+			this.maxResults = maxResults;
+			this.listener = listener;
+			this.taken = new int[maxWords];
+
+			strides = new long[distinct];
+			long states = 1;
+			for (int i = 0; i < distinct; i++) {
+				strides[i] = states;
+				states *= counts[i] + 1;
+			}
+			if (states <= MAX_TABLE_STATES) {
+				fewestTable = new byte[(int) states];
+			} else {
+				fewestMap = new HashMap<Long, Byte>();
+			}
+
+			keyCounts = new int[keys.size()][];
+			keyStates = new long[keys.size()];
+			keyLengths = new int[keys.size()];
+			int[] withCounts = new int[distinct];
+			for (int k = 0; k < keys.size(); k++) {
+				String key = keys.get(k);
+				keyCounts[k] = new int[distinct];
+				for (int i = 0; i < key.length(); i++) {
+					int letter = Arrays.binarySearch(letters, key.charAt(i));
+					if (keyCounts[k][letter]++ == 0) {
+						withCounts[letter]++;
+					}
+					keyStates[k] += strides[letter];
+				}
+				keyLengths[k] = key.length();
+				maxKeyLength = Math.max(maxKeyLength, key.length());
+				List<String> words = new ArrayList<String>();
+				index.addWords(key.toCharArray(), key.length(), words);
+				Collections.sort(words);
+				keyWords.add(words);
+			}
+			keysWith = new int[distinct][];
+			for (int i = 0; i < distinct; i++) {
+				keysWith[i] = new int[withCounts[i]];
+				withCounts[i] = 0;
+			}
+			for (int k = 0; k < keyCounts.length; k++) {
+				for (int i = 0; i < distinct; i++) {
+					if (keyCounts[k][i] > 0) {
+						keysWith[i][withCounts[i]++] = k;
+					}
+				}
+			}
+		}
+
+		void run() {
+			long state = 0;
+			int left = 0;
+			for (int i = 0; i < distinct; i++) {
+				state += remaining[i] * strides[i];
+				left += remaining[i];
+			}
+			if (fewest(state, left, maxWords) <= maxWords) {
+				take(state, left, 0, 0);
+			}
+			if (!stopped && !phrases.isEmpty()) {
+				listener.onMatches(phrases);
+			}
+		}
+
+		/** Takes the keys from the first one on that fit in the remaining letters, after the
+		 * given number of keys were taken */
+		private void take(long state, int left, int first, int depth) {
+			if (state == 0) {
+				addPhrases(0, new StringBuilder(), 0, depth);
+				return;
+			}
+			int wordsLeft = maxWords - depth - 1;
+			for (int k = first; (k < keyStates.length) && step(); k++) {
+				if (!fits(k)) {
+					continue;
+				}
+				long next = state - keyStates[k];
+				subtract(k, 1);
+				if (fewest(next, left - keyLengths[k], wordsLeft) <= wordsLeft) {
+					taken[depth] = k;
+					take(next, left - keyLengths[k], k, depth + 1);
+				}
+				subtract(k, -1);
+			}
+		}
+
+		/** Counts a step and returns false if the search must stop: the listener said so, the
+		 * steps ran out or the thread was interrupted */
+		private boolean step() {
+			if (stopped) {
+				return false;
+			}
+			steps++;
+			if ((steps > maxSteps)
+					|| (((steps & INTERRUPT_CHECK_MASK) == 0) && Thread.currentThread().isInterrupted())) {
+				stopped = true;
+				cutShort = true;
+				return false;
+			}
+			return true;
+		}
+
+		/** Adds every phrase made of one word of each key taken, without the same words in
+		 * another order when a key was taken twice, and hands them on */
+		private void addPhrases(int depth, StringBuilder phrase, int firstWord, int keysTaken) {
+			if (stopped) {
+				return;
+			}
+			if (depth == keysTaken) {
+				phrases.add(phrase.toString());
+				if (++found >= maxResults) {
+					stopped = true;
+					listener.onMatches(phrases);
+				}
+				return;
+			}
+			List<String> words = keyWords.get(taken[depth]);
+			int length = phrase.length();
+			for (int w = firstWord; (w < words.size()) && !stopped; w++) {
+				if (depth > 0) {
+					phrase.append(' ');
+				}
+				phrase.append(words.get(w));
+				boolean sameKey = (depth + 1 < keysTaken) && (taken[depth + 1] == taken[depth]);
+				addPhrases(depth + 1, phrase, sameKey ? w : 0, keysTaken);
+				phrase.setLength(length);
+			}
+			if ((depth == 0) && !stopped && !phrases.isEmpty()) {
+				stopped = !listener.onMatches(phrases);
+				if (!stopped && Thread.currentThread().isInterrupted()) {
+					stopped = true;
+					cutShort = true;
+				}
+				phrases.clear();
+			}
+		}
+
+		/** Returns the fewest keys that use up the state if it takes at most limit of them,
+		 * else limit + 1, which is also returned when the search stops
+		 * @param state the remaining letters
+		 * @param left the number of remaining letters
+		 * @param limit the most keys that may be taken
+		 */
+		private int fewest(long state, int left, int limit) {
+			if (state == 0) {
+				return 0;
+			}
+			if ((limit <= 0) || (left > limit * maxKeyLength)) {
+				return limit + 1;
+			}
+			int known = (fewestTable != null) ? fewestTable[(int) state] : get(state);
+			if (known > 0) {
+				return Math.min(known - 1, limit + 1);
+			}
+			if ((known < 0) && (-known >= limit)) {
+				return limit + 1;
+			}
+
+			// Every way to use up the letters takes a key with the lowest of them
+			int lowest = 0;
+			while (remaining[lowest] == 0) {
+				lowest++;
+			}
+			int best = limit + 1;
+			int[] candidates = keysWith[lowest];
+			for (int c = 0; (c < candidates.length) && (best > 1); c++) {
+				if (!step()) {
+					return limit + 1;
+				}
+				int k = candidates[c];
+				if (!fits(k)) {
+					continue;
+				}
+				// Only a way with fewer keys than the best so far is looked for
+				int wanted = best - 2;
+				subtract(k, 1);
+				int rest = fewest(state - keyStates[k], left - keyLengths[k], wanted);
+				subtract(k, -1);
+				if (stopped) {
+					return limit + 1;
+				}
+				if (rest <= wanted) {
+					best = rest + 1;
+				}
+			}
+			remember(state, (best <= limit) ? best + 1 : -limit);
+			return best;
+		}
+
+		private void remember(long state, int value) {
+			if (fewestTable != null) {
+				fewestTable[(int) state] = (byte) value;
+			} else if ((fewestMap.size() < MAX_MAP_STATES) || fewestMap.containsKey(state)) {
+				fewestMap.put(state, (byte) value);
+			}
+		}
+
+		private int get(long state) {
+			Byte known = fewestMap.get(state);
+			return (known != null) ? known : 0;
+		}
+
+		/** Returns true if the k-th key fits in the remaining letters */
+		private boolean fits(int k) {
+			int[] counts = keyCounts[k];
+			for (int i = 0; i < distinct; i++) {
+				if (counts[i] > remaining[i]) {
+					return false;
+				}
+			}
+			return true;
+		}
+
+		/** Takes the k-th key from the remaining letters times times, or gives it back when times is -1 */
+		private void subtract(int k, int times) {
+			int[] counts = keyCounts[k];
+			for (int i = 0; i < distinct; i++) {
+				remaining[i] -= times * counts[i];
+			}
+		}
+	}
+}
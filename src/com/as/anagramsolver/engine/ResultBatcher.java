@@ -0,0 +1,78 @@
+package com.as.anagramsolver.engine;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Collects the words found by a search and hands them on in batches of new words only,
+ * so the receiver never has to look at the same result twice.
+ *
+ * The first word found is delivered right away so the first result shows up as soon as
+ * possible. After that words are grouped until the batch is full or enough time has passed
+ * since the previous one. Call flush() when the search ends to deliver the rest.
+ */
+public class ResultBatcher implements SubAnagramSearcher.MatchListener {
+
+	/** Receives the batches of new words */
+	public interface BatchListener {
+		/** Called with words that weren't in any previous batch. The list is reused afterwards.
+		 * @return false to stop the search */
+		boolean onBatch(List<String> batch);
+	}
+
+	private final int maxBatchSize;
+	private final long maxDelayNanos;
+	private final BatchListener listener;
+
+	private final Set<String> seen = new HashSet<String>();
+	private final List<String> batch = new ArrayList<String>();
+	private long lastFlush = 0;
+	private boolean flushed = false;
+
+	/**
+	 * @param maxBatchSize a batch is delivered as soon as it has this many words
+	 * @param maxDelayMillis a batch is delivered when this much time has passed since the last one
+	 * @param listener receives the batches
+	 */
+	public ResultBatcher(int maxBatchSize, long maxDelayMillis, BatchListener listener) {
+		this.maxBatchSize = maxBatchSize;
+		this.maxDelayNanos = maxDelayMillis * 1000000L;
+		this.listener = listener;
+	}
+
+	@Override
+	public boolean onMatches(Collection<String> words) {
+		for (String word : words) {
+			if (seen.add(word)) {
+				batch.add(word);
+			}
+		}
+		if (batch.isEmpty()) {
+			return true;
+		}
+		if (!flushed || (batch.size() >= maxBatchSize) || ((System.nanoTime() - lastFlush) >= maxDelayNanos)) {
+			return flush();
+		}
+		return true;
+	}
+
+	/** Delivers the words collected since the last batch, if any
+	 * @return false if the listener asked to stop */
+	public boolean flush() {
+		if (batch.isEmpty()) {
+			return true;
+		}
+		flushed = true;
+		lastFlush = System.nanoTime();
+		boolean goOn = listener.onBatch(batch);
+		batch.clear();
+		return goOn;
+	}
+
+	/** Returns the number of distinct words seen so far */
+	public int getCount() {
+		return seen.size();
+	}
+}
@@ -0,0 +1,113 @@
+package com.as.anagramsolver.engine;
+
+import java.util.Collections;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+
+/** A bounded least-recently-used cache of search results keyed by dictionary and normalized key.
+ *
+ * Each entry weighs one plus the number of its words, and the least recently used entries are
+ * evicted once the total weight goes over the maximum, so a few huge results can't push out
+ * everything else unnoticed. Sets are stored and returned unmodifiable.
+ * All the methods are synchronized so one cache can be shared by several searching threads.
+ */
+public class ResultCache {
+
+	private final int maxWeight;
+	private int weight = 0;
+	private long hits = 0, misses = 0, evictions = 0;
+
+	/** Ordered from the least to the most recently used */
+	private final LinkedHashMap<String, Set<String>> entries =
+			new LinkedHashMap<String, Set<String>>(16, 0.75f, true);
+
+	/** @param maxWeight the maximum total number of entries and words kept */
+	public ResultCache(int maxWeight) {
+		this.maxWeight = maxWeight;
+	}
+
+	/** Returns the cached words of the key in the given dictionary or null if they aren't cached */
+	public synchronized Set<String> get(String dict, String key) {
+		Set<String> words = entries.get(entryKey(dict, key));
+		if (words == null) {
+			misses++;
+		} else {
+			hits++;
+		}
+		return words;
+	}
+
+	/** Caches the words of the key in the given dictionary
+	 * @return the cached, unmodifiable set of the words */
+	public synchronized Set<String> put(String dict, String key, Set<String> words) {
+		Set<String> cached = Collections.unmodifiableSet(words);
+		int entryWeight = weigh(cached);
+		if (entryWeight > maxWeight) {
+			return cached;
+		}
+		Set<String> previous = entries.put(entryKey(dict, key), cached);
+		if (previous != null) {
+			weight -= weigh(previous);
+		}
+		weight += entryWeight;
+
+		Iterator<Set<String>> eldest = entries.values().iterator();
+		while (weight > maxWeight) {
+			weight -= weigh(eldest.next());
+			eldest.remove();
+			evictions++;
+		}
+		return cached;
+	}
+
+	/** Removes all the entries of the given dictionary, e.g. when its table is dropped or reloaded */
+	public synchronized void invalidate(String dict) {
+		String prefix = entryKey(dict, "");
+		Iterator<Map.Entry<String, Set<String>>> it = entries.entrySet().iterator();
+		while (it.hasNext()) {
+			Map.Entry<String, Set<String>> entry = it.next();
+			if (entry.getKey().startsWith(prefix)) {
+				weight -= weigh(entry.getValue());
+				it.remove();
+			}
+		}
+	}
+
+	/** Removes all the entries */
+	public synchronized void clear() {
+		entries.clear();
+		weight = 0;
+	}
+
+	public synchronized long getHits() {
+		return hits;
+	}
+
+	public synchronized long getMisses() {
+		return misses;
+	}
+
+	public synchronized long getEvictions() {
+		return evictions;
+	}
+
+	public synchronized int size() {
+		return entries.size();
+	}
+
+	@Override
+	public synchronized String toString() {
+		return entries.size() + " entries, weight " + weight + "/" + maxWeight
+				+ ", " + hits + " hits, " + misses + " misses, " + evictions + " evictions";
+	}
+
+	private static String entryKey(String dict, String key) {
+		return dict + '\u0000' + key;
+	}
+
+	private static int weigh(Set<String> words) {
+		return 1 + words.size();
+	}
+}
@@ -0,0 +1,159 @@
+package com.as.anagramsolver.engine;
+
+/** Runs the searches of a search-as-you-type box one at a time on its own thread, only for
+ * the latest query.
+ *
+ * A query only starts once no other one was submitted for the debounce delay, so typing
+ * a word searches once instead of once per key. Submitting a query while another one runs
+ * interrupts the thread of the running one, which the searches check in their loops
+ * (SubAnagramSearcher, PhraseSolver and the scans of DictionaryDBCreator),
+ * so at most one search runs and a stale one stops as soon as it can. Each query gets a
+ * generation and isCurrent() tells a search whether its results are still wanted, e.g.
+ * before they are posted to the UI, since the interrupt can come after its last check.
+ *
+ * All the methods can be called from any thread.
+ */
+public class SearchScheduler {
+
+	/** How long the queries are held by default, about the time between two key presses */
+	public static final long DEFAULT_DEBOUNCE_MS = 250;
+
+	/** Runs a search on the thread of the scheduler */
+	public interface Search {
+		/** Searches for the query. Should stop when the thread is interrupted.
+		 * @param query the query that was submitted
+		 * @param generation the generation of the query, for isCurrent()
+		 */
+		void run(String query, long generation);
+	}
+
+	private final long debounceMs;
+	private final Search search;
+	private final Object lock = new Object();
+
+	/** The query waiting for its delay to pass, null if there is none */
+	private String pending;
+	/** When the pending query can start, in System.nanoTime() */
+	private long due;
+	/** The generation of the last query submitted or cancelled */
+	private long generation = 0;
+	private boolean running = false;
+	private boolean shutdown = false;
+	private Thread worker;
+
+	/**
+	 * @param debounceMs how long a query waits for the next one before it starts
+	 * @param search runs the queries
+	 */
+	public SearchScheduler(long debounceMs, Search search) {
+		this.debounceMs = debounceMs;
+		this.search = search;
+	}
+
+	/** Makes the query the one to search next, replacing the one that waits, if any, and
+	 * interrupting the one that runs. The thread is started on the first call.
+	 * @param query the query to search for
+	 * @return the generation of the query
+	 */
+	public long submit(String query) {
+		synchronized (lock) {
+			if (shutdown) {
+				throw new IllegalStateException("The scheduler is shut down");
+			}
+			generation++;
+			pending = query;
+			due = System.nanoTime() + debounceMs * 1000000L;
+			if (running) {
+				worker.interrupt();
+			}
+			if (worker == null) {
+				worker = new Thread(new Runnable() {
+					@Override
+					public void run() {
+						work();
+					}
+				}, "SearchScheduler");
+				worker.setDaemon(true);
+				worker.start();
+			}
+			lock.notifyAll();
+			return generation;
+		}
+	}
+
+	/** Drops the query that waits, if any, and interrupts the one that runs */
+	public void cancel() {
+		synchronized (lock) {
+			generation++;
+			pending = null;
+			if (running) {
+				worker.interrupt();
+			}
+			lock.notifyAll();
+		}
+	}
+
+	/** Cancels everything and stops the thread. No query can be submitted afterwards */
+	public void shutdown() {
+		synchronized (lock) {
+			cancel();
+			shutdown = true;
+			lock.notifyAll();
+		}
+	}
+
+	/** Returns true if no query was submitted or cancelled since the one of the given generation */
+	public boolean isCurrent(long queryGeneration) {
+		synchronized (lock) {
+			return queryGeneration == generation;
+		}
+	}
+
+	/** Returns true while a search runs */
+	public boolean isRunning() {
+		synchronized (lock) {
+			return running;
+		}
+	}
+
+	/** The loop of the thread: waits for a query whose delay passed and searches for it */
+	private void work() {
+		while (true) {
+			String query;
+			long queryGeneration;
+			synchronized (lock) {
+				try {
+					while (!shutdown && ((pending == null) || (due - System.nanoTime() > 0))) {
+						if (pending == null) {
+							lock.wait();
+						} else {
+							long wait = (due - System.nanoTime()) / 1000000L;
+							lock.wait(Math.max(1, wait));
+						}
+					}
+				} catch (InterruptedException e) {
+					// A query that ended while a new one interrupted it, look again
+					continue;
+				}
+				if (shutdown) {
+					return;
+				}
+				query = pending;
+				queryGeneration = generation;
+				pending = null;
+				running = true;
+				// An interrupt meant for the previous query isn't for this one
+				Thread.interrupted();
+			}
+			try {
+				search.run(query, queryGeneration);
+			} catch (RuntimeException e) {
+				System.out.println("Search error: " + e.getMessage());
+			} finally {
+				synchronized (lock) {
+					running = false;
+				}
+			}
+		}
+	}
+}
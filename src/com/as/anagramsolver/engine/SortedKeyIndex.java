@@ -0,0 +1,27 @@
+package com.as.anagramsolver.engine;
+
+import java.util.Collection;
+
+/** An ordered index of the keys (sorted, normalized words) of a dictionary that the
+ * searchers walk like a trie: a prefix is only extended further while some key starts with it.
+ * Both CompactDictionary and the sqlite tables of DictionaryDBCreator implement it.
+ */
+public interface SortedKeyIndex {
+
+	/** No key starts with the probed prefix */
+	int NONE = 0;
+	/** At least one key is longer than and starts with the probed prefix but the prefix itself isn't a key */
+	int PREFIX = 1;
+	/** The probed prefix is itself a key. Longer keys may or may not start with it */
+	int KEY = 2;
+
+	/** Returns NONE, PREFIX or KEY for the prefix key[0..length) */
+	int probe(char[] key, int length);
+
+	/** Returns the smallest char c &gt;= from such that some key starts with key[0..length)
+	 * followed by c, or -1 if there is none. Used to list the children of a prefix. */
+	int nextChar(char[] key, int length, char from);
+
+	/** Adds all the words of the key key[0..length) to out */
+	void addWords(char[] key, int length, Collection<String> out);
+}
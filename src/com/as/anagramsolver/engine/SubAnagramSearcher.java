@@ -0,0 +1,273 @@
+package com.as.anagramsolver.engine;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+/** Finds all the words that can be formed from some given letters or from any subset of them.
+ *
+ * Instead of trying every subset of the letters (2^n of them, many of them the same when
+ * letters repeat) it walks the keys of a SortedKeyIndex as a trie of letter multisets.
+ * The letters are taken in sorted order and each one only as many times as it appears in the
+ * rack, so every distinct subset is visited at most once, and a branch is dropped as soon as
+ * no key starts with it. The work done grows with the number of keys that fit in the rack,
+ * not with the number of subsets.
+ *
+ * A BLANK in the letters stands for any single letter, like a blank tile. Blanks are only
+ * spent on letters the rack doesn't have, on the children that the index says exist, so
+ * a search with k blanks costs as much as the keys it finds instead of 26^k searches.
+ *
+ * A search stops when the listener says so or the thread is interrupted, e.g. by
+ * AsyncTask.cancel(true) or a SearchScheduler.
+ */
+public class SubAnagramSearcher {
+
+	/** Words shorter than this are not returned by default, like the original subset search */
+	public static final int DEFAULT_MIN_LENGTH = 4;
+
+	/** The letter that matches any single letter */
+	public static final char BLANK = '?';
+
+	/** How many prefixes are visited between two checks of the interrupt flag, minus one */
+	private static final int INTERRUPT_CHECK_MASK = 0xFF;
+
+	/** Receives the words found by a search */
+	public interface MatchListener {
+		/** Called with the words of every key found.
+		 * @return false to stop the search */
+		boolean onMatches(Collection<String> words);
+	}
+
+	private final SortedKeyIndex index;
+
+	public SubAnagramSearcher(SortedKeyIndex index) {
+		this.index = index;
+	}
+
+	/** Returns a Set<String> with all the words that can be formed from the given letters in value
+	 * or from any subset of them that has at least minLength letters. With a minLength equal to
+	 * the number of letters it returns only the words that use all of them.
+	 * @param value The normalized letters to search for anagrams
+	 * @param minLength The minimum length of the words returned
+	 * @return
+	 */
+	public Set<String> search(String value, int minLength) {
+		final Set<String> matchingWords = new HashSet<String>();
+		search(value, minLength, new MatchListener() {
+			@Override
+			public boolean onMatches(Collection<String> words) {
+				matchingWords.addAll(words);
+				return true;
+			}
+		});
+		return matchingWords;
+	}
+
+	/** Searches like search(String, int) but hands the words of each key to the listener as soon
+	 * as it is found.
+	 * @param value The normalized letters to search for anagrams
+	 * @param minLength The minimum length of the words returned
+	 * @param listener Receives the words and can stop the search
+	 */
+	public void search(String value, int minLength, MatchListener listener) {
+		search(value, minLength, -1, listener);
+	}
+
+	/** Searches like search(String, int, MatchListener) but only for the keys that use every
+	 * one of the given letter in value, which are the words value has and value without one
+	 * of those letters doesn't. That's what DeltaSearcher needs when a letter is added, and
+	 * the walk drops every branch that passes the letter without using them all.
+	 * @param value The normalized letters to search for anagrams, without blanks
+	 * @param minLength The minimum length of the words returned
+	 * @param letter The letter whose every copy in value the words must use
+	 * @param listener Receives the words and can stop the search
+	 */
+	public void searchUsingAll(String value, int minLength, char letter, MatchListener listener) {
+		if (hasBlanks(value)) {
+			throw new IllegalArgumentException("Blanks can't be required: " + value);
+		}
+		search(value, minLength, letter, listener);
+	}
+
+	/** Searches for the keys that use every copy of required, any keys if it's -1 */
+	private void search(String value, int minLength, int required, MatchListener listener) {
+		char[] letters = value.toCharArray();
+		Arrays.sort(letters);
+
+		// Group the sorted letters in distinct letters and how many times each one is available
+		int distinct = 0;
+		int blanks = 0;
+		int[] counts = new int[letters.length];
+		for (int i = 0; i < letters.length; i++) {
+			if (letters[i] == BLANK) {
+				blanks++;
+				continue;
+			}
+			if ((distinct == 0) || (letters[i] != letters[distinct - 1])) {
+				letters[distinct++] = letters[i];
+			}
+			counts[distinct - 1]++;
+		}
+
+		int requiredLetter = -1;
+		if (required >= 0) {
+			requiredLetter = Arrays.binarySearch(letters, 0, distinct, (char) required);
+			if (requiredLetter < 0) {
+				return;
+			}
+		}
+
+		Walk walk = new Walk(letters, counts, distinct, blanks, Math.max(1, minLength), requiredLetter, listener);
+		walk.visit(new char[value.length()], 0, Character.MIN_VALUE);
+		if (Metrics.isEnabled()) {
+			Metrics.count(Metrics.PREFIXES_VISITED, walk.visited);
+			Metrics.count(Metrics.PREFIXES_PRUNED, walk.pruned);
+			Metrics.count(Metrics.KEYS_FOUND, walk.found);
+		}
+	}
+
+	/** Returns true if the value has any BLANK */
+	public static boolean hasBlanks(String value) {
+		return value.indexOf(BLANK) >= 0;
+	}
+
+	/** Returns true if the sorted key[0..keyLength) can be made of the sorted
+	 * letters[0..length), each letter used at most once. Blanks aren't treated specially.
+	 * @return
+	 */
+	public static boolean fits(char[] key, int keyLength, char[] letters, int length) {
+		int j = 0;
+		// Both are sorted, so walk them together like a merge
+		for (int i = 0; i < keyLength; i++) {
+			while ((j < length) && (letters[j] < key[i])) {
+				j++;
+			}
+			if ((j == length) || (letters[j] != key[i])) {
+				return false;
+			}
+			j++;
+		}
+		return true;
+	}
+
+	/** The state of one search */
+	private class Walk {
+		private final char[] letters;
+		private final int[] counts;
+		private final int distinct;
+		private int blanks;
+		/** The letters and blanks not used by the current prefix */
+		private int available;
+		private final int minLength;
+		/** The index of the letter whose every copy the keys must use, -1 if there is none */
+		private final int required;
+		private final MatchListener listener;
+		private final List<String> words = new ArrayList<String>();
+		private boolean stopped = false;
+		/** Counted here and handed to Metrics once at the end, it's too hot a loop to call it */
+		int visited, pruned, found;
+
+		Walk(char[] letters, int[] counts, int distinct, int blanks, int minLength, int required,
+				MatchListener listener) {
+			this.letters = letters;
+			this.counts = counts;
+			this.distinct = distinct;
+			this.blanks = blanks;
+			this.available = blanks;
+			for (int i = 0; i < distinct; i++) {
+				available += counts[i];
+			}
+			this.minLength = minLength;
+			this.required = required;
+			this.listener = listener;
+		}
+
+		/** Extends the prefix key[0..length) with each available letter that is &gt;= from,
+		 * since the letters of a key are sorted */
+		void visit(char[] key, int length, char from) {
+			if (blanks == 0) {
+				// Only the letters of the rack can follow
+				for (int i = firstLetter(from); (i < distinct) && !stopped; i++) {
+					// The letters of a key are sorted, so one after the required letter ends its copies
+					if ((required >= 0) && (i > required) && (counts[required] > 0)) {
+						break;
+					}
+					if (counts[i] > 0) {
+						counts[i]--;
+						extend(key, length, letters[i]);
+						counts[i]++;
+					}
+				}
+				return;
+			}
+			// Any letter can follow, so go through the ones the index has after this prefix
+			int c = index.nextChar(key, length, from);
+			while ((c != -1) && !stopped) {
+				int i = Arrays.binarySearch(letters, 0, distinct, (char) c);
+				if ((i >= 0) && (counts[i] > 0)) {
+					counts[i]--;
+					extend(key, length, (char) c);
+					counts[i]++;
+				} else if (Character.isLetter(c)) {
+					blanks--;
+					extend(key, length, (char) c);
+					blanks++;
+				}
+				if (c == Character.MAX_VALUE) {
+					break;
+				}
+				c = index.nextChar(key, length, (char) (c + 1));
+			}
+		}
+
+		/** Visits the prefix key[0..length) followed by c */
+		private void extend(char[] key, int length, char c) {
+			available--;
+			try {
+				// Nothing under this prefix can be long enough with the letters that are left
+				if ((length + 1 + available) >= minLength) {
+					visitKey(key, length, c);
+				} else {
+					pruned++;
+				}
+			} finally {
+				available++;
+			}
+		}
+
+		private void visitKey(char[] key, int length, char c) {
+			key[length] = c;
+			if ((++visited & INTERRUPT_CHECK_MASK) == 0) {
+				if (Thread.currentThread().isInterrupted()) {
+					stopped = true;
+					return;
+				}
+			}
+			int probed = index.probe(key, length + 1);
+			if (probed == SortedKeyIndex.NONE) {
+				pruned++;
+				return;
+			}
+			if ((probed == SortedKeyIndex.KEY) && ((length + 1) >= minLength)
+					&& ((required < 0) || (counts[required] == 0))) {
+				found++;
+				words.clear();
+				index.addWords(key, length + 1, words);
+				if (!words.isEmpty() && !listener.onMatches(words)) {
+					stopped = true;
+					return;
+				}
+			}
+			visit(key, length + 1, c);
+		}
+
+		/** Returns the index of the first distinct letter that is &gt;= from */
+		private int firstLetter(char from) {
+			int i = Arrays.binarySearch(letters, 0, distinct, from);
+			return (i >= 0) ? i : -(i + 1);
+		}
+	}
+}
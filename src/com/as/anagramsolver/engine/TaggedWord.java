@@ -0,0 +1,49 @@
+package com.as.anagramsolver.engine;
+
+/** A word found by a search together with the dictionary it was found in */
+public class TaggedWord {
+
+	private final String word;
+	private final String dictionary;
+
+	public TaggedWord(String word, String dictionary) {
+		this.word = word;
+		this.dictionary = dictionary;
+	}
+
+	public String getWord() {
+		return word;
+	}
+
+	public String getDictionary() {
+		return dictionary;
+	}
+
+	/** Returns the word followed by its dictionary in parentheses, e.g. "snake (English)" */
+	@Override
+	public String toString() {
+		return word + " (" + dictionary + ")";
+	}
+
+	/** Returns the word of a string made by toString() */
+	public static String wordOf(String tagged) {
+		if (tagged.endsWith(")")) {
+			int open = tagged.lastIndexOf(" (");
+			if (open > 0) {
+				return tagged.substring(0, open);
+			}
+		}
+		return tagged;
+	}
+
+	/** Returns the dictionary of a string made by toString(), null if it has none */
+	public static String dictionaryOf(String tagged) {
+		if (tagged.endsWith(")")) {
+			int open = tagged.lastIndexOf(" (");
+			if (open > 0) {
+				return tagged.substring(open + 2, tagged.length() - 1);
+			}
+		}
+		return null;
+	}
+}
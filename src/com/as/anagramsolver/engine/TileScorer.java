@@ -0,0 +1,108 @@
+package com.as.anagramsolver.engine;
+
+import java.util.EnumMap;
+import java.util.Map;
+
+/** Scores a word by the values of the letter tiles of its language, as in the word games
+ * the racks come from: the sum of the values of its letters.
+ *
+ * The value of each char is looked up in a table built once per language. A letter of the
+ * tile set keeps its value in upper case too and any other letter gets the value of the
+ * letters it folds to like in KeyNormalizer, so e.g. an accented e is worth an e where the
+ * set has no tile of its own for it. Everything else, like spaces and hyphens, is worth 0.
+ */
+public class TileScorer implements WordScorer {
+
+	/** Chars below this are looked up in the table, which covers the Latin and Greek letters, the rest are worth 0 */
+	private static final int TABLE_SIZE = 0x500;
+
+	/** The tables of each language, built on first use */
+	private static final Map<Language, int[]> tables = new EnumMap<Language, int[]>(Language.class);
+
+	private final int[] values;
+
+	public TileScorer(Language language) {
+		values = getTable(language);
+	}
+
+	@Override
+	public int score(String word) {
+		int score = 0;
+		for (int i = 0; i < word.length(); i++) {
+			char c = word.charAt(i);
+			if (c < TABLE_SIZE) {
+				score += values[c];
+			}
+		}
+		return score;
+	}
+
+	/** Returns the value of a single char */
+	public int valueOf(char c) {
+		return (c < TABLE_SIZE) ? values[c] : 0;
+	}
+
+	private static int[] getTable(Language language) {
+		synchronized (tables) {
+			int[] table = tables.get(language);
+			if (table == null) {
+				table = buildTable(language);
+				tables.put(language, table);
+			}
+			return table;
+		}
+	}
+
+	private static int[] buildTable(Language language) {
+		int[] tiles = new int[TABLE_SIZE];
+		String[] letters = tilesOf(language).split(" ");
+		for (String letter : letters) {
+			tiles[letter.charAt(0)] = Integer.parseInt(letter.substring(1));
+		}
+
+		int[] table = new int[TABLE_SIZE];
+		KeyNormalizer normalizer = new KeyNormalizer(language);
+		for (char c = 0; c < TABLE_SIZE; c++) {
+			String lower = String.valueOf(c).toLowerCase(language.getLocale());
+			if ((lower.length() == 1) && (lower.charAt(0) < TABLE_SIZE) && (tiles[lower.charAt(0)] > 0)) {
+				table[c] = tiles[lower.charAt(0)];
+				continue;
+			}
+			// A letter without a tile is worth the letters it folds to, e.g. the two s of the sharp s
+			int length = normalizer.fold(String.valueOf(c));
+			char[] folded = normalizer.getBuffer();
+			for (int i = 0; i < length; i++) {
+				if (folded[i] < TABLE_SIZE) {
+					table[c] += tiles[folded[i]];
+				}
+			}
+		}
+		return table;
+	}
+
+	/** Returns the tiles of the language, each one its letter followed by its value */
+	private static String tilesOf(Language language) {
+		switch (language) {
+		case GREEK:
+			return "\u03b11 \u03b28 \u03b34 \u03b44 \u03b51 \u03b610 \u03b71 \u03b810 \u03b91 \u03ba2 \u03bb3 \u03bc3"
+					+ " \u03bd1 \u03be10 \u03bf1 \u03c02 \u03c12 \u03c31 \u03c41 \u03c52 \u03c68 \u03c78 \u03c810 \u03c93";
+		case POLISH:
+			return "a1 \u01055 b3 c2 \u01076 d2 e1 \u01195 f5 g3 h3 i1 j3 k2 l2 \u01423 m2 n1 \u01447 o1 \u00f35"
+					+ " p2 r1 s1 \u015b5 t2 u3 w1 y2 z1 \u017a9 \u017c5";
+		case FRENCH:
+			return "a1 b3 c3 d2 e1 f4 g2 h4 i1 j8 k10 l1 m2 n1 o1 p3 q8 r1 s1 t1 u1 v4 w10 x10 y10 z10";
+		case GERMAN:
+			return "a1 b3 c4 d1 e1 f4 g2 h2 i1 j6 k4 l2 m3 n1 o2 p4 q10 r1 s1 t1 u1 v6 w3 x8 y10 z3"
+					+ " \u00e46 \u00f68 \u00fc6";
+		case SPANISH:
+			return "a1 b3 c3 d2 e1 f4 g2 h4 i1 j8 k8 l1 m3 n1 \u00f18 o1 p3 q5 r1 s1 t1 u1 v4 w8 x8 y4 z10";
+		case ITALIAN:
+			return "a1 b4 c1 d4 e1 f4 g4 h8 i1 j10 k10 l2 m2 n2 o1 p3 q10 r1 s1 t1 u4 v4 w10 x10 y10 z8";
+		case TURKISH:
+			return "a1 b3 c4 \u00e74 d3 e1 f7 g5 \u011f8 h5 \u01312 i1 j10 k1 l1 m2 n1 o2 \u00f67 p5 r1 s2"
+					+ " \u015f4 t1 u2 \u00fc3 v7 y3 z4";
+		default:
+			return "a1 b3 c3 d2 e1 f4 g2 h4 i1 j8 k5 l1 m3 n1 o1 p3 q10 r1 s1 t1 u1 v4 w4 x8 y4 z10";
+		}
+	}
+}
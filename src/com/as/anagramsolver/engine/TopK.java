@@ -0,0 +1,135 @@
+package com.as.anagramsolver.engine;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/** Keeps the first k words in the order of a WordRanking out of the words a search offers
+ * it one at a time, so the results never need to be sorted as a whole and a word that can't
+ * make it to the first k is dropped as soon as it's found.
+ *
+ * The words are kept in a heap of at most k with the last of them at the root, next to their
+ * scores, so each word is scored once. Once the heap is full a word that doesn't come
+ * before the root costs one comparison, and one that does takes the place of the root in
+ * O(log k). Every word should be offered once. The methods are synchronized, so the searches
+ * of several dictionaries can offer their words to the same TopK.
+ */
+public class TopK {
+
+	private final WordRanking ranking;
+	private final String[] words;
+	private final int[] scores;
+	private int size = 0;
+	private long dropped = 0;
+
+	/**
+	 * @param k how many words to keep, at least 1
+	 * @param ranking the order of the words, the first k of it are kept
+	 */
+	public TopK(int k, WordRanking ranking) {
+		if (k < 1) {
+			throw new IllegalArgumentException("k must be at least 1: " + k);
+		}
+		this.ranking = ranking;
+		this.words = new String[k];
+		this.scores = new int[k];
+	}
+
+	/** Keeps the word if it is among the first k of the words offered so far
+	 * @param word the word to offer
+	 * @return the word that isn't among the first k any more: the offered one if k words that
+	 * come before it are kept already, the one it took the place of, or null if none
+	 */
+	public synchronized String offer(String word) {
+		int score = ranking.score(word);
+		if (size < words.length) {
+			words[size] = word;
+			scores[size] = score;
+			siftUp(size++);
+			return null;
+		}
+		dropped++;
+		if (ranking.compare(score, word, scores[0], words[0]) >= 0) {
+			return word;
+		}
+		// The word takes the place of the last one kept
+		String last = words[0];
+		words[0] = word;
+		scores[0] = score;
+		siftDown(0);
+		return last;
+	}
+
+	/** Returns the number of words kept, at most k */
+	public synchronized int size() {
+		return size;
+	}
+
+	/** Returns the number of words that were dropped, when they were offered or later */
+	public synchronized long getDropped() {
+		return dropped;
+	}
+
+	/** Returns the words kept in the order of the ranking */
+	public synchronized List<String> toList() {
+		List<String> list = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			list.add(words[i]);
+		}
+		Collections.sort(list, ranking);
+		return list;
+	}
+
+	/** Forgets all the words */
+	public synchronized void clear() {
+		for (int i = 0; i < size; i++) {
+			words[i] = null;
+		}
+		size = 0;
+		dropped = 0;
+	}
+
+	/** Returns true if the word at i comes after the one at j */
+	private boolean after(int i, int j) {
+		return ranking.compare(scores[i], words[i], scores[j], words[j]) > 0;
+	}
+
+	/** Moves the word at i up until its parent comes after it */
+	private void siftUp(int i) {
+		while (i > 0) {
+			int parent = (i - 1) >>> 1;
+			if (!after(i, parent)) {
+				return;
+			}
+			swap(i, parent);
+			i = parent;
+		}
+	}
+
+	/** Moves the word at i down until both its children come before it */
+	private void siftDown(int i) {
+		while (true) {
+			int child = 2 * i + 1;
+			if (child >= size) {
+				return;
+			}
+			if ((child + 1 < size) && after(child + 1, child)) {
+				child++;
+			}
+			if (!after(child, i)) {
+				return;
+			}
+			swap(i, child);
+			i = child;
+		}
+	}
+
+	private void swap(int i, int j) {
+		String word = words[i];
+		words[i] = words[j];
+		words[j] = word;
+		int score = scores[i];
+		scores[i] = scores[j];
+		scores[j] = score;
+	}
+}
@@ -0,0 +1,49 @@
+package com.as.anagramsolver.engine;
+
+import java.util.Comparator;
+
+/** The order the results of a search are shown in: by the score a WordScorer gives them,
+ * highest or lowest first, and alphabetically among equal scores. Without a scorer it is the
+ * alphabetical order. The scores are compared as ints, nothing is boxed, and TopK keeps the
+ * score of each word it holds so it only scores a word once.
+ */
+public class WordRanking implements Comparator<String> {
+
+	/** The alphabetical order */
+	public static final WordRanking ALPHABETICAL = new WordRanking(null, false);
+
+	private final WordScorer scorer;
+	private final boolean lowestFirst;
+
+	/**
+	 * @param scorer scores the words, null to only sort them alphabetically
+	 * @param lowestFirst whether the lowest scores come first instead of the highest
+	 */
+	public WordRanking(WordScorer scorer, boolean lowestFirst) {
+		this.scorer = scorer;
+		this.lowestFirst = lowestFirst;
+	}
+
+	/** Returns the score of the word, 0 for every word without a scorer */
+	public int score(String word) {
+		return (scorer == null) ? 0 : scorer.score(word);
+	}
+
+	@Override
+	public int compare(String word1, String word2) {
+		if (scorer == null) {
+			return word1.compareTo(word2);
+		}
+		return compare(scorer.score(word1), word1, scorer.score(word2), word2);
+	}
+
+	/** Compares two words whose scores are known
+	 * @return a negative number if word1 comes first, a positive one if word2 does, 0 if they're equal
+	 */
+	public int compare(int score1, String word1, int score2, String word2) {
+		if (score1 != score2) {
+			return ((score1 < score2) == lowestFirst) ? -1 : 1;
+		}
+		return word1.compareTo(word2);
+	}
+}
@@ -0,0 +1,18 @@
+package com.as.anagramsolver.engine;
+
+/** Gives the words found by a search a score to rank them by, see WordRanking. A scorer
+ * only looks at the word itself, so it can be shared by threads.
+ */
+public interface WordScorer {
+
+	/** Scores the words by their length */
+	WordScorer LENGTH = new WordScorer() {
+		@Override
+		public int score(String word) {
+			return word.length();
+		}
+	};
+
+	/** Returns the score of the word, the higher the better */
+	int score(String word);
+}
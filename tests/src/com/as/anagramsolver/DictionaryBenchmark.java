@@ -0,0 +1,262 @@
+package com.as.anagramsolver;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import android.content.ContentValues;
+import android.database.Cursor;
+import android.database.sqlite.SQLiteDatabase;
+import android.database.sqlite.SQLiteStatement;
+import android.test.AndroidTestCase;
+import android.util.Log;
+
+import com.as.anagramsolver.engine.FrontCodedDictionary;
+
+/** Times the lookups, the star patterns and the loading of DictionaryDBCreator on the dictionaries shipped in assets/dictionaries.
+ * Run it on a device with the instrumentation of this test project, e.g.
+ * adb shell am instrument -w -e class com.as.anagramsolver.DictionaryBenchmark com.as.anagramsolver.tests/android.test.InstrumentationTestRunner
+ * and compare the report in the log (tag DictionaryBenchmark) before and after a change to the database.
+ */
+public class DictionaryBenchmark extends AndroidTestCase {
+
+	private static final String TAG = "DictionaryBenchmark";
+
+	/** How many keys or words of each dictionary are sampled */
+	private static final int SAMPLE_SIZE = 200;
+
+	/** The rows of each transaction of testLoad, like DictionaryDBCreator loads them */
+	private static final int CHUNK_LINES = 5000;
+
+	private Set<String> enabledDictionaries;
+	private DictionaryDBCreator dbCreator;
+
+	/** Enables and loads every dictionary, the app's own choice is put back by tearDown */
+	@Override
+	protected void setUp() throws Exception {
+		super.setUp();
+		enabledDictionaries = SettingsPage.getEnabledDictionaries();
+		dbCreator = new DictionaryDBCreator(getContext(), new HashSet<String>(DictionaryDBCreator.DICTIONARIES));
+		SQLiteDatabase db = dbCreator.getWritableDatabase();
+		for (String dict : DictionaryDBCreator.DICTIONARIES) {
+			dbCreator.createTable(db, dict);
+		}
+	}
+
+	@Override
+	protected void tearDown() throws Exception {
+		dbCreator.close();
+		SettingsPage.setEnabledDictionaries(enabledDictionaries);
+		super.tearDown();
+	}
+
+	/** Times the key lookups of every dictionary with and without the aword index and logs the report */
+	public void testLookups() throws IOException {
+		StringBuilder report = new StringBuilder();
+		SQLiteDatabase db = dbCreator.getReadableDatabase();
+		for (String dict : DictionaryDBCreator.DICTIONARIES) {
+			List<String> keys = sample(dict, true);
+			assertFalse(dict, keys.isEmpty());
+			// The unary + keeps sqlite from using the aword index so this is the old full scan
+			long scan = timeLookups(db, "SELECT words FROM " + dict + " WHERE +aword=?", keys);
+			long indexed = timeLookups(db, "SELECT words FROM " + dict + " WHERE aword=?", keys);
+			long api = 0;
+			for (String key : keys) {
+				long start = System.nanoTime();
+				dbCreator.getMatchingAnagrams(dict, key);
+				api += System.nanoTime() - start;
+			}
+			report.append(dict)
+				.append(": full scan ").append(perLookup(scan, keys.size()))
+				.append(", indexed ").append(perLookup(indexed, keys.size()))
+				.append(", getMatchingAnagrams ").append(perLookup(api, keys.size()))
+				.append('\n');
+		}
+		Log.i(TAG, report.toString());
+	}
+
+	/** Times star patterns made from words of every dictionary, once with the old LIKE over
+	 * the whole table and once with getStarMatches (without its cache), checks that both find
+	 * the same words and logs the p50 and p99 latency of each kind of pattern */
+	public void testStarMatches() throws IOException {
+		StringBuilder report = new StringBuilder();
+		String[] kinds = { "prefix", "suffix", "infix", "single" };
+		for (String dict : DictionaryDBCreator.DICTIONARIES) {
+			List<String> words = sample(dict, false);
+			for (int kind = 0; kind < kinds.length; kind++) {
+				List<String> patterns = new ArrayList<String>();
+				for (String word : words) {
+					if (word.length() >= 5) {
+						patterns.add(starPattern(word, kind));
+					}
+				}
+				if (patterns.isEmpty()) {
+					continue;
+				}
+				// The old full scan, LIKE over every word
+				String likeQuery = "SELECT word FROM " + dict + "_words WHERE word LIKE ?";
+				long[] like = new long[patterns.size()];
+				long[] indexed = new long[patterns.size()];
+				for (int i = 0; i < patterns.size(); i++) {
+					String pattern = patterns.get(i);
+					long start = System.nanoTime();
+					Set<String> expected = dbCreator.rawQueryResults(likeQuery, pattern);
+					like[i] = System.nanoTime() - start;
+					start = System.nanoTime();
+					Set<String> matches = dbCreator.queryStarMatches(dict, pattern);
+					indexed[i] = System.nanoTime() - start;
+					assertEquals(dict + " " + pattern, expected, matches);
+				}
+				report.append(dict).append(' ').append(kinds[kind])
+					.append(": LIKE ").append(percentiles(like))
+					.append(", getStarMatches ").append(percentiles(indexed))
+					.append('\n');
+			}
+		}
+		Log.i(TAG, report.toString());
+	}
+
+	/** Returns a pattern of the given kind that matches the word: abc%, %cde, ab%de or a_cde% */
+	private static String starPattern(String word, int kind) {
+		int length = word.length();
+		switch (kind) {
+		case 0:
+			return word.substring(0, 3) + "%";
+		case 1:
+			return "%" + word.substring(length - 3);
+		case 2:
+			return word.substring(0, 2) + "%" + word.substring(length - 2);
+		default:
+			return word.charAt(0) + "_" + word.substring(2, 4) + "%";
+		}
+	}
+
+	/** Returns the p50 and p99 of the given times in ns */
+	private static String percentiles(long[] nanos) {
+		long[] sorted = nanos.clone();
+		Arrays.sort(sorted);
+		return "p50 " + (sorted[sorted.length / 2] / 1000) + " us, p99 "
+				+ (sorted[Math.min(sorted.length - 1, sorted.length * 99 / 100)] / 1000) + " us";
+	}
+
+	/** Inserts the words of every dictionary into a scratch table, once row by row with db.insert
+	 * and a ContentValues like the app used to and once with the compiled statement of
+	 * DictionaryDBCreator, then drops and reloads the dictionary with createTable, which also
+	 * groups the words by key and builds the indexes. Logs the time and rows/s of each. */
+	public void testLoad() throws IOException {
+		StringBuilder report = new StringBuilder();
+		SQLiteDatabase db = dbCreator.getWritableDatabase();
+		for (String dict : DictionaryDBCreator.DICTIONARIES) {
+			FrontCodedDictionary dictionary = dbCreator.readDictionary(dict);
+			String scratch = dict + "_benchmark";
+			report.append(dict).append(':');
+			for (boolean compiled : new boolean[] { false, true }) {
+				db.execSQL("DROP TABLE IF EXISTS " + scratch + ";");
+				db.execSQL("CREATE TABLE " + scratch + "(word TEXT, aword TEXT, rword TEXT);");
+				long start = System.nanoTime();
+				insertWords(db, scratch, dictionary, compiled);
+				appendTime(report, compiled ? " compiled insert " : " row inserts ", start,
+						dictionary.getWordCount());
+			}
+			db.execSQL("DROP TABLE " + scratch + ";");
+
+			dbCreator.dropTables(db, dict);
+			long start = System.nanoTime();
+			dbCreator.createTable(db, dict);
+			appendTime(report, ", createTable ", start, countRows(db, dict));
+			assertTrue(dict, dbCreator.isReady(dict));
+			report.append('\n');
+		}
+		Log.i(TAG, report.toString());
+	}
+
+	/** Inserts every word of the dictionary into the table in transactions of CHUNK_LINES rows */
+	private static void insertWords(SQLiteDatabase db, String table, FrontCodedDictionary dictionary,
+			boolean compiled) {
+		SQLiteStatement insert = compiled
+				? db.compileStatement("INSERT INTO " + table + "(word, aword, rword) VALUES (?, ?, ?);")
+				: null;
+		ContentValues v = new ContentValues();
+		int rows = 0;
+		db.beginTransaction();
+		try {
+			for (int k = 0; k < dictionary.getKeyCount(); k++) {
+				String key = dictionary.getKey(k);
+				for (int i = dictionary.getFirstWord(k); i < dictionary.getFirstWord(k + 1); i++) {
+					String word = dictionary.getWord(i);
+					String reversed = new StringBuilder(word).reverse().toString();
+					if (compiled) {
+						insert.bindString(1, word);
+						insert.bindString(2, key);
+						insert.bindString(3, reversed);
+						insert.executeInsert();
+					} else {
+						v.put("word", word);
+						v.put("aword", key);
+						v.put("rword", reversed);
+						db.insert(table, null, v);
+						v.clear();
+					}
+					if (++rows % CHUNK_LINES == 0) {
+						db.setTransactionSuccessful();
+						db.endTransaction();
+						db.beginTransaction();
+					}
+				}
+			}
+			db.setTransactionSuccessful();
+		} finally {
+			db.endTransaction();
+			if (insert != null) {
+				insert.close();
+			}
+		}
+	}
+
+	private static void appendTime(StringBuilder report, String label, long start, long rows) {
+		long elapsed = (System.nanoTime() - start) / 1000000;
+		report.append(label).append(elapsed).append(" ms (")
+			.append(elapsed > 0 ? rows * 1000 / elapsed : rows).append(" rows/s)");
+	}
+
+	private static long countRows(SQLiteDatabase db, String dict) {
+		Cursor cursor = db.rawQuery("SELECT COUNT(*) FROM " + dict, null);
+		long rows = cursor.moveToFirst() ? cursor.getLong(0) : 0;
+		cursor.close();
+		return rows;
+	}
+
+	/** Returns SAMPLE_SIZE keys or words taken at even intervals from the given dictionary */
+	private List<String> sample(String dict, boolean keys) throws IOException {
+		List<String> lines = new ArrayList<String>();
+		FrontCodedDictionary dictionary = dbCreator.readDictionary(dict);
+		int count = keys ? dictionary.getKeyCount() : dictionary.getWordCount();
+		int step = Math.max(1, count / SAMPLE_SIZE);
+		for (int i = 0; i < count && lines.size() < SAMPLE_SIZE; i += step) {
+			lines.add(keys ? dictionary.getKey(i) : dictionary.getWord(i));
+		}
+		return lines;
+	}
+
+	/** Runs the query once for each key, reading every row, and returns the total time in ns */
+	private static long timeLookups(SQLiteDatabase db, String query, List<String> keys) {
+		long total = 0;
+		for (String key : keys) {
+			long start = System.nanoTime();
+			Cursor cursor = db.rawQuery(query, new String[] { key });
+			while (cursor.moveToNext()) {
+				cursor.getString(0);
+			}
+			cursor.close();
+			total += System.nanoTime() - start;
+		}
+		return total;
+	}
+
+	private static String perLookup(long totalNanos, int lookups) {
+		return (totalNanos / lookups / 1000) + " us/lookup";
+	}
+}